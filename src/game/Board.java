@@ -44,17 +44,13 @@ public class Board extends GridPane {
      */
     public static final int EIGHT = 8;
     /**
-     * The current turn in terms of colour.
+     * The colour whose turn it is.
      */
-    protected static String turn;
+    protected int turn;
     /**
      * A tile on the board.
      */
     private Tile tile;
-    /**
-     * A serializabe tile.
-     */
-    private SavableTile savableTile;
     /**
      * The Move database to be used in this board.
      */
@@ -62,20 +58,25 @@ public class Board extends GridPane {
     /**
      * The turn.
      */
-    protected static Label displayTurn;
+    protected Label displayTurn;
+    /**
+     * How deep and fast the computer searched for its last move.
+     */
+    protected Label engineInfo;
 
     /**
      * Constructs an object of type Board.
      */
     public Board() {
         move = new Move(this);
-        turn = "White";
-        displayTurn = new Label("Turn: " + turn);
+        turn = Piece.WHITE;
+        displayTurn = new Label("Turn: " + Piece.colourName(turn));
+        engineInfo = new Label();
 
         // x = row, y = column
         for (int x = 0; x < EIGHT; x++) {
             for (int y = 0; y < EIGHT; y++) {
-                tile = new Tile(x, y, false, null, null);
+                tile = new Tile(x, y, Piece.EMPTY);
                 tile.setOnMouseClicked(this::selected);
                 tile.setOnMouseEntered(this::hover);
                 tile.setOnMouseExited(this::exit);
@@ -111,7 +112,6 @@ public class Board extends GridPane {
             }
         }
         
-        move.copytoSavableBoard();
         createPieces();
     }
 
@@ -119,45 +119,8 @@ public class Board extends GridPane {
      * Creates all the pieces on the board.
      */
     private void createPieces() {
-        String[] pieceNames = {"Rook", "Knight", "Bishop", "King", 
-                "Queen", "Bishop", "Knight", "Rook"};
-        String colour = "Black";      
-
-        for (int x = 0; x < 1; x++) {
-            for (int y = 0; y < EIGHT; y++) {
-                Tile temp = move.dataBoard[x][y];
-                String currPiece = pieceNames[y];
-                temp.setPiece(currPiece, colour);
-                temp.setOccupied(true);
-            }
-        }
-
-        for (int y = 0; y < EIGHT; y++) {
-            Tile temp = move.dataBoard[1][y];
-            String currPiece = "Pawn";
-            temp.setPiece(currPiece, colour);
-            temp.setOccupied(true);
-        }
-
-        colour = "White";
-
-        for (int x = SEVEN; x < EIGHT; x++) {
-            for (int y = 0; y < EIGHT; y++) {
-                Tile temp = move.dataBoard[x][y];
-                String currPiece = pieceNames[y];
-                temp.setPiece(currPiece, colour);
-                temp.setOccupied(true);
-            }
-        }
-
-        for (int y = 0; y < EIGHT; y++) {
-            Tile temp = move.dataBoard[SIX][y];
-            String currPiece = "Pawn";
-            temp.setPiece(currPiece, colour);
-            temp.setOccupied(true);
-        }
-        
-        move.copytoSavableBoard();
+        move.position.setStartPosition();
+        move.render();
     }
 
     /**
@@ -167,15 +130,18 @@ public class Board extends GridPane {
      */
     private void selected(MouseEvent e) {
         Tile current = (Tile) e.getSource();
+        if (move.isComputerTurn()) {
+            return;
+        }
         
         if (!move.getProcessing()) {
             if (!current.getOccupied() 
-                    || !current.getColour().equals(turn)) {
+                    || Piece.colour(current.getCode()) != turn) {
                 move.reset();
-                current.setStroke(Color.RED);
+                move.highlight(current, Color.RED);
             } else {
                 move.reset();
-                current.setStroke(Color.SPRINGGREEN);
+                move.highlight(current, Color.SPRINGGREEN);
                 move.calculate(current);
             }
         } else {
@@ -184,11 +150,11 @@ public class Board extends GridPane {
             } else {
                 move.reset();
                 if (!current.getOccupied() 
-                        || !current.getColour().equals(turn)) {
+                        || Piece.colour(current.getCode()) != turn) {
                     move.reset();
-                    current.setStroke(Color.RED);
+                    move.highlight(current, Color.RED);
                 } else {
-                    current.setStroke(Color.SPRINGGREEN);
+                    move.highlight(current, Color.SPRINGGREEN);
                     move.calculate(current);
                 }
             }
@@ -204,7 +170,7 @@ public class Board extends GridPane {
         Tile current = (Tile) e.getSource();
         if (!move.getProcessing()) {
             move.reset();
-            current.setStroke(Color.AQUAMARINE);
+            move.highlight(current, Color.AQUAMARINE);
         }
     }
 
@@ -216,79 +182,58 @@ public class Board extends GridPane {
     private void exit(MouseEvent e) {
         Tile current = (Tile) e.getSource();
         if (!move.getProcessing()) {
-            current.setStroke(current.getFill());
+            move.unhighlight(current);
         }
     }
     
     /**
      * Switches the turn.
      */
-    static void switchTurns() {
-        if (turn.equals("White")) {
-            turn = "Black";
-        } else {
-            turn = "White";
-        }
-        displayTurn.setText("Turn: " + turn);
+    void switchTurns() {
+        turn = Piece.opposite(turn);
+        displayTurn.setText("Turn: " + Piece.colourName(turn));
     }
     
     /**
      * Sets the turn of the board.
      * @param newTurn
-     *          the new turn.
+     *          the colour whose turn it is
      */
-    static void setTurn(String newTurn) {
+    void setTurn(int newTurn) {
         turn = newTurn;
+        move.position.setSideToMove(newTurn);
         
-        displayTurn.setText("Turn: " + turn);
+        showStatus(move.position.getStatus());
+        move.playComputer();
     }
     
     /**
-     * Loads the new board to be used.
+     * Shows how deep and fast the computer searched for its last move.
+     * @param info
+     *          the search information
      */
-    void loadNewBoard() {
-        getChildren().clear();
-        move.reset();
-        for (int x = 0; x < EIGHT; x++) {
-            for (int y = 0; y < EIGHT; y++) {
-                Tile tile =  move.dataBoard[x][y];
-                tile.setOnMouseClicked(this::selected);
-                tile.setOnMouseEntered(this::hover);
-                tile.setOnMouseExited(this::exit);
-                if (tile.getType() != null) {
-                    tile.setOccupied(true);
-                }
-                
-                if ((x % 2) == 0) {
-                    if ((y % 2) == 0) {
-                        tile.setFill(Color.SEASHELL);
-                        tile.setStroke(Color.SEASHELL);
-                        tile.setStrokeWidth(WIDTH);
-                        tile.setStrokeType(StrokeType.INSIDE);
-                    } else {
-                        tile.setFill(Color.DARKSEAGREEN);
-                        tile.setStroke(Color.DARKSEAGREEN);
-                        tile.setStrokeWidth(WIDTH);
-                        tile.setStrokeType(StrokeType.INSIDE);
-                    }
-                } else {
-                    if ((y % 2) == 1) {
-                        tile.setFill(Color.SEASHELL);
-                        tile.setStroke(Color.SEASHELL);
-                        tile.setStrokeWidth(WIDTH);
-                        tile.setStrokeType(StrokeType.INSIDE);
-                    } else {
-                        tile.setFill(Color.DARKSEAGREEN);
-                        tile.setStroke(Color.DARKSEAGREEN);
-                        tile.setStrokeWidth(WIDTH);
-                        tile.setStrokeType(StrokeType.INSIDE);
-                    }
-                }
-                
-                add(tile, y, x);
-                add(tile.piece, y, x);
-                move.addtoBoard(x, y, tile);
-            }
+    void showEngineInfo(String info) {
+        engineInfo.setText(info);
+    }
+    
+    /**
+     * Shows whose turn it is and whether they are in check, checkmated or
+     * stalemated.
+     * @param status
+     *          the status of the position
+     */
+    void showStatus(int status) {
+        if (status == Position.CHECKMATE) {
+            String winner = Piece.colourName(Piece.opposite(
+                    move.position.getSideToMove()));
+            displayTurn.setText("Checkmate! " + winner + " wins");
+        } else if (status == Position.STALEMATE) {
+            displayTurn.setText("Stalemate!");
+        } else if (status == Position.CHECK) {
+            displayTurn.setText("Turn: " + Piece.colourName(turn)
+                    + " (Check)");
+        } else {
+            displayTurn.setText("Turn: " + Piece.colourName(turn));
         }
     }
 }
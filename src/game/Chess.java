@@ -35,17 +35,26 @@ public class Chess extends HBox {
     /**
      * Sets the turn of the chess board.
      * @param turn
-     *          the turn to be set
+     *          the colour whose turn it is
      */
-    public void setBoardTurn(String turn) {
+    public void setBoardTurn(int turn) {
         chessBoard.setTurn(turn);
     }
     
+    /**
+     * Stops the computer and commits and closes the journal of the game
+     * shown, before the application exits.
+     */
+    void shutdown() {
+        chessBoard.move.shutdown();
+    }
+
     /**
      * Creates new chess board and menu and replaces the old ones
      * with a new one to create a new game.
      */
     protected void newGame() {
+        chessBoard.move.shutdown();
         chessBoard = new Board();
         menu = new Menu(this, chessBoard, chessBoard.move);
         getChildren().clear();
@@ -0,0 +1,491 @@
+package game;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Cli runs the rules and the engine from the command line, without
+ * starting JavaFX, so it can be used on machines with no display. Only
+ * the rules classes are loaded, never Board, Tile or Move, so it starts
+ * quickly.
+ *
+ * <pre>
+ * perft DEPTH [FEN]                   count the move tree
+ * analyse [-depth N] [-time MS] [-threads N] [FEN]
+ *                                     search for the best move
+ * validate FILE...                    check saved games, journals, game
+ *                                     archives or PGN files
+ * archive OUT PGN...                  write the games of PGN files to a
+ *                                     game archive
+ * index OUT ARCHIVE                   index the positions of an archive
+ * find INDEX ARCHIVE [FEN]            list the games reaching a position
+ * selfplay [GAMES] [SEED]             print random legal games as PGN
+ * </pre>
+ *
+ * Positions default to the board's start position. Exits with status 1
+ * if something fails and 2 if the arguments are wrong.
+ *
+ * @author Kiaan Castillo A01024604
+ * @version 2018
+ */
+public final class Cli {
+
+    /**
+     * The exit status when something fails.
+     */
+    private static final int FAILURE = 1;
+    /**
+     * The exit status when the arguments are wrong.
+     */
+    private static final int USAGE = 2;
+    /**
+     * The time analyse searches for when given no depth or time.
+     */
+    private static final long DEFAULT_MILLIS = 5000L;
+    /**
+     * The most moves of a self-play game.
+     */
+    private static final int SELFPLAY_PLIES = 400;
+    /**
+     * The most games find lists.
+     */
+    private static final int FIND_LIMIT = 20;
+    /**
+     * Nanoseconds in a second.
+     */
+    private static final double NANOS = 1e9;
+    /**
+     * Nanoseconds in a microsecond.
+     */
+    private static final long NANOS_PER_MICRO = 1000L;
+    /**
+     * How to run the command line.
+     */
+    private static final String HELP = "usage: java game.Cli COMMAND\n"
+            + "  perft DEPTH [FEN]\n"
+            + "  analyse [-depth N] [-time MS] [-threads N] [FEN]\n"
+            + "  validate FILE...\n"
+            + "  archive OUT PGN...\n"
+            + "  index OUT ARCHIVE\n"
+            + "  find INDEX ARCHIVE [FEN]\n"
+            + "  selfplay [GAMES] [SEED]";
+
+    /**
+     * Cli only has static members.
+     */
+    private Cli() {
+    }
+
+    /**
+     * Runs a command.
+     * @param args
+     *          the command and its arguments
+     */
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            usage();
+        }
+        String[] rest = new String[args.length - 1];
+        System.arraycopy(args, 1, rest, 0, rest.length);
+        try {
+            switch (args[0]) {
+            case "perft":
+                perft(rest);
+                break;
+            case "analyse":
+            case "analyze":
+                analyse(rest);
+                break;
+            case "validate":
+                validate(rest);
+                break;
+            case "archive":
+                archive(rest);
+                break;
+            case "index":
+                index(rest);
+                break;
+            case "find":
+                find(rest);
+                break;
+            case "selfplay":
+                selfplay(rest);
+                break;
+            default:
+                usage();
+            }
+        } catch (NumberFormatException e) {
+            System.err.println("Not a number: " + e.getMessage());
+            System.exit(USAGE);
+        } catch (IllegalArgumentException | IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(FAILURE);
+        }
+    }
+
+    /**
+     * Prints how to run the command line and exits.
+     */
+    private static void usage() {
+        System.err.println(HELP);
+        System.exit(USAGE);
+    }
+
+    /**
+     * Returns the position given by a FEN record made of the arguments
+     * from an index on, or the board's start position if there are none.
+     * @param args
+     *          the arguments
+     * @param from
+     *          the index of the first field of the record
+     * @return the position
+     */
+    private static Position position(String[] args, int from) {
+        Position position = new Position();
+        if (from >= args.length) {
+            position.setStartPosition();
+            return position;
+        }
+        StringBuilder fen = new StringBuilder(args[from]);
+        for (int index = from + 1; index < args.length; index++) {
+            fen.append(' ').append(args[index]);
+        }
+        Fen.parse(fen, position);
+        return position;
+    }
+
+    /**
+     * Counts the move tree of a position to a depth, with the count under
+     * each move.
+     * @param args
+     *          the depth, then optionally a FEN record
+     */
+    private static void perft(String[] args) {
+        if (args.length == 0) {
+            usage();
+        }
+        int depth = Integer.parseInt(args[0]);
+        Position position = position(args, 1);
+        Perft perft = new Perft();
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generate(position, moves, 0);
+        long start = System.nanoTime();
+        long total = 0L;
+        for (int index = 0; depth > 0 && index < count; index++) {
+            int move = moves[index];
+            String san = San.toSan(position, move);
+            position.makeMove(move);
+            long nodes = perft.perft(position, depth - 1);
+            position.unmakeMove();
+            System.out.println(san + ": " + nodes);
+            total += nodes;
+        }
+        if (depth == 0) {
+            total = 1L;
+        }
+        double seconds = (System.nanoTime() - start) / NANOS;
+        System.out.printf("perft %d: %d nodes in %.3f s, %.0f nodes/s%n",
+                depth, total, seconds, total / Math.max(seconds, 1e-9));
+    }
+
+    /**
+     * Searches a position and prints the best move.
+     * @param args
+     *          options, then optionally a FEN record
+     */
+    private static void analyse(String[] args) {
+        int depth = Engine.MAX_DEPTH;
+        long millis = 0L;
+        int threads = 1;
+        int index = 0;
+        while (index + 1 < args.length && args[index].startsWith("-")) {
+            String option = args[index++];
+            String value = args[index++];
+            if (option.equals("-depth")) {
+                depth = Integer.parseInt(value);
+            } else if (option.equals("-time")) {
+                millis = Long.parseLong(value);
+            } else if (option.equals("-threads")) {
+                threads = Integer.parseInt(value);
+            } else {
+                usage();
+            }
+        }
+        if (depth == Engine.MAX_DEPTH && millis == 0L) {
+            millis = DEFAULT_MILLIS;
+        }
+        Position position = position(args, index);
+        Engine engine = new Engine(threads);
+        int best = engine.search(position, depth, millis);
+        engine.shutdown();
+        if (best == 0) {
+            System.out.println(position.inCheck() ? "checkmate" : "stalemate");
+            return;
+        }
+        System.out.println("bestmove " + San.toSan(position, best)
+                + " score " + formatScore(engine.getScore())
+                + " depth " + engine.getDepth()
+                + " nodes " + engine.getNodes()
+                + " nps " + engine.getNodesPerSecond()
+                + " time " + engine.getMillis());
+    }
+
+    /**
+     * Returns a score as centipawns, or as moves to mate.
+     * @param score
+     *          the score for the side to move
+     * @return the score, such as "cp 25" or "mate -3"
+     */
+    static String formatScore(int score) {
+        if (Math.abs(score) < Search.MATE_BOUND) {
+            return "cp " + score;
+        }
+        int plies = Search.MATE - Math.abs(score);
+        int moves = (plies + 1) / 2;
+        return "mate " + (score > 0 ? moves : -moves);
+    }
+
+    /**
+     * Checks saved games, journals, game archives and PGN files and prints
+     * what each holds.
+     * @param args
+     *          the files
+     * @throws IOException
+     *          if a file cannot be read or is invalid
+     */
+    private static void validate(String[] args) throws IOException {
+        if (args.length == 0) {
+            usage();
+        }
+        boolean valid = true;
+        for (String name : args) {
+            Path path = Paths.get(name);
+            if (name.toLowerCase().endsWith(".pgn")) {
+                PgnStatistics statistics = PgnStatistics.collect(path,
+                        ForkJoinPool.commonPool());
+                System.out.print(name + ": " + statistics);
+                valid &= statistics.getInvalid() == 0L;
+            } else if (name.toLowerCase().endsWith(".saga")) {
+                valid &= validateArchive(path);
+            } else if (name.toLowerCase().endsWith(".journal")) {
+                Position position = new Position();
+                try {
+                    long records = MoveJournal.replay(path, position);
+                    long length = MoveJournal.HEADER_LENGTH
+                            + records * MoveJournal.RECORD_LENGTH;
+                    System.out.println(name + ": " + Fen.toFen(position)
+                            + " " + statusName(position.getStatus())
+                            + " after " + records + " records"
+                            + (Files.size(path) > length
+                            ? ", torn tail ignored" : ""));
+                } catch (IOException e) {
+                    System.out.println(name + ": " + e.getMessage());
+                    valid = false;
+                }
+            } else {
+                Position position = new Position();
+                try {
+                    GameFile.read(path, position);
+                } catch (IOException e) {
+                    System.out.println(name + ": " + e.getMessage());
+                    valid = false;
+                    continue;
+                }
+                System.out.println(name + ": " + Fen.toFen(position)
+                        + " " + statusName(position.getStatus()));
+            }
+        }
+        if (!valid) {
+            System.exit(FAILURE);
+        }
+    }
+
+    /**
+     * Loads every game of a game archive and prints how many it holds.
+     * @param path
+     *          the archive
+     * @return true if every game loaded
+     */
+    private static boolean validateArchive(Path path) {
+        PgnGame game = new PgnGame();
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        long plies = 0L;
+        try (GameArchive archive = new GameArchive(path)) {
+            for (int index = 0; index < archive.size(); index++) {
+                archive.read(index, game, moves);
+                plies += game.getMoveCount();
+            }
+            System.out.println(path + ": " + archive.size() + " games, "
+                    + plies + " moves");
+            return true;
+        } catch (IOException e) {
+            System.out.println(path + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Writes the valid games of PGN files to a game archive, skipping and
+     * reporting invalid ones.
+     * @param args
+     *          the archive, then the PGN files
+     * @throws IOException
+     *          if a file cannot be read or written
+     */
+    private static void archive(String[] args) throws IOException {
+        if (args.length < 2) {
+            usage();
+        }
+        PgnGame game = new PgnGame();
+        long invalid = 0L;
+        long start = System.nanoTime();
+        try (GameArchive.Writer writer = new GameArchive.Writer(
+                Paths.get(args[0]))) {
+            for (int file = 1; file < args.length; file++) {
+                try (PgnReader reader = new PgnReader(Paths.get(
+                        args[file]))) {
+                    while (true) {
+                        try {
+                            if (!reader.next(game)) {
+                                break;
+                            }
+                            writer.add(game);
+                        } catch (PgnException e) {
+                            System.err.println(args[file] + ": "
+                                    + e.getMessage());
+                            invalid++;
+                        }
+                    }
+                }
+            }
+            System.out.printf("%s: %d games archived, %d invalid skipped "
+                    + "in %.1f s%n", args[0], writer.getCount(), invalid,
+                    (System.nanoTime() - start) / NANOS);
+        }
+    }
+
+    /**
+     * Indexes every position of a game archive.
+     * @param args
+     *          the index, then the archive
+     * @throws IOException
+     *          if a file cannot be read or written
+     */
+    private static void index(String[] args) throws IOException {
+        if (args.length != 2) {
+            usage();
+        }
+        long start = System.nanoTime();
+        try (GameArchive archive = new GameArchive(Paths.get(args[1]))) {
+            PositionIndex.build(archive, Paths.get(args[0]));
+        }
+        try (PositionIndex index = new PositionIndex(Paths.get(args[0]))) {
+            System.out.printf("%s: %d positions of %d games in %.1f s%n",
+                    args[0], index.size(), index.getGameCount(),
+                    (System.nanoTime() - start) / NANOS);
+        }
+    }
+
+    /**
+     * Prints the games of an archive that reached a position, with the
+     * move number each reached it at. The position defaults to the
+     * standard start position, since archived games are read from PGN.
+     * @param args
+     *          the index, the archive, then optionally the position
+     * @throws IOException
+     *          if a file cannot be read
+     */
+    private static void find(String[] args) throws IOException {
+        if (args.length < 2) {
+            usage();
+        }
+        Position position = position(args, 2);
+        if (args.length == 2) {
+            Fen.parse(Fen.STANDARD_START, position);
+        }
+        long[] hits = new long[FIND_LIMIT];
+        PgnGame game = new PgnGame();
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        try (PositionIndex index = new PositionIndex(Paths.get(args[0]));
+                GameArchive archive = new GameArchive(Paths.get(args[1]))) {
+            long start = System.nanoTime();
+            long found = index.find(position, hits);
+            long micros = (System.nanoTime() - start) / NANOS_PER_MICRO;
+            System.out.println(found + " times in " + micros + " us");
+            for (int hit = 0; hit < Math.min(found, hits.length); hit++) {
+                int number = PositionIndex.game(hits[hit]);
+                archive.read(number, game, moves);
+                System.out.println("game " + number + " ply "
+                        + PositionIndex.ply(hits[hit]) + ": "
+                        + player(game, "White") + " - "
+                        + player(game, "Black") + " " + game.getResult());
+            }
+        }
+    }
+
+    /**
+     * Returns a player of a game, or "?" if the game does not name them.
+     * @param game
+     *          the game
+     * @param colour
+     *          the name of the tag, White or Black
+     * @return the player
+     */
+    private static String player(PgnGame game, String colour) {
+        String name = game.getTag(colour);
+        return name == null ? "?" : name;
+    }
+
+    /**
+     * Returns the name of the status of a position.
+     * @param status
+     *          the status
+     * @return the name
+     */
+    static String statusName(int status) {
+        switch (status) {
+        case Position.CHECK:
+            return "check";
+        case Position.CHECKMATE:
+            return "checkmate";
+        case Position.STALEMATE:
+            return "stalemate";
+        default:
+            return "in play";
+        }
+    }
+
+    /**
+     * Plays games of random legal moves from the standard start position
+     * and prints them as PGN.
+     * @param args
+     *          optionally the number of games, then the seed
+     */
+    private static void selfplay(String[] args) {
+        int games = 1;
+        long seed = System.nanoTime();
+        if (args.length > 0) {
+            games = Integer.parseInt(args[0]);
+        }
+        if (args.length > 1) {
+            seed = Long.parseLong(args[1]);
+        }
+        Random random = new Random(seed);
+        Position position = new Position();
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        StringBuilder text = new StringBuilder();
+        for (int game = 1; game <= games; game++) {
+            Fen.parse(Fen.STANDARD_START, position);
+            text.setLength(0);
+            String result = PgnBenchmark.randomGame(random, position,
+                    SELFPLAY_PLIES, moves, text);
+            System.out.print("[Event \"Random self-play\"]\n[Round \""
+                    + game + "\"]\n[Result \"" + result + "\"]\n\n" + text
+                    + result + "\n\n");
+        }
+    }
+}
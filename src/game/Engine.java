@@ -0,0 +1,454 @@
+package game;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Engine is a computer player. It can search on any number of threads
+ * with Lazy SMP: every thread searches the same root position and they
+ * share one TranspositionTable, so each thread benefits from what the
+ * others found. Helper threads start on different depths so they do not
+ * all search the same tree in step. The main thread's time decides when
+ * the search ends, and the move of the thread that got deepest is played.
+ *
+ * Searches started with think run on the engine's own background thread
+ * so the JavaFX thread is never blocked, and the move chosen is handed to
+ * a Listener when it is done.
+ *
+ * @author Kiaan Castillo A01024604
+ * @version 2018
+ */
+public class Engine {
+
+    /**
+     * The deepest the engine searches when given time to think.
+     */
+    public static final int MAX_DEPTH = 64;
+    /**
+     * Nanoseconds in a second.
+     */
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    /**
+     * Listener is told the move the engine chose.
+     */
+    public interface Listener {
+
+        /**
+         * Called on the engine's thread once a search is done.
+         * @param move
+         *          the move chosen, or 0 if there are no legal moves
+         * @param engine
+         *          the engine, for the depth, nodes and speed of the search
+         */
+        void bestMove(int move, Engine engine);
+
+        /**
+         * Called on the engine's thread each time the main search
+         * completes an iteration.
+         * @param engine
+         *          the engine, for the depth, score, move, nodes and speed
+         *          so far
+         */
+        default void iteration(Engine engine) {
+        }
+    }
+
+    /**
+     * The thread searches started by think run on.
+     */
+    private final ExecutorService executor;
+    /**
+     * The table of positions already searched, shared by every thread and
+     * kept between moves.
+     */
+    private final TranspositionTable table;
+    /**
+     * The threads helper searches run on.
+     */
+    private ExecutorService helpers;
+    /**
+     * One search per thread, the main search first.
+     */
+    private volatile Search[] searches;
+    /**
+     * The search in progress started by think, if any.
+     */
+    private Future<?> task;
+    /**
+     * The number of searches started by think, written while holding the
+     * engine's lock.
+     */
+    private volatile long started;
+    /**
+     * The number of searches started by think when stop was last called,
+     * so a stop that comes before its search has begun is not lost.
+     */
+    private volatile long stoppedThrough;
+    /**
+     * The search whose move was chosen last.
+     */
+    private volatile Search chosen;
+    /**
+     * How long the last search took, or the current one has taken so far,
+     * in nanoseconds.
+     */
+    private volatile long elapsed;
+
+    /**
+     * Constructs an Engine that searches on one thread.
+     */
+    public Engine() {
+        this(1);
+    }
+
+    /**
+     * Constructs an Engine that searches on a number of threads.
+     * @param threads
+     *          the number of threads
+     */
+    public Engine(int threads) {
+        table = new TranspositionTable();
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "engine");
+            thread.setDaemon(true);
+            return thread;
+        });
+        setThreads(threads);
+    }
+
+    /**
+     * Sets the number of threads to search on. Must not be called while
+     * searching.
+     * @param threads
+     *          the number of threads, at least 1
+     */
+    public synchronized void setThreads(int threads) {
+        int count = Math.max(1, threads);
+        if (helpers != null) {
+            helpers.shutdown();
+            helpers = null;
+        }
+        Search[] created = new Search[count];
+        for (int index = 0; index < count; index++) {
+            created[index] = new Search(table);
+        }
+        if (count > 1) {
+            helpers = Executors.newFixedThreadPool(count - 1,
+                    new HelperFactory());
+        }
+        searches = created;
+        chosen = created[0];
+    }
+
+    /**
+     * Names and marks as daemons the threads of the helper searches.
+     */
+    private static final class HelperFactory implements ThreadFactory {
+
+        /**
+         * The number of threads made so far.
+         */
+        private int made;
+
+        /**
+         * Makes a helper thread.
+         * @param runnable
+         *          what the thread runs
+         * @return the thread
+         */
+        public synchronized Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "engine-helper-" + ++made);
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    /**
+     * Returns the number of threads searched on.
+     * @return the number of threads
+     */
+    public int getThreads() {
+        return searches.length;
+    }
+
+    /**
+     * Sets the size of the table of positions already searched, throwing
+     * away what it holds. Must not be called while searching.
+     * @param megabytes
+     *          the size in megabytes
+     */
+    public synchronized void setHashSize(int megabytes) {
+        table.resize(megabytes);
+    }
+
+    /**
+     * Searches a position on every thread and returns the best move found.
+     * The calling thread runs the main search.
+     * @param position
+     *          the position, which is not changed
+     * @param maxDepth
+     *          the deepest iteration to search
+     * @param millis
+     *          the time allowed in milliseconds, or 0 for no limit
+     * @return the best move, or 0 if there are no legal moves
+     */
+    public int search(Position position, int maxDepth, long millis) {
+        return search(position, maxDepth, millis, 0L, null);
+    }
+
+    /**
+     * Searches a position on every thread and returns the best move found.
+     * The calling thread runs the main search.
+     * @param position
+     *          the position, which is not changed
+     * @param maxDepth
+     *          the deepest iteration to search
+     * @param millis
+     *          the time allowed in milliseconds, or 0 for no limit
+     * @param nodes
+     *          the nodes the main search may search, or 0 for no limit
+     * @param listener
+     *          told of each iteration the main search completes, or null
+     * @return the best move, or 0 if there are no legal moves
+     */
+    public int search(Position position, int maxDepth, long millis,
+            long nodes, Listener listener) {
+        return search(position, maxDepth, millis, nodes, listener,
+                Long.MAX_VALUE);
+    }
+
+    /**
+     * Searches a position on every thread and returns the best move found,
+     * unless a stop already came for it.
+     * @param position
+     *          the position, which is not changed
+     * @param maxDepth
+     *          the deepest iteration to search
+     * @param millis
+     *          the time allowed in milliseconds, or 0 for no limit
+     * @param nodes
+     *          the nodes the main search may search, or 0 for no limit
+     * @param listener
+     *          told of each iteration the main search completes, or null
+     * @param number
+     *          the number of the search among those started by think, or
+     *          Long.MAX_VALUE if think did not start it
+     * @return the best move, or 0 if there are no legal moves
+     */
+    private int search(Position position, int maxDepth, long millis,
+            long nodes, Listener listener, long number) {
+        Search[] team = searches;
+        ExecutorService pool = helpers;
+        Position root = new Position(position);
+        table.newSearch();
+        for (Search each : team) {
+            each.resume();
+        }
+        if (number <= stoppedThrough) {
+            for (Search each : team) {
+                each.stop();
+            }
+        }
+        long start = System.nanoTime();
+        elapsed = 0L;
+        chosen = team[0];
+        team[0].setNodeLimit(nodes);
+        team[0].setProgress(null);
+        if (listener != null) {
+            team[0].setProgress(() -> {
+                elapsed = System.nanoTime() - start;
+                listener.iteration(this);
+            });
+        }
+
+        List<Future<?>> running = new ArrayList<>();
+        for (int index = 1; index < team.length; index++) {
+            Search helper = team[index];
+            int firstDepth = 1 + (index & 1);
+            running.add(pool.submit(() -> helper.run(new Position(root),
+                    firstDepth, maxDepth, millis)));
+        }
+        team[0].run(root, 1, maxDepth, millis);
+        for (int index = 1; index < team.length; index++) {
+            team[index].stop();
+        }
+        for (Future<?> helper : running) {
+            try {
+                helper.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                e.printStackTrace();
+            }
+        }
+        elapsed = System.nanoTime() - start;
+
+        Search best = team[0];
+        for (Search each : team) {
+            if (each.getDepth() > best.getDepth()
+                    && each.getBestMove() != 0) {
+                best = each;
+            }
+        }
+        chosen = best;
+        return best.getBestMove();
+    }
+
+    /**
+     * Starts searching a position in the background.
+     * @param position
+     *          the position, which is copied so it may change afterwards
+     * @param millis
+     *          the time allowed in milliseconds
+     * @param listener
+     *          told the move chosen
+     */
+    public void think(Position position, long millis, Listener listener) {
+        think(position, MAX_DEPTH, millis, 0L, listener);
+    }
+
+    /**
+     * Starts searching a position in the background.
+     * @param position
+     *          the position, which is copied so it may change afterwards
+     * @param maxDepth
+     *          the deepest iteration to search
+     * @param millis
+     *          the time allowed in milliseconds, or 0 for no limit
+     * @param nodes
+     *          the nodes the main search may search, or 0 for no limit
+     * @param listener
+     *          told of each iteration and the move chosen
+     */
+    public synchronized void think(Position position, int maxDepth,
+            long millis, long nodes, Listener listener) {
+        stop();
+        long number = ++started;
+        Position root = new Position(position);
+        task = executor.submit(() -> {
+            int move = search(root, maxDepth, millis, nodes, listener,
+                    number);
+            listener.bestMove(move, this);
+        });
+    }
+
+    /**
+     * Waits until the search started by think, if any, is done and its
+     * listener has been told the move chosen.
+     */
+    public void await() {
+        Future<?> waited;
+        synchronized (this) {
+            waited = task;
+        }
+        if (waited == null) {
+            return;
+        }
+        try {
+            waited.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Returns the table of positions already searched.
+     * @return table
+     */
+    public TranspositionTable getTable() {
+        return table;
+    }
+
+    /**
+     * Returns the move chosen, or the best move so far while searching.
+     * @return the move
+     */
+    public int getBestMove() {
+        return chosen.getBestMove();
+    }
+
+    /**
+     * Returns the deepest iteration completed by the search whose move was
+     * chosen.
+     * @return the depth
+     */
+    public int getDepth() {
+        return chosen.getDepth();
+    }
+
+    /**
+     * Returns the score of the move chosen, for the side to move.
+     * @return the score
+     */
+    public int getScore() {
+        return chosen.getScore();
+    }
+
+    /**
+     * Returns the nodes searched by every thread.
+     * @return the nodes
+     */
+    public long getNodes() {
+        long nodes = 0L;
+        for (Search each : searches) {
+            nodes += each.getNodes();
+        }
+        return nodes;
+    }
+
+    /**
+     * Returns the time the last search took in milliseconds.
+     * @return the elapsed time
+     */
+    public long getMillis() {
+        return elapsed / 1000000L;
+    }
+
+    /**
+     * Returns the nodes searched per second by every thread together.
+     * @return the nodes per second
+     */
+    public long getNodesPerSecond() {
+        return (long) (getNodes() * NANOS_PER_SECOND
+                / Math.max(1L, elapsed));
+    }
+
+    /**
+     * Returns true if a search started by think is in progress.
+     * @return true if thinking
+     */
+    public synchronized boolean isThinking() {
+        return task != null && !task.isDone();
+    }
+
+    /**
+     * Stops the search in progress on every thread. Its listener is still
+     * told the best move found so far. A search started by think that has
+     * not begun yet stops as soon as it begins.
+     */
+    public void stop() {
+        stoppedThrough = started;
+        for (Search each : searches) {
+            each.stop();
+        }
+    }
+
+    /**
+     * Stops searching and ends the engine's threads.
+     */
+    public synchronized void shutdown() {
+        stop();
+        executor.shutdown();
+        if (helpers != null) {
+            helpers.shutdown();
+        }
+    }
+}
@@ -0,0 +1,613 @@
+package game;
+
+/**
+ * Evaluation scores a Position in centipawns from the point of view of
+ * the side to move.
+ *
+ * The score is made of material, piece-square tables, pawn structure,
+ * king safety and mobility, each with a midgame and an endgame value that
+ * are blended by how much material is left. Material and piece-square
+ * values are kept up to date by the Position itself as pieces are placed
+ * and lifted, so only the other terms are worked out for each call.
+ *
+ * Midgame and endgame values travel together packed into one int, the
+ * endgame value in the high half, so that they can be added and
+ * subtracted as one.
+ *
+ * @author Kiaan Castillo A01024604
+ * @version 2018
+ */
+public final class Evaluation {
+
+    /**
+     * The term for material.
+     */
+    public static final int MATERIAL = 0;
+    /**
+     * The term for piece-square tables.
+     */
+    public static final int PIECE_SQUARES = 1;
+    /**
+     * The term for pawn structure.
+     */
+    public static final int PAWNS = 2;
+    /**
+     * The term for king safety.
+     */
+    public static final int KING_SAFETY = 3;
+    /**
+     * The term for mobility.
+     */
+    public static final int MOBILITY = 4;
+    /**
+     * The number of terms.
+     */
+    public static final int TERMS = 5;
+    /**
+     * The phase with every piece but the pawns and kings on the board.
+     */
+    public static final int MAX_PHASE = 24;
+    /**
+     * The names of the terms.
+     */
+    private static final String[] TERM_NAMES = {"Material", "Piece squares",
+        "Pawns", "King safety", "Mobility"};
+    /**
+     * The value of each type of piece, indexed by type.
+     */
+    private static final int[] VALUES = {0, 100, 320, 330, 500, 900, 0};
+    /**
+     * The midgame value of each type of piece, indexed by type.
+     */
+    private static final int[] MIDGAME_VALUES = {0, 100, 320, 330, 500, 900,
+        0};
+    /**
+     * The endgame value of each type of piece, indexed by type.
+     */
+    private static final int[] ENDGAME_VALUES = {0, 120, 300, 320, 530, 950,
+        0};
+    /**
+     * How much each type of piece counts towards the phase.
+     */
+    private static final int[] PHASES = {0, 0, 1, 1, 2, 4, 0};
+    /**
+     * The midgame bonus of each type of piece on each square, from white's
+     * side with the eighth row first, indexed by type.
+     */
+    private static final int[][] MIDGAME_TABLES = {
+        null,
+        {
+              0,   0,   0,   0,   0,   0,   0,   0,
+             50,  50,  50,  50,  50,  50,  50,  50,
+             10,  10,  20,  30,  30,  20,  10,  10,
+              5,   5,  10,  25,  25,  10,   5,   5,
+              0,   0,   0,  20,  20,   0,   0,   0,
+              5,  -5, -10,   0,   0, -10,  -5,   5,
+              5,  10,  10, -20, -20,  10,  10,   5,
+              0,   0,   0,   0,   0,   0,   0,   0,
+        },
+        {
+            -50, -40, -30, -30, -30, -30, -40, -50,
+            -40, -20,   0,   0,   0,   0, -20, -40,
+            -30,   0,  10,  15,  15,  10,   0, -30,
+            -30,   5,  15,  20,  20,  15,   5, -30,
+            -30,   0,  15,  20,  20,  15,   0, -30,
+            -30,   5,  10,  15,  15,  10,   5, -30,
+            -40, -20,   0,   5,   5,   0, -20, -40,
+            -50, -40, -30, -30, -30, -30, -40, -50,
+        },
+        {
+            -20, -10, -10, -10, -10, -10, -10, -20,
+            -10,   0,   0,   0,   0,   0,   0, -10,
+            -10,   0,   5,  10,  10,   5,   0, -10,
+            -10,   5,   5,  10,  10,   5,   5, -10,
+            -10,   0,  10,  10,  10,  10,   0, -10,
+            -10,  10,  10,  10,  10,  10,  10, -10,
+            -10,   5,   0,   0,   0,   0,   5, -10,
+            -20, -10, -10, -10, -10, -10, -10, -20,
+        },
+        {
+              0,   0,   0,   0,   0,   0,   0,   0,
+              5,  10,  10,  10,  10,  10,  10,   5,
+             -5,   0,   0,   0,   0,   0,   0,  -5,
+             -5,   0,   0,   0,   0,   0,   0,  -5,
+             -5,   0,   0,   0,   0,   0,   0,  -5,
+             -5,   0,   0,   0,   0,   0,   0,  -5,
+             -5,   0,   0,   0,   0,   0,   0,  -5,
+              0,   0,   0,   5,   5,   0,   0,   0,
+        },
+        {
+            -20, -10, -10,  -5,  -5, -10, -10, -20,
+            -10,   0,   0,   0,   0,   0,   0, -10,
+            -10,   0,   5,   5,   5,   5,   0, -10,
+             -5,   0,   5,   5,   5,   5,   0,  -5,
+              0,   0,   5,   5,   5,   5,   0,  -5,
+            -10,   5,   5,   5,   5,   5,   0, -10,
+            -10,   0,   5,   0,   0,   0,   0, -10,
+            -20, -10, -10,  -5,  -5, -10, -10, -20,
+        },
+        {
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -20, -30, -30, -40, -40, -30, -30, -20,
+            -10, -20, -20, -20, -20, -20, -20, -10,
+             20,  20,   0,   0,   0,   0,  20,  20,
+             20,  30,  10,   0,   0,  10,  30,  20,
+        },
+    };
+    /**
+     * The endgame bonus of a pawn on each square.
+     */
+    private static final int[] ENDGAME_PAWN_TABLE = {
+          0,   0,   0,   0,   0,   0,   0,   0,
+         80,  80,  80,  80,  80,  80,  80,  80,
+         50,  50,  50,  50,  50,  50,  50,  50,
+         30,  30,  30,  30,  30,  30,  30,  30,
+         20,  20,  20,  20,  20,  20,  20,  20,
+         10,  10,  10,  10,  10,  10,  10,  10,
+         10,  10,  10,  10,  10,  10,  10,  10,
+          0,   0,   0,   0,   0,   0,   0,   0,
+    };
+    /**
+     * The endgame bonus of a king on each square.
+     */
+    private static final int[] ENDGAME_KING_TABLE = {
+        -50, -40, -30, -20, -20, -30, -40, -50,
+        -30, -20, -10,   0,   0, -10, -20, -30,
+        -30, -10,  20,  30,  30,  20, -10, -30,
+        -30, -10,  30,  40,  40,  30, -10, -30,
+        -30, -10,  30,  40,  40,  30, -10, -30,
+        -30, -10,  20,  30,  30,  20, -10, -30,
+        -30, -30,   0,   0,   0,   0, -30, -30,
+        -50, -30, -30, -30, -30, -30, -30, -50,
+    };
+    /**
+     * The packed material and piece-square value of each piece code on
+     * each square, positive for white and negative for black.
+     */
+    private static final int[][] PIECE_SQUARE = new int[Piece.CODES][];
+    /**
+     * The packed material value of each piece code, positive for white
+     * and negative for black.
+     */
+    private static final int[] MATERIAL_VALUES = new int[Piece.CODES];
+    /**
+     * The packed penalty for each pawn beyond the first on a column.
+     */
+    private static final int DOUBLED_PAWN = pack(-10, -20);
+    /**
+     * The packed penalty for a pawn with no friendly pawn beside it.
+     */
+    private static final int ISOLATED_PAWN = pack(-10, -15);
+    /**
+     * The packed bonus for a passed pawn, indexed by rows advanced.
+     */
+    private static final int[] PASSED_PAWN = {pack(0, 0), pack(5, 10),
+        pack(10, 20), pack(20, 40), pack(35, 70), pack(60, 120),
+        pack(0, 0)};
+    /**
+     * The packed bonus for each pawn sheltering the king.
+     */
+    private static final int PAWN_SHIELD = pack(12, 0);
+    /**
+     * The packed penalty for each square next to the king the other side
+     * attacks.
+     */
+    private static final int KING_ZONE_ATTACK = pack(-8, -2);
+    /**
+     * The packed bonus for each square a piece can move to, indexed by
+     * type.
+     */
+    private static final int[] MOBILITY_BONUS = {0, 0, pack(4, 4),
+        pack(5, 5), pack(2, 4), pack(1, 2), 0};
+    /**
+     * The squares of the first column.
+     */
+    private static final long FIRST_COLUMN = 0x0101010101010101L;
+    /**
+     * The squares of each column and the columns beside it.
+     */
+    private static final long[] ADJACENT_COLUMNS = new long[Position.EIGHT];
+    /**
+     * The squares in front of each square on its own and the neighbouring
+     * columns, indexed by colour and square.
+     */
+    private static final long[][] PASSED_MASKS
+        = new long[2][Position.SQUARES];
+    /**
+     * The row pawns of each colour start on.
+     */
+    private static final int[] PAWN_ROWS = {6, 1};
+    /**
+     * The rows in front of a king checked for a pawn shield.
+     */
+    private static final int SHIELD_ROWS = 2;
+    /**
+     * Added to a packed value before shifting out the endgame value, so
+     * that a negative midgame value borrows correctly.
+     */
+    private static final int HALF = 0x8000;
+    /**
+     * The shift of the endgame value in a packed value.
+     */
+    private static final int ENDGAME_SHIFT = 16;
+    /**
+     * The row of the eighth rank, flipped to mirror a square for black.
+     */
+    private static final int MIRROR = 56;
+
+    static {
+        for (int code = 0; code < Piece.CODES; code++) {
+            PIECE_SQUARE[code] = new int[Position.SQUARES];
+            int type = Piece.type(code);
+            if (type < Piece.PAWN) {
+                continue;
+            }
+            int sign = Piece.colour(code) == Piece.WHITE ? 1 : -1;
+            MATERIAL_VALUES[code] = sign * pack(MIDGAME_VALUES[type],
+                    ENDGAME_VALUES[type]);
+            for (int square = 0; square < Position.SQUARES; square++) {
+                int seen = sign == 1 ? square : square ^ MIRROR;
+                int endgame = MIDGAME_TABLES[type][seen];
+                if (type == Piece.PAWN) {
+                    endgame = ENDGAME_PAWN_TABLE[seen];
+                } else if (type == Piece.KING) {
+                    endgame = ENDGAME_KING_TABLE[seen];
+                }
+                PIECE_SQUARE[code][square] = MATERIAL_VALUES[code]
+                        + sign * pack(MIDGAME_TABLES[type][seen], endgame);
+            }
+        }
+        for (int y = 0; y < Position.EIGHT; y++) {
+            long column = FIRST_COLUMN << y;
+            long lastColumn = FIRST_COLUMN << (Position.EIGHT - 1);
+            ADJACENT_COLUMNS[y] = column | ((column << 1) & ~FIRST_COLUMN)
+                    | ((column >>> 1) & ~lastColumn);
+        }
+        for (int square = 0; square < Position.SQUARES; square++) {
+            int x = Position.row(square);
+            long span = ADJACENT_COLUMNS[Position.column(square)];
+            for (int row = 0; row < Position.EIGHT; row++) {
+                long rowBits = 0xFFL << (row * Position.EIGHT);
+                if (row < x) {
+                    PASSED_MASKS[Piece.WHITE][square] |= span & rowBits;
+                } else if (row > x) {
+                    PASSED_MASKS[Piece.BLACK][square] |= span & rowBits;
+                }
+            }
+        }
+    }
+
+    /**
+     * Breakdown holds the midgame and endgame value of every term of a
+     * position, for seeing why it is scored the way it is.
+     */
+    public static final class Breakdown {
+
+        /**
+         * The midgame value of each term, for white.
+         */
+        private final int[] midgame;
+        /**
+         * The endgame value of each term, for white.
+         */
+        private final int[] endgame;
+        /**
+         * The phase of the position.
+         */
+        private final int phase;
+
+        /**
+         * Constructs an object of type Breakdown.
+         * @param packed
+         *          the packed value of each term
+         * @param phase
+         *          the phase of the position
+         */
+        private Breakdown(int[] packed, int phase) {
+            midgame = new int[TERMS];
+            endgame = new int[TERMS];
+            for (int term = 0; term < TERMS; term++) {
+                midgame[term] = midgame(packed[term]);
+                endgame[term] = endgame(packed[term]);
+            }
+            this.phase = phase;
+        }
+
+        /**
+         * Returns the midgame value of a term.
+         * @param term
+         *          the term, such as MATERIAL
+         * @return the value for white, in centipawns
+         */
+        public int getMidgame(int term) {
+            return midgame[term];
+        }
+
+        /**
+         * Returns the endgame value of a term.
+         * @param term
+         *          the term, such as MATERIAL
+         * @return the value for white, in centipawns
+         */
+        public int getEndgame(int term) {
+            return endgame[term];
+        }
+
+        /**
+         * Returns the blended value of a term.
+         * @param term
+         *          the term, such as MATERIAL
+         * @return the value for white, in centipawns
+         */
+        public int getTerm(int term) {
+            return taper(midgame[term], endgame[term], phase);
+        }
+
+        /**
+         * Returns the phase of the position.
+         * @return the phase, from 0 in a bare endgame to MAX_PHASE
+         */
+        public int getPhase() {
+            return phase;
+        }
+
+        /**
+         * Returns the score of the position.
+         * @return the score for white, in centipawns
+         */
+        public int getScore() {
+            int midgameTotal = 0;
+            int endgameTotal = 0;
+            for (int term = 0; term < TERMS; term++) {
+                midgameTotal += midgame[term];
+                endgameTotal += endgame[term];
+            }
+            return taper(midgameTotal, endgameTotal, phase);
+        }
+
+        /**
+         * Returns a table of the terms.
+         * @return the table
+         */
+        public String toString() {
+            StringBuilder table = new StringBuilder(String.format(
+                    "%-14s%9s%9s%9s%n", "Term", "Midgame", "Endgame",
+                    "Blended"));
+            for (int term = 0; term < TERMS; term++) {
+                table.append(String.format("%-14s%9d%9d%9d%n",
+                        TERM_NAMES[term], midgame[term], endgame[term],
+                        getTerm(term)));
+            }
+            table.append(String.format("%-14s%27d%nPhase %d of %d%n",
+                    "Total", getScore(), phase, MAX_PHASE));
+            return table.toString();
+        }
+    }
+
+    /**
+     * Evaluation only has static members.
+     */
+    private Evaluation() {
+    }
+
+    /**
+     * Returns the value of a type of piece.
+     * @param type
+     *          the type
+     * @return the value in centipawns
+     */
+    public static int value(int type) {
+        return VALUES[type];
+    }
+
+    /**
+     * Returns a midgame and an endgame value packed into one int.
+     * @param midgame
+     *          the midgame value
+     * @param endgame
+     *          the endgame value
+     * @return the packed value
+     */
+    static int pack(int midgame, int endgame) {
+        return (endgame << ENDGAME_SHIFT) + midgame;
+    }
+
+    /**
+     * Returns the midgame value of a packed value.
+     * @param packed
+     *          the packed value
+     * @return the midgame value
+     */
+    static int midgame(int packed) {
+        return (short) packed;
+    }
+
+    /**
+     * Returns the endgame value of a packed value.
+     * @param packed
+     *          the packed value
+     * @return the endgame value
+     */
+    static int endgame(int packed) {
+        return (short) ((packed + HALF) >> ENDGAME_SHIFT);
+    }
+
+    /**
+     * Returns the packed material and piece-square value of a piece on a
+     * square, which Position adds up as pieces come and go.
+     * @param code
+     *          the piece code
+     * @param square
+     *          the square
+     * @return the packed value, positive for white and negative for black
+     */
+    static int pieceSquare(int code, int square) {
+        return PIECE_SQUARE[code][square];
+    }
+
+    /**
+     * Returns how much a piece counts towards the phase, which Position
+     * adds up as pieces come and go.
+     * @param code
+     *          the piece code
+     * @return the phase of the piece
+     */
+    static int phase(int code) {
+        return PHASES[Piece.type(code)];
+    }
+
+    /**
+     * Blends a midgame and an endgame value by the phase.
+     * @param midgame
+     *          the midgame value
+     * @param endgame
+     *          the endgame value
+     * @param phase
+     *          the phase, which is capped at MAX_PHASE
+     * @return the blended value
+     */
+    private static int taper(int midgame, int endgame, int phase) {
+        int weight = Math.min(phase, MAX_PHASE);
+        return (midgame * weight + endgame * (MAX_PHASE - weight))
+                / MAX_PHASE;
+    }
+
+    /**
+     * Scores a position.
+     * @param position
+     *          the position
+     * @return the score for the side to move, in centipawns
+     */
+    public static int evaluate(Position position) {
+        int packed = position.getPieceSquares()
+                + pawns(position, Piece.WHITE) - pawns(position, Piece.BLACK)
+                + kingSafety(position, Piece.WHITE)
+                - kingSafety(position, Piece.BLACK)
+                + mobility(position, Piece.WHITE)
+                - mobility(position, Piece.BLACK);
+        int score = taper(midgame(packed), endgame(packed),
+                position.getPhase());
+        if (position.getSideToMove() == Piece.BLACK) {
+            return -score;
+        }
+        return score;
+    }
+
+    /**
+     * Works out every term of a position from scratch, without the totals
+     * the position keeps, so the result also checks them.
+     * @param position
+     *          the position
+     * @return the terms
+     */
+    public static Breakdown breakdown(Position position) {
+        int[] packed = new int[TERMS];
+        int phase = 0;
+        for (int square = 0; square < Position.SQUARES; square++) {
+            int code = position.pieceAt(square);
+            if (code != Piece.EMPTY) {
+                packed[MATERIAL] += MATERIAL_VALUES[code];
+                packed[PIECE_SQUARES] += PIECE_SQUARE[code][square]
+                        - MATERIAL_VALUES[code];
+                phase += phase(code);
+            }
+        }
+        packed[PAWNS] = pawns(position, Piece.WHITE)
+                - pawns(position, Piece.BLACK);
+        packed[KING_SAFETY] = kingSafety(position, Piece.WHITE)
+                - kingSafety(position, Piece.BLACK);
+        packed[MOBILITY] = mobility(position, Piece.WHITE)
+                - mobility(position, Piece.BLACK);
+        return new Breakdown(packed, phase);
+    }
+
+    /**
+     * Returns the packed value of a colour's pawn structure: doubled,
+     * isolated and passed pawns.
+     * @param position
+     *          the position
+     * @param colour
+     *          the colour
+     * @return the packed value
+     */
+    private static int pawns(Position position, int colour) {
+        long own = position.getPieces(Piece.PAWN, colour);
+        long other = position.getPieces(Piece.PAWN, Piece.opposite(colour));
+        int packed = 0;
+        for (int y = 0; y < Position.EIGHT; y++) {
+            int count = Long.bitCount(own & (FIRST_COLUMN << y));
+            if (count > 1) {
+                packed += DOUBLED_PAWN * (count - 1);
+            }
+        }
+        for (long left = own; left != 0L; left &= left - 1) {
+            int square = Long.numberOfTrailingZeros(left);
+            int y = Position.column(square);
+            if ((own & ADJACENT_COLUMNS[y] & ~(FIRST_COLUMN << y)) == 0L) {
+                packed += ISOLATED_PAWN;
+            }
+            if ((other & PASSED_MASKS[colour][square]) == 0L) {
+                packed += PASSED_PAWN[Math.abs(Position.row(square)
+                        - PAWN_ROWS[colour])];
+            }
+        }
+        return packed;
+    }
+
+    /**
+     * Returns the packed value of a colour's king safety: the pawns in
+     * front of the king and the squares around it the other side attacks.
+     * @param position
+     *          the position
+     * @param colour
+     *          the colour
+     * @return the packed value
+     */
+    private static int kingSafety(Position position, int colour) {
+        int king = position.kingSquare(colour);
+        if (king == Position.NO_SQUARE) {
+            return 0;
+        }
+        int x = Position.row(king);
+        int forward = colour == Piece.WHITE ? -1 : 1;
+        long shield = 0L;
+        for (int step = 1; step <= SHIELD_ROWS; step++) {
+            int row = x + forward * step;
+            if (row >= 0 && row < Position.EIGHT) {
+                shield |= 0xFFL << (row * Position.EIGHT);
+            }
+        }
+        shield &= ADJACENT_COLUMNS[Position.column(king)];
+        long zone = MoveGenerator.kingAttacks(king) | (1L << king);
+        return PAWN_SHIELD * Long.bitCount(shield
+                & position.getPieces(Piece.PAWN, colour))
+                + KING_ZONE_ATTACK * Long.bitCount(zone
+                & position.getAttacks(Piece.opposite(colour)));
+    }
+
+    /**
+     * Returns the packed value of a colour's mobility: the squares its
+     * knights, bishops, rooks and queens attack that it does not occupy.
+     * @param position
+     *          the position
+     * @param colour
+     *          the colour
+     * @return the packed value
+     */
+    private static int mobility(Position position, int colour) {
+        long own = position.getOccupancy(colour);
+        int packed = 0;
+        for (int type = Piece.KNIGHT; type <= Piece.QUEEN; type++) {
+            for (long left = position.getPieces(type, colour); left != 0L;
+                    left &= left - 1) {
+                int square = Long.numberOfTrailingZeros(left);
+                packed += MOBILITY_BONUS[type] * Long.bitCount(
+                        position.getSquareAttacks(square) & ~own);
+            }
+        }
+        return packed;
+    }
+}
@@ -0,0 +1,111 @@
+package game;
+
+import java.util.Random;
+
+/**
+ * EvaluationBenchmark measures how many positions Evaluation scores per
+ * second. Positions are collected by playing random legal moves from each
+ * reference position of Perft, then each is scored many times with the
+ * totals Position keeps up to date, and once more working every term out
+ * from scratch for comparison. The breakdown of the first reference
+ * position is printed as well.
+ *
+ * @author Kiaan Castillo A01024604
+ * @version 2018
+ */
+public final class EvaluationBenchmark {
+
+    /**
+     * The number of positions collected from each reference position.
+     */
+    private static final int POSITIONS_PER_FEN = 200;
+    /**
+     * The most random moves played to reach a position.
+     */
+    private static final int MAX_PLIES = 60;
+    /**
+     * The number of times every position is scored in a round.
+     */
+    private static final int REPEATS = 200;
+    /**
+     * The number of rounds, the first to warm up.
+     */
+    private static final int ROUNDS = 3;
+    /**
+     * The seed of the random moves.
+     */
+    private static final long SEED = 2018L;
+    /**
+     * Nanoseconds in a second.
+     */
+    private static final double NANOS = 1e9;
+
+    /**
+     * EvaluationBenchmark only has static members.
+     */
+    private EvaluationBenchmark() {
+    }
+
+    /**
+     * Returns positions reached by random legal moves from the reference
+     * positions.
+     * @return the positions
+     */
+    private static Position[] collect() {
+        Random random = new Random(SEED);
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        Position[] positions
+            = new Position[Perft.REFERENCE_FENS.length * POSITIONS_PER_FEN];
+        int next = 0;
+        for (String fen : Perft.REFERENCE_FENS) {
+            for (int index = 0; index < POSITIONS_PER_FEN; index++) {
+                Position position = new Position();
+                Fen.parse(fen, position);
+                int plies = random.nextInt(MAX_PLIES);
+                for (int ply = 0; ply < plies; ply++) {
+                    int count = MoveGenerator.generate(position, moves, 0);
+                    if (count == 0) {
+                        break;
+                    }
+                    position.makeMove(moves[random.nextInt(count)]);
+                }
+                positions[next++] = position;
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * Runs the benchmark.
+     * @param args
+     *          not used
+     */
+    public static void main(String[] args) {
+        Position[] positions = collect();
+        Position first = new Position();
+        Fen.parse(Perft.REFERENCE_FENS[1], first);
+        System.out.print(Evaluation.breakdown(first));
+
+        long evaluations = (long) positions.length * REPEATS;
+        for (int round = 0; round < ROUNDS; round++) {
+            long sum = 0L;
+            long start = System.nanoTime();
+            for (int repeat = 0; repeat < REPEATS; repeat++) {
+                for (Position position : positions) {
+                    sum += Evaluation.evaluate(position);
+                }
+            }
+            double seconds = (System.nanoTime() - start) / NANOS;
+
+            start = System.nanoTime();
+            for (Position position : positions) {
+                sum += Evaluation.breakdown(position).getScore();
+            }
+            double scratch = (System.nanoTime() - start) / NANOS;
+            System.out.printf("%d evaluations in %.3f s: %.0f/s "
+                    + "(from scratch %.0f/s, checksum %d)%n", evaluations,
+                    seconds, evaluations / seconds,
+                    positions.length / scratch, sum);
+        }
+    }
+}
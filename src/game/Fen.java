@@ -0,0 +1,429 @@
+package game;
+
+/**
+ * Fen reads and writes positions in Forsyth-Edwards Notation. The parser
+ * works straight off the characters into an existing Position and makes
+ * no objects unless the record is invalid, so millions of positions can
+ * be loaded from test suites and opening files without garbage.
+ *
+ * The halfmove clock and fullmove number may be left off, as they are in
+ * EPD files; they then default to 0 and 1. Castling rights whose king or
+ * rook is not on its starting square are dropped. Positions that cannot
+ * arise in a game are rejected: a pawn on the first or last row, the
+ * side not to move in check, or an en passant square that is occupied,
+ * has no enemy pawn beyond it or whose pawn's starting square is taken,
+ * would let the move generator make moves off the board, capture a king
+ * or take a piece en passant.
+ *
+ * @author Kiaan Castillo A01024604
+ * @version 2018
+ */
+public final class Fen {
+
+    /**
+     * The start position of standard chess.
+     */
+    public static final String STANDARD_START
+        = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+    /**
+     * The start position of the board, which has the king and queen
+     * swapped and so no castling.
+     */
+    public static final String BOARD_START
+        = "rnbkqbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBKQBNR w - - 0 1";
+    /**
+     * The letters of the white pieces, indexed by type.
+     */
+    private static final String PIECE_LETTERS = " PNBRQK";
+    /**
+     * The letters of the castling rights, lowest bit first.
+     */
+    private static final String CASTLING_LETTERS = "KQkq";
+    /**
+     * The square each castling right needs its rook on, lowest bit first.
+     */
+    private static final int[] CASTLING_ROOK_SQUARES = {63, 56, 7, 0};
+    /**
+     * The colour that owns each castling right, lowest bit first.
+     */
+    private static final int[] CASTLING_COLOURS = {
+        Piece.WHITE, Piece.WHITE, Piece.BLACK, Piece.BLACK,
+    };
+    /**
+     * The row of the en passant square when white is to move.
+     */
+    private static final int WHITE_EN_PASSANT_ROW = 2;
+    /**
+     * The row of the en passant square when black is to move.
+     */
+    private static final int BLACK_EN_PASSANT_ROW = 5;
+    /**
+     * The base of the numbers.
+     */
+    private static final int TEN = 10;
+    /**
+     * The squares of the first and last rows, where no pawn can stand.
+     */
+    private static final long BACK_ROWS = 0xFF000000000000FFL;
+    /**
+     * The largest clock or move number accepted.
+     */
+    private static final int MAX_NUMBER = 0xFFFF;
+
+    /**
+     * Fen only has static members.
+     */
+    private Fen() {
+    }
+
+    /**
+     * Sets a position from a FEN record.
+     * @param fen
+     *          the FEN record
+     * @param position
+     *          the position to set; its state is undefined if the record
+     *          is invalid
+     * @throws IllegalArgumentException
+     *          if the record is invalid
+     */
+    public static void parse(CharSequence fen, Position position) {
+        position.clear();
+        int length = fen.length();
+        int index = 0;
+        int row = 0;
+        int column = 0;
+        while (index < length && fen.charAt(index) != ' ') {
+            char c = fen.charAt(index);
+            if (c == '/') {
+                if (column != Position.EIGHT || ++row >= Position.EIGHT) {
+                    throw invalid(fen, index, "misplaced '/'");
+                }
+                column = 0;
+            } else if (c >= '1' && c <= '8') {
+                column += c - '0';
+                if (column > Position.EIGHT) {
+                    throw invalid(fen, index, "row too long");
+                }
+            } else {
+                int type = PIECE_LETTERS.indexOf(Character.toUpperCase(c));
+                if (type <= 0 || column >= Position.EIGHT) {
+                    throw invalid(fen, index, "bad piece '" + c + "'");
+                }
+                int colour = Piece.WHITE;
+                if (Character.isLowerCase(c)) {
+                    colour = Piece.BLACK;
+                }
+                position.put(Position.square(row, column++),
+                        Piece.code(type, colour));
+            }
+            index++;
+        }
+        if (row != Position.EIGHT - 1 || column != Position.EIGHT) {
+            throw invalid(fen, index, "board incomplete");
+        }
+
+        index = skipSpace(fen, index);
+        if (index >= length) {
+            throw invalid(fen, index, "side to move missing");
+        }
+        char side = fen.charAt(index++);
+        if (side == 'b') {
+            position.setSideToMove(Piece.BLACK);
+        } else if (side != 'w') {
+            throw invalid(fen, index - 1, "bad side to move");
+        }
+
+        index = skipSpace(fen, index);
+        int castling = 0;
+        if (index < length && fen.charAt(index) == '-') {
+            index++;
+        } else {
+            while (index < length && fen.charAt(index) != ' ') {
+                int right = CASTLING_LETTERS.indexOf(fen.charAt(index));
+                if (right < 0) {
+                    throw invalid(fen, index, "bad castling right");
+                }
+                castling |= 1 << right;
+                index++;
+            }
+        }
+        position.setCastling(possibleCastling(position, castling));
+
+        index = skipSpace(fen, index);
+        if (index < length && fen.charAt(index) == '-') {
+            index++;
+        } else if (index + 1 < length) {
+            int epColumn = fen.charAt(index) - 'a';
+            int epRow = '8' - fen.charAt(index + 1);
+            int expected = WHITE_EN_PASSANT_ROW;
+            if (position.getSideToMove() == Piece.BLACK) {
+                expected = BLACK_EN_PASSANT_ROW;
+            }
+            if (epColumn < 0 || epColumn >= Position.EIGHT
+                    || epRow != expected) {
+                throw invalid(fen, index, "bad en passant square");
+            }
+            position.setEnPassant(Position.square(epRow, epColumn));
+            index += 2;
+        } else {
+            throw invalid(fen, index, "en passant square missing");
+        }
+        String problem = problem(position);
+        if (problem != null) {
+            throw invalid(fen, index, problem);
+        }
+
+        index = skipSpace(fen, index);
+        if (index < length) {
+            int end = tokenEnd(fen, index);
+            position.setHalfmoveClock(number(fen, index, end,
+                    "bad halfmove clock"));
+            index = skipSpace(fen, end);
+            if (index < length) {
+                end = tokenEnd(fen, index);
+                position.setFullmoveNumber(Math.max(1, number(fen, index,
+                        end, "bad fullmove number")));
+            }
+        }
+    }
+
+    /**
+     * Returns the index of the space or end after a field.
+     * @param fen
+     *          the FEN record
+     * @param index
+     *          the index of the start of the field
+     * @return the index after the field
+     */
+    private static int tokenEnd(CharSequence fen, int index) {
+        while (index < fen.length() && fen.charAt(index) != ' ') {
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * Returns the value of a field of decimal digits, capped at
+     * MAX_NUMBER.
+     * @param fen
+     *          the FEN record
+     * @param start
+     *          the index of the first character of the field
+     * @param end
+     *          the index after the field
+     * @param problem
+     *          what the problem is if the field is not a number
+     * @return the value
+     * @throws IllegalArgumentException
+     *          if the field has anything but digits
+     */
+    private static int number(CharSequence fen, int start, int end,
+            String problem) {
+        int value = 0;
+        for (int index = start; index < end; index++) {
+            if (!isDigit(fen.charAt(index))) {
+                throw invalid(fen, index, problem);
+            }
+            value = Math.min(value * TEN + fen.charAt(index) - '0',
+                    MAX_NUMBER);
+        }
+        return value;
+    }
+
+    /**
+     * Returns why a position cannot arise in a game, or null if it can.
+     * Every way of loading a position checks it, since the move generator
+     * relies on it: a pawn on the first or last row would move off the
+     * board, the side not to move in check would let a king be captured,
+     * and castling or en passant without the pieces they need would move
+     * pieces that are not there.
+     * @param position
+     *          the position
+     * @return what is wrong, or null
+     */
+    static String problem(Position position) {
+        for (int colour = Piece.WHITE; colour <= Piece.BLACK; colour++) {
+            if (Long.bitCount(position.getPieces(Piece.KING, colour)) != 1) {
+                return "needs one king of each colour";
+            }
+        }
+        if (((position.getPieces(Piece.PAWN, Piece.WHITE)
+                | position.getPieces(Piece.PAWN, Piece.BLACK))
+                & BACK_ROWS) != 0L) {
+            return "pawn on the first or last row";
+        }
+        int mover = position.getSideToMove();
+        if ((position.getAttacks(mover) & position.getPieces(Piece.KING,
+                Piece.opposite(mover))) != 0L) {
+            return "side not to move is in check";
+        }
+        int castling = position.getCastling();
+        if (possibleCastling(position, castling) != castling) {
+            return "castling right without its king or rook";
+        }
+        int square = position.getEnPassant();
+        int expected = mover == Piece.WHITE ? WHITE_EN_PASSANT_ROW
+                : BLACK_EN_PASSANT_ROW;
+        if (square != Position.NO_SQUARE
+                && (Position.row(square) != expected
+                || !canPassPawn(position, square))) {
+            return "impossible en passant square";
+        }
+        return null;
+    }
+
+    /**
+     * Returns the castling rights whose king and rook are still on their
+     * starting squares.
+     * @param position
+     *          the position
+     * @param castling
+     *          the castling rights given
+     * @return the castling rights kept
+     */
+    private static int possibleCastling(Position position, int castling) {
+        int kept = 0;
+        for (int right = 0; right < CASTLING_LETTERS.length(); right++) {
+            int colour = CASTLING_COLOURS[right];
+            if ((castling & (1 << right)) != 0
+                    && position.pieceAt(Position.castlingKingSquare(colour))
+                        == Piece.code(Piece.KING, colour)
+                    && position.pieceAt(CASTLING_ROOK_SQUARES[right])
+                        == Piece.code(Piece.ROOK, colour)) {
+                kept |= 1 << right;
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * Returns true if a pawn of the side not to move can just have passed
+     * a square with a double push: the square and the one the pawn came
+     * from are empty, and the pawn stands on the square beyond.
+     * @param position
+     *          the position
+     * @param square
+     *          the square passed
+     * @return true if the square can be taken on en passant
+     */
+    private static boolean canPassPawn(Position position, int square) {
+        int mover = position.getSideToMove();
+        int forward = mover == Piece.WHITE ? Position.EIGHT
+                : -Position.EIGHT;
+        return position.pieceAt(square) == Piece.EMPTY
+                && position.pieceAt(square - forward) == Piece.EMPTY
+                && position.pieceAt(square + forward)
+                    == Piece.code(Piece.PAWN, Piece.opposite(mover));
+    }
+
+    /**
+     * Returns true if a character is a decimal digit.
+     * @param c
+     *          the character
+     * @return true if a digit
+     */
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Returns the index of the first character that is not a space.
+     * @param fen
+     *          the FEN record
+     * @param index
+     *          the index to start from
+     * @return the index
+     */
+    private static int skipSpace(CharSequence fen, int index) {
+        while (index < fen.length() && fen.charAt(index) == ' ') {
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * Returns the exception thrown for an invalid record.
+     * @param fen
+     *          the FEN record
+     * @param index
+     *          where in the record the problem is
+     * @param problem
+     *          what the problem is
+     * @return the exception
+     */
+    private static IllegalArgumentException invalid(CharSequence fen,
+            int index, String problem) {
+        return new IllegalArgumentException("Invalid FEN at " + index + ", "
+                + problem + ": " + fen);
+    }
+
+    /**
+     * Returns the FEN record of a position.
+     * @param position
+     *          the position
+     * @return the FEN record
+     */
+    public static String toFen(Position position) {
+        StringBuilder builder = new StringBuilder();
+        append(position, builder);
+        return builder.toString();
+    }
+
+    /**
+     * Appends the FEN record of a position to a builder.
+     * @param position
+     *          the position
+     * @param builder
+     *          the builder
+     */
+    public static void append(Position position, StringBuilder builder) {
+        for (int row = 0; row < Position.EIGHT; row++) {
+            if (row > 0) {
+                builder.append('/');
+            }
+            int empty = 0;
+            for (int column = 0; column < Position.EIGHT; column++) {
+                int code = position.pieceAt(Position.square(row, column));
+                if (code == Piece.EMPTY) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) {
+                    builder.append(empty);
+                    empty = 0;
+                }
+                char letter = PIECE_LETTERS.charAt(Piece.type(code));
+                if (Piece.colour(code) == Piece.BLACK) {
+                    letter = Character.toLowerCase(letter);
+                }
+                builder.append(letter);
+            }
+            if (empty > 0) {
+                builder.append(empty);
+            }
+        }
+
+        builder.append(position.getSideToMove() == Piece.WHITE
+                ? " w " : " b ");
+        int castling = position.getCastling();
+        if (castling == 0) {
+            builder.append('-');
+        }
+        for (int right = 0; right < CASTLING_LETTERS.length(); right++) {
+            if ((castling & (1 << right)) != 0) {
+                builder.append(CASTLING_LETTERS.charAt(right));
+            }
+        }
+
+        builder.append(' ');
+        int enPassant = position.getEnPassant();
+        if (enPassant == Position.NO_SQUARE) {
+            builder.append('-');
+        } else {
+            builder.append((char) ('a' + Position.column(enPassant)))
+                .append((char) ('8' - Position.row(enPassant)));
+        }
+        builder.append(' ').append(position.getHalfmoveClock())
+            .append(' ').append(position.getFullmoveNumber());
+    }
+}
@@ -0,0 +1,589 @@
+package game;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * GameArchive reads a file holding any number of games, each of which can
+ * be loaded without reading the others. The file is mapped into memory in
+ * regions of a gigabyte, so loading a game is a lookup in the index at
+ * the end of the file and a read of its record, and the operating system
+ * only pages in what is touched. Archives are written with a Writer.
+ *
+ * The file starts with a 32 byte header: the magic number "SAGA", the
+ * version, the number of games and the offset of the index. Each game is
+ * a record of its length, its result, whether it has its own start
+ * position, its number of moves and tags, the start position in the
+ * GameFile format if it has one, its tags, and one byte per move giving
+ * the move's place among the legal moves in MoveGenerator's order,
+ * followed by the CRC-32 of all of it. The index is one eight byte offset
+ * per game.
+ *
+ * An archive may be read from many threads at once.
+ *
+ * @author Kiaan Castillo A01024604
+ * @version 2018
+ */
+public final class GameArchive implements Closeable {
+
+    /**
+     * The first four bytes of every archive, "SAGA".
+     */
+    public static final int MAGIC = 0x53414741;
+    /**
+     * The version of the format written.
+     */
+    public static final int VERSION = 1;
+    /**
+     * The length of the header.
+     */
+    public static final int HEADER_LENGTH = 32;
+    /**
+     * The longest record, its length field included.
+     */
+    public static final int MAX_RECORD = 1 << 16;
+    /**
+     * The bytes each mapped region starts apart.
+     */
+    private static final long REGION = 1L << 30;
+    /**
+     * The length of a record's length field.
+     */
+    private static final int LENGTH_FIELD = Short.BYTES;
+    /**
+     * The length of a record's checksum.
+     */
+    private static final int CHECKSUM_LENGTH = Integer.BYTES;
+    /**
+     * The offset of the number of moves within a record.
+     */
+    private static final int MOVE_COUNT_OFFSET = 4;
+    /**
+     * The flag of a record that has its own start position.
+     */
+    private static final int OWN_START = 1;
+    /**
+     * The results a record can hold, by code.
+     */
+    private static final String[] RESULTS = {"1-0", "0-1", "1/2-1/2",
+        PgnGame.UNKNOWN_RESULT};
+    /**
+     * The code of the unknown result.
+     */
+    private static final int UNKNOWN_CODE = RESULTS.length - 1;
+    /**
+     * The most tags a game may have.
+     */
+    private static final int MAX_TAGS = 255;
+    /**
+     * The longest tag name, in bytes.
+     */
+    private static final int MAX_NAME = 255;
+    /**
+     * Mask of an unsigned byte.
+     */
+    private static final int BYTE_MASK = 0xFF;
+    /**
+     * Mask of an unsigned short.
+     */
+    private static final int SHORT_MASK = 0xFFFF;
+    /**
+     * The file.
+     */
+    private final Path path;
+    /**
+     * The file mapped in regions REGION apart, each overlapping the next
+     * by MAX_RECORD so every record lies whole in one of them.
+     */
+    private final MappedByteBuffer[] regions;
+    /**
+     * The number of games.
+     */
+    private final int size;
+    /**
+     * The offset of the index.
+     */
+    private final long indexOffset;
+
+    /**
+     * Opens an archive.
+     * @param path
+     *          the file
+     * @throws IOException
+     *          if the file cannot be read or is not an archive
+     */
+    public GameArchive(Path path) throws IOException {
+        this.path = path;
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.READ)) {
+            long length = channel.size();
+            int count = (int) ((length + REGION - 1) / REGION);
+            regions = new MappedByteBuffer[Math.max(count, 1)];
+            for (int region = 0; region < count; region++) {
+                long start = region * REGION;
+                regions[region] = channel.map(FileChannel.MapMode.READ_ONLY,
+                        start, Math.min(REGION + MAX_RECORD, length - start));
+            }
+            if (length < HEADER_LENGTH || regions[0].getInt(0) != MAGIC) {
+                throw new IOException("Not a game archive: " + path);
+            }
+            int version = regions[0].getInt(Integer.BYTES);
+            if (version != VERSION) {
+                throw new IOException("Unsupported game archive version "
+                        + version + ": " + path);
+            }
+            long games = regions[0].getLong(2 * Integer.BYTES);
+            indexOffset = regions[0].getLong(2 * Integer.BYTES
+                    + Long.BYTES);
+            if (games < 0L || games > Integer.MAX_VALUE
+                    || indexOffset < HEADER_LENGTH
+                    || indexOffset + games * Long.BYTES != length) {
+                throw new IOException("Game archive is corrupt: " + path);
+            }
+            size = (int) games;
+        }
+    }
+
+    /**
+     * Returns the number of games.
+     * @return the number of games
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the file.
+     * @return path
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Returns a view of the file from an offset on, with at least
+     * MAX_RECORD bytes unless the file ends first.
+     * @param offset
+     *          the offset
+     * @return the view, positioned at the offset
+     */
+    private ByteBuffer at(long offset) {
+        ByteBuffer view = regions[(int) (offset / REGION)].duplicate();
+        view.position((int) (offset % REGION));
+        return view;
+    }
+
+    /**
+     * Returns the offset of a game's record.
+     * @param index
+     *          the game, from 0
+     * @return the offset
+     */
+    private long offset(int index) {
+        long entry = indexOffset + (long) index * Long.BYTES;
+        return regions[(int) (entry / REGION)].getLong((int) (entry
+                % REGION));
+    }
+
+    /**
+     * Returns the number of moves of a game, reading only its fixed
+     * fields.
+     * @param index
+     *          the game, from 0
+     * @return the number of moves
+     */
+    public int getMoveCount(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("No game " + index);
+        }
+        ByteBuffer record = at(offset(index));
+        return record.getShort(record.position() + MOVE_COUNT_OFFSET)
+                & SHORT_MASK;
+    }
+
+    /**
+     * Loads a game.
+     * @param index
+     *          the game, from 0
+     * @param game
+     *          set to the game, with every move replayed
+     * @param moves
+     *          scratch space for at least MoveGenerator.MAX_MOVES moves
+     * @throws IOException
+     *          if the record is corrupt
+     */
+    public void read(int index, PgnGame game, int[] moves)
+            throws IOException {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("No game " + index);
+        }
+        ByteBuffer record = at(offset(index));
+        int start = record.position();
+        int length = LENGTH_FIELD + (record.getShort(start) & SHORT_MASK);
+        if (length > Math.min(MAX_RECORD, record.remaining())
+                || length < MOVE_COUNT_OFFSET + CHECKSUM_LENGTH
+                || record.getInt(start + length - CHECKSUM_LENGTH)
+                != checksum(record, start, length - CHECKSUM_LENGTH)) {
+            throw corrupt(index);
+        }
+        record.position(start + LENGTH_FIELD);
+        int result = record.get() & BYTE_MASK;
+        int flags = record.get() & BYTE_MASK;
+        int moveCount = record.getShort() & SHORT_MASK;
+        int tagCount = record.get() & BYTE_MASK;
+        if (result >= RESULTS.length) {
+            throw corrupt(index);
+        }
+        game.clear(0L);
+        game.setResult(RESULTS[result]);
+        Position position = game.getPosition();
+        if ((flags & OWN_START) != 0) {
+            GameFile.decode(record, position, path + " game " + index);
+        } else {
+            Fen.parse(Fen.STANDARD_START, position);
+        }
+        game.setStart(position);
+        for (int tag = 0; tag < tagCount; tag++) {
+            String name = string(record, record.get() & BYTE_MASK);
+            game.setTag(name, string(record, record.getShort()
+                    & SHORT_MASK));
+        }
+        for (int ply = 0; ply < moveCount; ply++) {
+            int move = move(game.getPosition(), record.get() & BYTE_MASK,
+                    moves);
+            if (move == 0) {
+                throw corrupt(index);
+            }
+            game.addMove(move);
+        }
+        if (record.position() - start != length - CHECKSUM_LENGTH) {
+            throw corrupt(index);
+        }
+    }
+
+    /**
+     * Returns the legal move at a place in MoveGenerator's order. Only the
+     * moves of the pieces up to the one making the move are generated.
+     * @param position
+     *          the position
+     * @param choice
+     *          the place of the move
+     * @param moves
+     *          scratch space for at least MoveGenerator.MAX_MOVES moves
+     * @return the move, or 0 if there are not that many legal moves
+     */
+    private static int move(Position position, int choice, int[] moves) {
+        long own = position.getOccupancy(position.getSideToMove());
+        int skipped = 0;
+        while (own != 0L) {
+            int from = Long.numberOfTrailingZeros(own);
+            own &= own - 1;
+            int count = MoveGenerator.generateFrom(position, from, moves, 0);
+            if (choice < skipped + count) {
+                return moves[choice - skipped];
+            }
+            skipped += count;
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the place of a legal move in MoveGenerator's order. Only the
+     * moves of the pieces up to the one making the move are generated.
+     * @param position
+     *          the position
+     * @param move
+     *          the move
+     * @param moves
+     *          scratch space for at least MoveGenerator.MAX_MOVES moves
+     * @return the place, or -1 if the move is not legal
+     */
+    private static int choice(Position position, int move, int[] moves) {
+        int target = MoveGenerator.from(move);
+        long own = position.getOccupancy(position.getSideToMove());
+        int skipped = 0;
+        while (own != 0L) {
+            int from = Long.numberOfTrailingZeros(own);
+            own &= own - 1;
+            int count = MoveGenerator.generateFrom(position, from, moves, 0);
+            if (from == target) {
+                for (int index = 0; index < count; index++) {
+                    if (moves[index] == move) {
+                        return skipped + index;
+                    }
+                }
+                return -1;
+            }
+            skipped += count;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the code of a game result. Results other than the ones a
+     * record can hold are unknown.
+     * @param result
+     *          the result
+     * @return the code
+     */
+    private static int resultCode(String result) {
+        for (int code = 0; code < RESULTS.length; code++) {
+            if (RESULTS[code].equals(result)) {
+                return code;
+            }
+        }
+        return UNKNOWN_CODE;
+    }
+
+    /**
+     * Returns the CRC-32 of some bytes of a buffer.
+     * @param buffer
+     *          the buffer, whose position is kept
+     * @param start
+     *          the index of the first byte
+     * @param length
+     *          the number of bytes
+     * @return the checksum
+     */
+    private static int checksum(ByteBuffer buffer, int start, int length) {
+        ByteBuffer bytes = buffer.duplicate();
+        bytes.limit(start + length).position(start);
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Reads a string of UTF-8 bytes.
+     * @param record
+     *          the record, positioned at the bytes
+     * @param length
+     *          the number of bytes
+     * @return the string
+     */
+    private static String string(ByteBuffer record, int length) {
+        byte[] bytes = new byte[length];
+        record.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the exception for a corrupt record.
+     * @param index
+     *          the game
+     * @return the exception
+     */
+    private IOException corrupt(int index) {
+        return new IOException("Game " + index + " is corrupt: " + path);
+    }
+
+    /**
+     * Lets go of the mapped file. The mapping itself is released when it
+     * is garbage collected.
+     */
+    public void close() {
+        Arrays.fill(regions, null);
+    }
+
+    /**
+     * Writer writes an archive one game after another.
+     */
+    public static final class Writer implements Closeable {
+
+        /**
+         * The size of the write buffer.
+         */
+        private static final int BUFFER_SIZE = 1 << 20;
+        /**
+         * The offsets the index starts with room for.
+         */
+        private static final int INITIAL_GAMES = 1024;
+        /**
+         * The file.
+         */
+        private final FileChannel channel;
+        /**
+         * The records not yet written.
+         */
+        private final ByteBuffer buffer;
+        /**
+         * The record being built.
+         */
+        private final ByteBuffer record;
+        /**
+         * Scratch space for generating moves.
+         */
+        private final int[] moves;
+        /**
+         * The position the moves are replayed on.
+         */
+        private final Position position;
+        /**
+         * The standard start position.
+         */
+        private final Position standard;
+        /**
+         * The offset of each game written.
+         */
+        private long[] offsets;
+        /**
+         * The number of games written.
+         */
+        private int count;
+        /**
+         * The offset the next record is written at.
+         */
+        private long offset;
+
+        /**
+         * Starts an archive, replacing any file.
+         * @param path
+         *          the file
+         * @throws IOException
+         *          if the file cannot be written
+         */
+        public Writer(Path path) throws IOException {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            record = ByteBuffer.allocate(MAX_RECORD);
+            moves = new int[MoveGenerator.MAX_MOVES];
+            position = new Position();
+            standard = new Position();
+            Fen.parse(Fen.STANDARD_START, standard);
+            offsets = new long[INITIAL_GAMES];
+            buffer.put(new byte[HEADER_LENGTH]);
+            offset = HEADER_LENGTH;
+        }
+
+        /**
+         * Returns the number of games written.
+         * @return the number of games
+         */
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * Adds a game.
+         * @param game
+         *          the game
+         * @throws IOException
+         *          if the game is too long or cannot be written
+         */
+        public void add(PgnGame game) throws IOException {
+            record.clear().limit(MAX_RECORD - CHECKSUM_LENGTH);
+            position.copyFrom(game.getStart());
+            boolean ownStart = position.getKey() != standard.getKey()
+                    || position.getHalfmoveClock()
+                    != standard.getHalfmoveClock()
+                    || position.getFullmoveNumber()
+                    != standard.getFullmoveNumber();
+            Map<String, String> tags = game.getTags();
+            if (tags.size() > MAX_TAGS) {
+                throw new IOException("Too many tags to archive");
+            }
+            record.putShort((short) 0);
+            record.put((byte) resultCode(game.getResult()));
+            record.put((byte) (ownStart ? OWN_START : 0));
+            record.putShort((short) game.getMoveCount());
+            record.put((byte) tags.size());
+            try {
+                if (ownStart) {
+                    GameFile.encode(position, record);
+                }
+                for (Map.Entry<String, String> tag : tags.entrySet()) {
+                    byte[] name = tag.getKey().getBytes(
+                            StandardCharsets.UTF_8);
+                    byte[] value = tag.getValue().getBytes(
+                            StandardCharsets.UTF_8);
+                    if (name.length > MAX_NAME || value.length > SHORT_MASK) {
+                        throw new IOException("Tag too long to archive");
+                    }
+                    record.put((byte) name.length).put(name);
+                    record.putShort((short) value.length).put(value);
+                }
+                for (int ply = 0; ply < game.getMoveCount(); ply++) {
+                    int move = game.getMove(ply);
+                    int choice = choice(position, move, moves);
+                    if (choice < 0) {
+                        throw new IOException("Illegal move in game "
+                                + count);
+                    }
+                    record.put((byte) choice);
+                    position.makeMove(move);
+                }
+            } catch (BufferOverflowException e) {
+                throw new IOException("Game " + count
+                        + " is too long to archive");
+            }
+            record.putShort(0, (short) (record.position() + CHECKSUM_LENGTH
+                    - LENGTH_FIELD));
+            record.limit(MAX_RECORD);
+            record.putInt(checksum(record, 0, record.position()));
+            record.flip();
+
+            if (count == offsets.length) {
+                offsets = Arrays.copyOf(offsets, count * 2);
+            }
+            offsets[count++] = offset;
+            offset += record.remaining();
+            if (buffer.remaining() < record.remaining()) {
+                drain();
+            }
+            buffer.put(record);
+        }
+
+        /**
+         * Writes the buffered records.
+         * @throws IOException
+         *          if the file cannot be written
+         */
+        private void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        /**
+         * Writes the index and the header and closes the file.
+         * @throws IOException
+         *          if the file cannot be written
+         */
+        public void close() throws IOException {
+            try {
+                long indexOffset = offset;
+                for (int index = 0; index < count; index++) {
+                    if (buffer.remaining() < Long.BYTES) {
+                        drain();
+                    }
+                    buffer.putLong(offsets[index]);
+                }
+                drain();
+                buffer.putInt(MAGIC).putInt(VERSION).putLong(count)
+                    .putLong(indexOffset).putLong(0L);
+                buffer.flip();
+                long written = 0L;
+                while (buffer.hasRemaining()) {
+                    written += channel.write(buffer, written);
+                }
+                channel.force(true);
+            } finally {
+                channel.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package game;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * GameArchiveBenchmark measures how fast games are loaded from a
+ * GameArchive: the latency of loading games picked at random, and the
+ * games and megabytes per second of loading every game in order. Given an
+ * archive it reads that archive; otherwise it first writes one of random
+ * legal games.
+ *
+ * <pre>
+ * java game.GameArchiveBenchmark [GAMES | ARCHIVE]
+ * </pre>
+ *
+ * Random loads are timed twice: finding a record alone, which reads the
+ * index and the record's first page, and loading the whole game, which
+ * also replays every move.
+ *
+ * @author Kiaan Castillo A01024604
+ * @version 2018
+ */
+public final class GameArchiveBenchmark {
+
+    /**
+     * The number of random games written when no number is given.
+     */
+    private static final int DEFAULT_GAMES = 200000;
+    /**
+     * The most moves of a random game.
+     */
+    private static final int SAMPLE_PLIES = 160;
+    /**
+     * The seed of the random games and of the order they are loaded in.
+     */
+    private static final long SEED = 2018L;
+    /**
+     * The number of games loaded at random.
+     */
+    private static final int RANDOM_LOADS = 100000;
+    /**
+     * The number of times the archive is scanned, the first to warm up.
+     */
+    private static final int ROUNDS = 3;
+    /**
+     * The percentile reported besides the median.
+     */
+    private static final double PERCENTILE = 0.99;
+    /**
+     * Bytes in a megabyte.
+     */
+    private static final double MEGABYTE = 1 << 20;
+    /**
+     * Nanoseconds in a second.
+     */
+    private static final double NANOS = 1e9;
+
+    /**
+     * GameArchiveBenchmark only has static members.
+     */
+    private GameArchiveBenchmark() {
+    }
+
+    /**
+     * Writes an archive of random legal games.
+     * @param path
+     *          the file
+     * @param games
+     *          the number of games
+     * @throws IOException
+     *          if the file cannot be written
+     */
+    static void writeSample(Path path, int games) throws IOException {
+        Random random = new Random(SEED);
+        Position start = new Position();
+        Fen.parse(Fen.STANDARD_START, start);
+        PgnGame game = new PgnGame();
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        try (GameArchive.Writer writer = new GameArchive.Writer(path)) {
+            for (int index = 1; index <= games; index++) {
+                game.clear(0L);
+                game.setStart(start);
+                game.setTag("Event", "Sample");
+                game.setTag("Round", Integer.toString(index));
+                game.setTag("White", "Player " + random.nextInt(games));
+                game.setTag("Black", "Player " + random.nextInt(games));
+                int plies = random.nextInt(SAMPLE_PLIES) + 1;
+                for (int ply = 0; ply < plies; ply++) {
+                    int count = MoveGenerator.generate(game.getPosition(),
+                            moves, 0);
+                    if (count == 0) {
+                        break;
+                    }
+                    game.addMove(moves[random.nextInt(count)]);
+                }
+                writer.add(game);
+            }
+        }
+    }
+
+    /**
+     * Prints the median, 99th percentile and longest of some times.
+     * @param name
+     *          what was timed
+     * @param nanos
+     *          the times in nanoseconds, which are sorted
+     */
+    private static void printLatency(String name, long[] nanos) {
+        Arrays.sort(nanos);
+        System.out.printf("%s: median %.1f us, p99 %.1f us, max %.1f us%n",
+                name, nanos[nanos.length / 2] / 1e3,
+                nanos[(int) (nanos.length * PERCENTILE)] / 1e3,
+                nanos[nanos.length - 1] / 1e3);
+    }
+
+    /**
+     * Runs the benchmark.
+     * @param args
+     *          optionally the number of random games to write, or the
+     *          archive to read
+     * @throws IOException
+     *          if a file cannot be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        Path path;
+        if (args.length > 0 && Files.exists(Paths.get(args[0]))) {
+            path = Paths.get(args[0]);
+        } else {
+            int games = args.length > 0 ? Integer.parseInt(args[0])
+                    : DEFAULT_GAMES;
+            path = Files.createTempFile("sample", ".saga");
+            path.toFile().deleteOnExit();
+            long start = System.nanoTime();
+            writeSample(path, games);
+            double seconds = (System.nanoTime() - start) / NANOS;
+            System.out.printf("wrote %d games in %.1f s: %.0f games/s%n",
+                    games, seconds, games / seconds);
+        }
+        double megabytes = Files.size(path) / MEGABYTE;
+        PgnGame game = new PgnGame();
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        try (GameArchive archive = new GameArchive(path)) {
+            int size = archive.size();
+            System.out.printf("%s: %d games, %.1f MB, %.1f bytes per "
+                    + "game%n", path, size, megabytes,
+                    megabytes * MEGABYTE / size);
+
+            for (int round = 0; round < ROUNDS; round++) {
+                long plies = 0L;
+                long start = System.nanoTime();
+                for (int index = 0; index < size; index++) {
+                    archive.read(index, game, moves);
+                    plies += game.getMoveCount();
+                }
+                double seconds = (System.nanoTime() - start) / NANOS;
+                System.out.printf("scan: %d games, %d moves in %.2f s: "
+                        + "%.0f games/s, %.1f MB/s, %.0f moves/s%n", size,
+                        plies, seconds, size / seconds, megabytes / seconds,
+                        plies / seconds);
+            }
+
+            Random random = new Random(SEED);
+            int[] order = new int[RANDOM_LOADS];
+            for (int load = 0; load < RANDOM_LOADS; load++) {
+                order[load] = random.nextInt(size);
+            }
+            long[] found = new long[RANDOM_LOADS];
+            long[] loaded = new long[RANDOM_LOADS];
+            long checksum = 0L;
+            for (int load = 0; load < RANDOM_LOADS; load++) {
+                long start = System.nanoTime();
+                checksum += archive.getMoveCount(order[load]);
+                found[load] = System.nanoTime() - start;
+            }
+            for (int load = 0; load < RANDOM_LOADS; load++) {
+                long start = System.nanoTime();
+                archive.read(order[load], game, moves);
+                loaded[load] = System.nanoTime() - start;
+                checksum -= game.getMoveCount();
+            }
+            if (checksum != 0L) {
+                throw new IOException("Loaded games do not match: " + path);
+            }
+            printLatency("random find", found);
+            printLatency("random load", loaded);
+        }
+    }
+}
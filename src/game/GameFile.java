@@ -0,0 +1,219 @@
+package game;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * GameFile saves a Position to a small binary file and loads it again.
+ * Nothing is deserialized: the file is read as bytes and every value is
+ * checked before it is used.
+ *
+ * The file is, in order: the magic number "SACH", the version, one byte
+ * per square holding its piece code, the side to move, the castling
+ * rights, the en passant square (or 255 for none), the halfmove clock,
+ * the fullmove number, and a CRC32 of everything before it. That is 80
+ * bytes in all.
+ *
+ * @author Kiaan Castillo A01024604
+ * @version 2018
+ */
+public final class GameFile {
+
+    /**
+     * The first four bytes of every file, "SACH".
+     */
+    public static final int MAGIC = 0x53414348;
+    /**
+     * The version of the format written.
+     */
+    public static final int VERSION = 1;
+    /**
+     * The length of a file, checksum included.
+     */
+    public static final int LENGTH = 80;
+    /**
+     * The length of a file without its checksum.
+     */
+    private static final int BODY_LENGTH = LENGTH - Integer.BYTES;
+    /**
+     * The byte stored when there is no en passant square.
+     */
+    private static final int NO_SQUARE = 0xFF;
+    /**
+     * Mask of an unsigned byte.
+     */
+    private static final int BYTE_MASK = 0xFF;
+    /**
+     * Mask of an unsigned short.
+     */
+    private static final int SHORT_MASK = 0xFFFF;
+    /**
+     * Mask of every castling right.
+     */
+    private static final int ALL_CASTLING = 15;
+
+    /**
+     * GameFile only has static members.
+     */
+    private GameFile() {
+    }
+
+    /**
+     * Writes a position to a file, replacing it if it exists.
+     * @param path
+     *          the file
+     * @param position
+     *          the position
+     * @throws IOException
+     *          if the file cannot be written
+     */
+    public static void write(Path path, Position position)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(LENGTH);
+        encode(position, buffer);
+        buffer.flip();
+
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * Puts the LENGTH bytes of a position in a buffer.
+     * @param position
+     *          the position
+     * @param buffer
+     *          the buffer, which must have LENGTH bytes left
+     */
+    static void encode(Position position, ByteBuffer buffer) {
+        int start = buffer.position();
+        buffer.putInt(MAGIC);
+        buffer.put((byte) VERSION);
+        for (int square = 0; square < Position.SQUARES; square++) {
+            buffer.put((byte) position.pieceAt(square));
+        }
+        buffer.put((byte) position.getSideToMove());
+        buffer.put((byte) position.getCastling());
+        int enPassant = position.getEnPassant();
+        buffer.put((byte) (enPassant == Position.NO_SQUARE
+                ? NO_SQUARE : enPassant));
+        buffer.putShort((short) Math.min(position.getHalfmoveClock(),
+                SHORT_MASK));
+        buffer.putShort((short) Math.min(position.getFullmoveNumber(),
+                SHORT_MASK));
+        buffer.putInt(checksum(buffer, start));
+    }
+
+    /**
+     * Returns the CRC32 of the body of a position in a buffer.
+     * @param buffer
+     *          the buffer
+     * @param start
+     *          the index the position starts at
+     * @return the checksum
+     */
+    private static int checksum(ByteBuffer buffer, int start) {
+        byte[] body = new byte[BODY_LENGTH];
+        for (int index = 0; index < BODY_LENGTH; index++) {
+            body[index] = buffer.get(start + index);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(body, 0, BODY_LENGTH);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Reads a position from a file.
+     * @param path
+     *          the file
+     * @param position
+     *          set to the position read; left alone if the file is bad
+     * @throws IOException
+     *          if the file cannot be read or is not a valid game file
+     */
+    public static void read(Path path, Position position)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(LENGTH + 1);
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.READ)) {
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                continue;
+            }
+        }
+        if (buffer.position() != LENGTH) {
+            throw new IOException("Not a saved game: " + path);
+        }
+        buffer.flip();
+        decode(buffer, position, path.toString());
+    }
+
+    /**
+     * Takes the LENGTH bytes of a position from a buffer and checks them,
+     * both the bytes and that the position can arise in a game.
+     * @param buffer
+     *          the buffer, which must have LENGTH bytes left
+     * @param position
+     *          the position to load into, which is left unchanged if the
+     *          bytes are not valid
+     * @param source
+     *          where the bytes came from, for messages
+     * @throws IOException
+     *          if the bytes are not a valid position
+     */
+    static void decode(ByteBuffer buffer, Position position, String source)
+            throws IOException {
+        int start = buffer.position();
+        if (buffer.getInt(start + BODY_LENGTH) != checksum(buffer, start)) {
+            throw new IOException("Saved game is corrupt: " + source);
+        }
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException("Not a saved game: " + source);
+        }
+        int version = buffer.get() & BYTE_MASK;
+        if (version != VERSION) {
+            throw new IOException("Unsupported saved game version "
+                    + version + ": " + source);
+        }
+
+        Position loaded = new Position();
+        for (int square = 0; square < Position.SQUARES; square++) {
+            int code = buffer.get() & BYTE_MASK;
+            if (code >= Piece.CODES || code != Piece.EMPTY
+                    && Piece.type(code) == Piece.EMPTY) {
+                throw new IOException("Bad piece on square " + square
+                        + ": " + source);
+            }
+            if (code != Piece.EMPTY) {
+                loaded.put(square, code);
+            }
+        }
+        int side = buffer.get() & BYTE_MASK;
+        int castling = buffer.get() & BYTE_MASK;
+        int enPassant = buffer.get() & BYTE_MASK;
+        if (side > Piece.BLACK || castling > ALL_CASTLING
+                || enPassant >= Position.SQUARES && enPassant != NO_SQUARE) {
+            throw new IOException("Bad game state: " + source);
+        }
+        loaded.setSideToMove(side);
+        loaded.setCastling(castling);
+        loaded.setEnPassant(enPassant == NO_SQUARE
+                ? Position.NO_SQUARE : enPassant);
+        loaded.setHalfmoveClock(buffer.getShort() & SHORT_MASK);
+        loaded.setFullmoveNumber(buffer.getShort() & SHORT_MASK);
+        buffer.getInt();
+        String problem = Fen.problem(loaded);
+        if (problem != null) {
+            throw new IOException("Impossible position, " + problem + ": "
+                    + source);
+        }
+        position.copyFrom(loaded);
+    }
+}
@@ -0,0 +1,354 @@
+package game;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * GameLoadTest measures how many moves per second a GameServer takes and
+ * how long each takes to be answered. Each connection holds many games at
+ * once and plays random legal moves in them in turn, starting a new game
+ * whenever one ends, until the time is up. Moves per second and the
+ * median, 99th percentile and longest reply times are printed.
+ *
+ * <pre>
+ * java game.GameLoadTest [CONNECTIONS] [GAMES] [SECONDS] [PORT]
+ * </pre>
+ *
+ * GAMES is per connection. Without a port a server is started in the same
+ * process, and the heap used with every game open is printed too; it
+ * counts both the server's games and the clients' copies of them.
+ *
+ * @author Kiaan Castillo A01024604
+ * @version 2018
+ */
+public final class GameLoadTest {
+
+    /**
+     * The connections opened when none are given.
+     */
+    private static final int DEFAULT_CONNECTIONS = 50;
+    /**
+     * The games per connection when none are given.
+     */
+    private static final int DEFAULT_GAMES = 200;
+    /**
+     * How long moves are made for when not given, in seconds.
+     */
+    private static final int DEFAULT_SECONDS = 10;
+    /**
+     * The reply times recorded by each connection before it needs more
+     * room.
+     */
+    private static final int INITIAL_SAMPLES = 1 << 12;
+    /**
+     * The percentile reported besides the median.
+     */
+    private static final double PERCENTILE = 0.99;
+    /**
+     * Nanoseconds in a microsecond.
+     */
+    private static final long NANOS_PER_MICRO = 1000L;
+    /**
+     * Nanoseconds in a second.
+     */
+    private static final double NANOS = 1e9;
+    /**
+     * Bytes in a megabyte.
+     */
+    private static final double MEGABYTE = 1 << 20;
+
+    /**
+     * Client is one connection and the games it plays.
+     */
+    private static final class Client {
+
+        /**
+         * The connection.
+         */
+        private final Socket socket;
+        /**
+         * Where replies are read from.
+         */
+        private final BufferedReader in;
+        /**
+         * Where commands are written.
+         */
+        private final Writer out;
+        /**
+         * The id of each game on the server.
+         */
+        private final long[] ids;
+        /**
+         * A copy of each game, for choosing legal moves.
+         */
+        private final Position[] games;
+        /**
+         * The source of the moves.
+         */
+        private final Random random;
+        /**
+         * The time each move took to be answered, in microseconds.
+         */
+        private long[] samples;
+        /**
+         * The number of moves made.
+         */
+        private int moveCount;
+        /**
+         * The number of moves the server refused.
+         */
+        private int errors;
+        /**
+         * The number of games finished.
+         */
+        private int finished;
+
+        /**
+         * Connects and starts the games.
+         * @param port
+         *          the port of the server
+         * @param gameCount
+         *          the number of games
+         * @param seed
+         *          the seed of the moves
+         * @throws IOException
+         *          if the server cannot be reached
+         */
+        Client(int port, int gameCount, long seed) throws IOException {
+            socket = new Socket(InetAddress.getLoopbackAddress(), port);
+            socket.setTcpNoDelay(true);
+            in = new BufferedReader(new InputStreamReader(
+                    socket.getInputStream(), StandardCharsets.US_ASCII));
+            out = new BufferedWriter(new OutputStreamWriter(
+                    socket.getOutputStream(), StandardCharsets.US_ASCII));
+            ids = new long[gameCount];
+            games = new Position[gameCount];
+            random = new Random(seed);
+            samples = new long[INITIAL_SAMPLES];
+            for (int game = 0; game < gameCount; game++) {
+                games[game] = new Position(GameServer.SESSION_STACK);
+                start(game);
+            }
+        }
+
+        /**
+         * Sends a command and returns the reply.
+         * @param command
+         *          the command
+         * @return the reply
+         * @throws IOException
+         *          if the server does not answer
+         */
+        private String send(String command) throws IOException {
+            out.write(command);
+            out.write('\n');
+            out.flush();
+            String reply = in.readLine();
+            if (reply == null) {
+                throw new IOException("Server closed the connection");
+            }
+            return reply;
+        }
+
+        /**
+         * Starts a game in a slot on the server.
+         * @param game
+         *          the slot
+         * @throws IOException
+         *          if the server does not answer or has no room
+         */
+        private void start(int game) throws IOException {
+            String reply = send("new");
+            if (!reply.startsWith("ok ")) {
+                throw new IOException(reply);
+            }
+            ids[game] = Long.parseLong(reply.substring(3));
+            Fen.parse(Fen.STANDARD_START, games[game]);
+        }
+
+        /**
+         * Makes random moves in each game in turn until a time.
+         * @param deadline
+         *          the System.nanoTime to stop at
+         * @return this client
+         * @throws IOException
+         *          if the server does not answer
+         */
+        Client play(long deadline) throws IOException {
+            int[] moves = new int[MoveGenerator.MAX_MOVES];
+            int game = 0;
+            while (System.nanoTime() < deadline) {
+                Position position = games[game];
+                int count = MoveGenerator.generate(position, moves, 0);
+                int move = moves[random.nextInt(count)];
+                long start = System.nanoTime();
+                String reply = send("move " + ids[game] + " "
+                        + Uci.moveName(move));
+                record((System.nanoTime() - start) / NANOS_PER_MICRO);
+                position.makeMove(move);
+                if (!reply.startsWith("ok")) {
+                    errors++;
+                }
+                if (!reply.startsWith("ok") || reply.endsWith("mate")
+                        || reply.contains("draw")
+                        || !MoveGenerator.hasLegalMove(position)
+                        || position.getPly() >= GameServer.MAX_PLIES) {
+                    send("close " + ids[game]);
+                    start(game);
+                    finished++;
+                }
+                game = (game + 1) % games.length;
+            }
+            for (long id : ids) {
+                send("close " + id);
+            }
+            out.write("quit\n");
+            out.flush();
+            socket.close();
+            return this;
+        }
+
+        /**
+         * Records how long a move took to be answered.
+         * @param micros
+         *          the time in microseconds
+         */
+        private void record(long micros) {
+            if (moveCount == samples.length) {
+                samples = Arrays.copyOf(samples, samples.length * 2);
+            }
+            samples[moveCount++] = micros;
+        }
+    }
+
+    /**
+     * GameLoadTest only has static members.
+     */
+    private GameLoadTest() {
+    }
+
+    /**
+     * Returns the heap in use after collecting garbage.
+     * @return the bytes in use
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int round = 0; round < 3; round++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Runs the load test.
+     * @param args
+     *          optionally the connections, the games per connection, the
+     *          seconds and the port of a running server
+     * @throws IOException
+     *          if the server cannot be reached
+     * @throws InterruptedException
+     *          if interrupted while waiting for the connections
+     */
+    public static void main(String[] args) throws IOException,
+            InterruptedException {
+        int connections = DEFAULT_CONNECTIONS;
+        int gamesEach = DEFAULT_GAMES;
+        int seconds = DEFAULT_SECONDS;
+        if (args.length > 0) {
+            connections = Integer.parseInt(args[0]);
+        }
+        if (args.length > 1) {
+            gamesEach = Integer.parseInt(args[1]);
+        }
+        if (args.length > 2) {
+            seconds = Integer.parseInt(args[2]);
+        }
+        GameServer server = null;
+        int port;
+        long heapBefore = 0L;
+        if (args.length > 3) {
+            port = Integer.parseInt(args[3]);
+        } else {
+            heapBefore = usedHeap();
+            server = new GameServer(0, connections * gamesEach);
+            port = server.getPort();
+            Thread acceptor = new Thread(server::run, "game-server");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        List<Client> clients = new ArrayList<>();
+        for (int index = 0; index < connections; index++) {
+            clients.add(new Client(port, gamesEach, index));
+        }
+        int totalGames = connections * gamesEach;
+        System.out.println(connections + " connections holding "
+                + totalGames + " games");
+        if (server != null) {
+            long grown = usedHeap() - heapBefore;
+            System.out.printf("heap grew %.1f MB for %d games, %.0f bytes "
+                    + "per game with the server's and client's copies%n",
+                    grown / MEGABYTE, server.getGameCount(),
+                    grown / (double) totalGames);
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(connections);
+        long start = System.nanoTime();
+        long deadline = start + seconds * (long) NANOS;
+        List<Future<Client>> done = new ArrayList<>();
+        for (Client client : clients) {
+            done.add(pool.submit(() -> client.play(deadline)));
+        }
+        long moves = 0L;
+        long errors = 0L;
+        long finished = 0L;
+        long[] all = new long[0];
+        try {
+            for (Future<Client> future : done) {
+                Client client = future.get();
+                int offset = all.length;
+                all = Arrays.copyOf(all, offset + client.moveCount);
+                System.arraycopy(client.samples, 0, all, offset,
+                        client.moveCount);
+                moves += client.moveCount;
+                errors += client.errors;
+                finished += client.finished;
+            }
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        double elapsed = (System.nanoTime() - start) / NANOS;
+        if (server != null) {
+            server.close();
+        }
+
+        Arrays.sort(all);
+        System.out.printf("%d moves in %.1f s: %.0f moves/s, %d games "
+                + "finished, %d errors%n", moves, elapsed, moves / elapsed,
+                finished, errors);
+        if (all.length > 0) {
+            System.out.printf("reply time: median %d us, p99 %d us, "
+                    + "max %d us%n", all[all.length / 2],
+                    all[(int) Math.min(all.length - 1,
+                            (long) (all.length * PERCENTILE))],
+                    all[all.length - 1]);
+        }
+    }
+}
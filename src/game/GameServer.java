@@ -0,0 +1,417 @@
+package game;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * GameServer hosts many independent games at once for clients on the same
+ * machine, without JavaFX. Each game is a Position with small stacks and a
+ * cap on its length, so a game takes about two kilobytes and the number
+ * of games is bounded.
+ *
+ * Clients connect to a loopback port and send one command per line. Each
+ * connection is served by its own pooled thread and may play any number
+ * of games. Every reply is one line starting with "ok" or "error".
+ *
+ * <pre>
+ * new [FEN]          start a game, standard start by default: ok ID
+ * move ID MOVE       make a move such as e2e4 or e7e8q: ok STATUS
+ * show ID            ok FEN STATUS
+ * moves ID           ok MOVE...
+ * close ID           end a game: ok
+ * stats              ok GAMES MOVES
+ * quit               close the connection
+ * </pre>
+ *
+ * STATUS is in play, check, checkmate, stalemate or a draw with its
+ * reason. A game that is over takes no more moves.
+ *
+ * @author Kiaan Castillo A01024604
+ * @version 2018
+ */
+public final class GameServer implements Closeable {
+
+    /**
+     * The port listened on when none is given.
+     */
+    public static final int DEFAULT_PORT = 7070;
+    /**
+     * The most games held when no limit is given.
+     */
+    public static final int DEFAULT_MAX_GAMES = 100000;
+    /**
+     * The most moves of a game.
+     */
+    public static final int MAX_PLIES = 1024;
+    /**
+     * The moves each game's stacks start with room for.
+     */
+    public static final int SESSION_STACK = 64;
+    /**
+     * The most connections served at once.
+     */
+    private static final int MAX_CONNECTIONS = 4096;
+    /**
+     * How long an idle connection thread is kept, in seconds.
+     */
+    private static final long KEEP_ALIVE = 60L;
+    /**
+     * The moves of a side after which the fifty move rule draws.
+     */
+    private static final int FIFTY_MOVES = 100;
+    /**
+     * The games being played, by id.
+     */
+    private final ConcurrentHashMap<Long, Position> games;
+    /**
+     * The id of the next game.
+     */
+    private final AtomicLong nextId;
+    /**
+     * The number of games held, counted before they are added so the
+     * limit is never passed.
+     */
+    private final AtomicInteger gameCount;
+    /**
+     * The number of moves made in every game.
+     */
+    private final AtomicLong moveCount;
+    /**
+     * The most games held.
+     */
+    private final int maxGames;
+    /**
+     * The socket connections are accepted on.
+     */
+    private final ServerSocket server;
+    /**
+     * The threads connections are served on.
+     */
+    private final ExecutorService connections;
+
+    /**
+     * Constructs an object of type GameServer listening on a loopback
+     * port. Connections are not accepted until run is called.
+     * @param port
+     *          the port, or 0 for any free port
+     * @param maxGames
+     *          the most games held
+     * @throws IOException
+     *          if the port cannot be listened on
+     */
+    public GameServer(int port, int maxGames) throws IOException {
+        games = new ConcurrentHashMap<>();
+        nextId = new AtomicLong(1L);
+        gameCount = new AtomicInteger();
+        moveCount = new AtomicLong();
+        this.maxGames = maxGames;
+        server = new ServerSocket(port, MAX_CONNECTIONS,
+                InetAddress.getLoopbackAddress());
+        AtomicInteger made = new AtomicInteger();
+        connections = new ThreadPoolExecutor(0, MAX_CONNECTIONS, KEEP_ALIVE,
+                TimeUnit.SECONDS, new SynchronousQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "game-connection-"
+                            + made.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Returns the port listened on.
+     * @return the port
+     */
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * Returns the number of games held.
+     * @return the number of games
+     */
+    public int getGameCount() {
+        return gameCount.get();
+    }
+
+    /**
+     * Accepts connections until the server is closed.
+     */
+    public void run() {
+        while (!server.isClosed()) {
+            Socket socket;
+            try {
+                socket = server.accept();
+            } catch (IOException e) {
+                break;
+            }
+            try {
+                connections.execute(() -> serve(socket));
+            } catch (RejectedExecutionException e) {
+                refuse(socket);
+            }
+        }
+    }
+
+    /**
+     * Tells a connection there is no thread to serve it, and closes it.
+     * @param socket
+     *          the connection
+     */
+    private static void refuse(Socket socket) {
+        try (Writer out = new OutputStreamWriter(socket.getOutputStream(),
+                StandardCharsets.US_ASCII)) {
+            out.write("error busy\n");
+        } catch (IOException e) {
+            // The client has already gone, so there is no one to tell.
+        }
+    }
+
+    /**
+     * Stops accepting connections. Connections already open are served
+     * until their clients close them, and the games are kept.
+     * @throws IOException
+     *          if the socket cannot be closed
+     */
+    public void close() throws IOException {
+        server.close();
+        connections.shutdown();
+    }
+
+    /**
+     * Answers the commands of one connection until it quits or closes.
+     * @param socket
+     *          the connection
+     */
+    private void serve(Socket socket) {
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        StringBuilder reply = new StringBuilder();
+        try (Socket open = socket;
+                BufferedReader in = new BufferedReader(new InputStreamReader(
+                        open.getInputStream(), StandardCharsets.US_ASCII));
+                Writer out = new BufferedWriter(new OutputStreamWriter(
+                        open.getOutputStream(), StandardCharsets.US_ASCII))) {
+            open.setTcpNoDelay(true);
+            for (String line = in.readLine(); line != null;
+                    line = in.readLine()) {
+                reply.setLength(0);
+                if (!command(line.trim().split("\\s+"), moves, reply)) {
+                    break;
+                }
+                out.append(reply).append('\n');
+                if (!in.ready()) {
+                    out.flush();
+                }
+            }
+        } catch (IOException e) {
+            // The client went away; its games are kept until closed.
+        }
+    }
+
+    /**
+     * Carries out a command.
+     * @param words
+     *          the words of the command
+     * @param moves
+     *          scratch space for at least MoveGenerator.MAX_MOVES moves
+     * @param reply
+     *          the builder the reply is appended to
+     * @return false if the command was quit
+     */
+    boolean command(String[] words, int[] moves, StringBuilder reply) {
+        if (words[0].equals("quit")) {
+            return false;
+        } else if (words[0].equals("new")) {
+            newGame(words, reply);
+            return true;
+        } else if (words[0].equals("stats")) {
+            reply.append("ok ").append(gameCount.get()).append(' ')
+                .append(moveCount.get());
+            return true;
+        }
+
+        Position position = null;
+        if (words.length > 1) {
+            try {
+                position = games.get(Long.parseLong(words[1]));
+            } catch (NumberFormatException e) {
+                position = null;
+            }
+        }
+        if (position == null) {
+            reply.append(words.length > 1 ? "error no game " + words[1]
+                    : "error unknown command " + words[0]);
+            return true;
+        }
+        synchronized (position) {
+            switch (words[0]) {
+            case "move":
+                move(position, words, moves, reply);
+                break;
+            case "show":
+                reply.append("ok ");
+                Fen.append(position, reply);
+                reply.append(' ').append(status(position));
+                break;
+            case "moves":
+                reply.append("ok");
+                int count = MoveGenerator.generate(position, moves, 0);
+                for (int index = 0; index < count; index++) {
+                    reply.append(' ').append(Uci.moveName(moves[index]));
+                }
+                break;
+            case "close":
+                if (games.remove(Long.parseLong(words[1])) != null) {
+                    gameCount.decrementAndGet();
+                }
+                reply.append("ok");
+                break;
+            default:
+                reply.append("error unknown command ").append(words[0]);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Starts a game.
+     * @param words
+     *          "new", then optionally a FEN record
+     * @param reply
+     *          the builder the reply is appended to
+     */
+    private void newGame(String[] words, StringBuilder reply) {
+        Position position = new Position(SESSION_STACK);
+        try {
+            if (words.length > 1) {
+                StringBuilder fen = new StringBuilder();
+                for (int index = 1; index < words.length; index++) {
+                    fen.append(words[index]).append(' ');
+                }
+                Fen.parse(fen, position);
+            } else {
+                Fen.parse(Fen.STANDARD_START, position);
+            }
+        } catch (IllegalArgumentException e) {
+            reply.append("error ").append(e.getMessage());
+            return;
+        }
+        if (gameCount.incrementAndGet() > maxGames) {
+            gameCount.decrementAndGet();
+            reply.append("error too many games");
+            return;
+        }
+        long id = nextId.getAndIncrement();
+        games.put(id, position);
+        reply.append("ok ").append(id);
+    }
+
+    /**
+     * Makes a move in a game.
+     * @param position
+     *          the game, locked by the caller
+     * @param words
+     *          "move ID MOVE"
+     * @param moves
+     *          scratch space for at least MoveGenerator.MAX_MOVES moves
+     * @param reply
+     *          the builder the reply is appended to
+     */
+    private void move(Position position, String[] words, int[] moves,
+            StringBuilder reply) {
+        if (words.length < 3) {
+            reply.append("error no move");
+            return;
+        }
+        if (isDrawn(position)) {
+            reply.append("error game over");
+            return;
+        }
+        if (position.getPly() >= MAX_PLIES) {
+            reply.append("error game too long");
+            return;
+        }
+        int move = Uci.parseMove(position, words[2], moves);
+        if (move == 0) {
+            reply.append(MoveGenerator.hasLegalMove(position)
+                    ? "error illegal move " + words[2] : "error game over");
+            return;
+        }
+        position.makeMove(move);
+        moveCount.incrementAndGet();
+        reply.append("ok ").append(status(position));
+    }
+
+    /**
+     * Returns whether a game goes on, and how it ended if not.
+     * @param position
+     *          the game
+     * @return in play, check, checkmate, stalemate or a draw with its
+     *          reason
+     */
+    static String status(Position position) {
+        int status = position.getStatus();
+        if (status == Position.CHECKMATE || status == Position.STALEMATE) {
+            return Cli.statusName(status);
+        } else if (position.getHalfmoveClock() >= FIFTY_MOVES) {
+            return "draw fifty moves";
+        } else if (position.repetitions() >= 2) {
+            return "draw repetition";
+        } else if (Tournament.insufficientMaterial(position)) {
+            return "draw insufficient material";
+        }
+        return Cli.statusName(status);
+    }
+
+    /**
+     * Returns true if a game is drawn by the fifty move rule, repetition
+     * or insufficient material.
+     * @param position
+     *          the game
+     * @return true if the game is drawn
+     */
+    private static boolean isDrawn(Position position) {
+        return position.getHalfmoveClock() >= FIFTY_MOVES
+                || position.repetitions() >= 2
+                || Tournament.insufficientMaterial(position);
+    }
+
+    /**
+     * Serves games until the process is stopped.
+     * @param args
+     *          optionally the port, then the most games held
+     * @throws IOException
+     *          if the port cannot be listened on
+     */
+    public static void main(String[] args) throws IOException {
+        int port = DEFAULT_PORT;
+        int maxGames = DEFAULT_MAX_GAMES;
+        if (args.length > 0) {
+            port = Integer.parseInt(args[0]);
+        }
+        if (args.length > 1) {
+            maxGames = Integer.parseInt(args[1]);
+        }
+        GameServer server = new GameServer(port, maxGames);
+        System.out.println("listening on "
+                + InetAddress.getLoopbackAddress().getHostAddress() + ":"
+                + server.getPort() + " for up to " + maxGames + " games");
+        server.run();
+    }
+}
@@ -20,6 +20,10 @@ public class Main extends Application {
      * The length of the scene.
      */
     public static final int SCENE_LENGTH = 900;
+    /**
+     * The chess game shown.
+     */
+    private Chess chess;
     
     /**
      * Runs the Java FX application.
@@ -31,12 +35,25 @@ public class Main extends Application {
      */
     public void start(Stage primaryStage) throws Exception {
         primaryStage.setTitle("Set A Chess");
-        Scene scene  = new Scene(new Chess(), SCENE_LENGTH,
+        PieceImages.load();
+        chess = new Chess();
+        Scene scene  = new Scene(chess, SCENE_LENGTH,
                 SCENE_HEIGHT);
         primaryStage.setScene(scene);
         primaryStage.show();
     }
     
+    /**
+     * Saves the last moves of the game to its journal when the
+     * application exits, however its window was closed.
+     * @see javafx.application.Application#stop()
+     */
+    public void stop() {
+        if (chess != null) {
+            chess.shutdown();
+        }
+    }
+    
     /**
      * Launches the JavaFX application.
      * @param args
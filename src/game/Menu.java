@@ -1,16 +1,16 @@
 package game;
 
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
 import javafx.event.ActionEvent;
 import javafx.geometry.Pos;
 import javafx.scene.control.Button;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
+import javafx.scene.input.Clipboard;
+import javafx.scene.input.ClipboardContent;
 import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 
@@ -27,6 +27,10 @@ public class Menu extends VBox {
      * Spacing for elements.
      */
     public static final double SPACING = 2.7;
+    /**
+     * The journal the game is saved to and loaded from.
+     */
+    public static final Path SAVE_FILE = Paths.get("savedChessGame.journal");
     /**
      * The save button.
      */
@@ -39,6 +43,26 @@ public class Menu extends VBox {
      * The exit button.
      */
     private Button exit;
+    /**
+     * Copies the position to the clipboard in FEN.
+     */
+    private Button copyFen;
+    /**
+     * Sets the position from FEN on the clipboard.
+     */
+    private Button pasteFen;
+    /**
+     * Takes back the last move.
+     */
+    private Button undo;
+    /**
+     * Makes the last move taken back again.
+     */
+    private Button redo;
+    /**
+     * Chooses which side the computer plays.
+     */
+    private Button computer;
     /**
      * Creates a new game.
      */
@@ -79,22 +103,25 @@ public class Menu extends VBox {
         this.move = move;
                 
         save = new Button("Save");
-        save.setOnAction(event -> {
-            try {
-                saveGame(event);
-            } catch (FileNotFoundException e) {
-                e.printStackTrace();
-            }
-        });
+        save.setOnAction(this::saveGame);
 
         load = new Button("Load");
-        load.setOnAction(event -> {
-            try {
-                loadGame(event);
-            } catch (FileNotFoundException | ClassNotFoundException e) {
-                e.printStackTrace();
-            }
-        });
+        load.setOnAction(this::loadGame);
+
+        copyFen = new Button("Copy FEN");
+        copyFen.setOnAction(this::copyFen);
+
+        pasteFen = new Button("Paste FEN");
+        pasteFen.setOnAction(this::pasteFen);
+
+        undo = new Button("Undo");
+        undo.setOnAction(this::undoMove);
+
+        redo = new Button("Redo");
+        redo.setOnAction(this::redoMove);
+
+        computer = new Button("Computer: Off");
+        computer.setOnAction(this::switchComputer);
 
         newGame = new Button("New Game");
         newGame.setOnAction(this::newGame);
@@ -108,82 +135,119 @@ public class Menu extends VBox {
         setAlignment(Pos.CENTER);
         getStylesheets().add("/game/style.css");
         setSpacing(SPACING);
-        getChildren().addAll(view, Board.displayTurn, save, 
-                load, newGame, exit);
+        getChildren().addAll(view, chessBoard.displayTurn, save, 
+                load, copyFen, pasteFen, undo, redo, computer,
+                chessBoard.engineInfo, newGame, exit);
     }
 
     /**
-     * Saves the game by serializing the chess board.
+     * Saves the game to the save file. From then on every move is saved
+     * as it is made, so this only has to wait for the last ones.
      * @param event
      *          the saving event
-     * @throws FileNotFoundException
-     *          for files not found when saving a game/turn
      */
-    private void saveGame(ActionEvent event) throws FileNotFoundException {
+    private void saveGame(ActionEvent event) {
         try {
-            FileOutputStream fileOutputStream 
-            = new FileOutputStream("savedChessGame.txt");
-            ObjectOutputStream objectOutputStream;
-            objectOutputStream = new ObjectOutputStream(fileOutputStream);
-            objectOutputStream.writeObject(move.savableDataBoard);
-            objectOutputStream.flush();
-            objectOutputStream.close();
+            move.save(SAVE_FILE);
         } catch (IOException e) {
-            System.out.println("No such file found.");
+            System.out.println("Could not save the game.");
             e.printStackTrace();
         }
-        
+    }
+
+    /**
+     * Loads the game from the save file.
+     * @param event
+     *          the loading event
+     */
+    private void loadGame(ActionEvent event) {
         try {
-            FileOutputStream fileOutputStream 
-            = new FileOutputStream("savedChessGameTurn.txt");
-            ObjectOutputStream objectOutputStream;
-            objectOutputStream = new ObjectOutputStream(fileOutputStream);
-            objectOutputStream.writeObject(chessBoard.turn);
-            objectOutputStream.flush();
-            objectOutputStream.close();
+            move.load(SAVE_FILE);
         } catch (IOException e) {
-            System.out.println("No such file found.");
+            System.out.println("Could not load the game.");
             e.printStackTrace();
+            return;
         }
+        chess.setBoardTurn(move.position.getSideToMove());
+    }
 
+    /**
+     * Copies the position to the clipboard in FEN.
+     * @param event
+     *          the button event
+     */
+    private void copyFen(ActionEvent event) {
+        ClipboardContent content = new ClipboardContent();
+        content.putString(Fen.toFen(move.position));
+        Clipboard.getSystemClipboard().setContent(content);
     }
 
     /**
-     * Loads a game.
+     * Sets the position from FEN on the clipboard.
      * @param event
-     *          the loading event
-     * @throws FileNotFoundException
-     *          for files not found when loading games/turns
-     * @throws ClassNotFoundException 
-     *          for classes not found when casting
+     *          the button event
      */
-    private void loadGame(ActionEvent event) 
-            throws FileNotFoundException, ClassNotFoundException {
-        try {
-            FileInputStream fileInputStream
-            = new FileInputStream("savedChessGame.txt");
-            ObjectInputStream objectInputStream;
-            objectInputStream = new ObjectInputStream(fileInputStream);
-            SavableTile[][] newSavableBoard = (SavableTile[][]) 
-                    objectInputStream.readObject();
-            move.setSavableBoard(newSavableBoard);
-            objectInputStream.close();  
-        } catch (IOException e) {
-            System.out.println("No such file found.");
-            e.printStackTrace();
+    private void pasteFen(ActionEvent event) {
+        String fen = Clipboard.getSystemClipboard().getString();
+        if (fen == null) {
+            return;
         }
-        
+        Position loaded = new Position();
         try {
-            FileInputStream fileInputStream
-            = new FileInputStream("savedChessGameTurn.txt");
-            ObjectInputStream objectInputStream;
-            objectInputStream = new ObjectInputStream(fileInputStream);
-            String newTurn = (String) objectInputStream.readObject();
-            chess.setBoardTurn(newTurn);
-            objectInputStream.close();  
-        } catch (IOException e) {
-            System.out.println("No such file found.");
-            e.printStackTrace();
+            Fen.parse(fen.trim(), loaded);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return;
+        }
+        show(loaded);
+    }
+
+    /**
+     * Replaces the game with a position and gives the turn to its side to
+     * move.
+     * @param loaded
+     *          the position
+     */
+    private void show(Position loaded) {
+        move.setPosition(loaded);
+        chess.setBoardTurn(loaded.getSideToMove());
+    }
+
+    /**
+     * Takes back the last move.
+     * @param event
+     *              the button event
+     */
+    private void undoMove(ActionEvent event) {
+        move.takeback();
+    }
+
+    /**
+     * Makes the last move taken back again.
+     * @param event
+     *              the button event
+     */
+    private void redoMove(ActionEvent event) {
+        move.redo();
+    }
+
+    /**
+     * Switches the computer from off to playing black, to playing white,
+     * and back to off.
+     * @param event
+     *              the button event
+     */
+    private void switchComputer(ActionEvent event) {
+        int colour = move.getComputerColour();
+        if (colour == Move.NOBODY) {
+            move.setComputerColour(Piece.BLACK);
+            computer.setText("Computer: Black");
+        } else if (colour == Piece.BLACK) {
+            move.setComputerColour(Piece.WHITE);
+            computer.setText("Computer: White");
+        } else {
+            move.setComputerColour(Move.NOBODY);
+            computer.setText("Computer: Off");
         }
     }
 
@@ -197,11 +261,12 @@ public class Menu extends VBox {
     }
 
     /**
-     * exits the game.
+     * exits the game, first saving the last moves to the journal.
      * @param event
      *          the button event
      */
     private void exitGame(ActionEvent event) {
+        chessBoard.move.shutdown();
         Stage stage = (Stage) exit.getScene().getWindow();
         stage.close();
     }
@@ -1,43 +1,63 @@
 package game;
 
-import java.io.Serializable;
-import java.util.ArrayList;
-
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javafx.application.Platform;
 import javafx.scene.paint.Color;
 
 /**
  * Move handles the controls of the pieces and determines what 
  * each piece can do at every situation.
- * The multi-dimension array that holds the state of every 
- * piece lives in this class.
- * There is also another multi-dimensional array that does the same
- * thing as the first one but is serializable.
+ * The state of every piece lives in a Position, and the
+ * multi-dimension array of Tiles in this class is rendered from it.
+ * Games are saved to a MoveJournal rather than by serializing the board.
  *
  * @author Kiaan Castillo A01024604
  * @version 2018
  */
-public class Move implements Serializable {
+public class Move {
 
-    /**
-     * The max for the pawn for loop if firstMove is true.
-     */
-    public static final int THREE = 3;
     /**
      * The size of the array.
      */
     public static final int EIGHT = 8;
+    /**
+     * The computer colour when neither side is played by the computer.
+     */
+    public static final int NOBODY = -1;
+    /**
+     * How long the computer thinks about each move, in milliseconds.
+     */
+    public static final long THINKING_TIME = 2000L;
     /**
      * The multi-dimensional array that hold the state of every piece.
      */
     protected Tile[][] dataBoard;
     /**
-     * A savable databoard.
+     * The state of the game that the dataBoard is rendered from.
      */
-    protected SavableTile[][] savableDataBoard;
+    protected Position position;
     /**
-     * An arraylist of the current possible moves.
+     * The encoded possible moves of the current Tile.
      */
-    private ArrayList<Tile> possibleMoves;
+    private int[] possibleMoves;
+    /**
+     * The number of possible moves of the current Tile.
+     */
+    private int possibleCount;
+    /**
+     * The moves taken back that can be made again, last one on top.
+     */
+    private int[] redoMoves;
+    /**
+     * The number of moves that can be made again.
+     */
+    private int redoCount;
     /**
      * The current Tile selected.
      */
@@ -50,14 +70,6 @@ public class Move implements Serializable {
      * The y coordinate of the current Tile.
      */
     private int currentY;
-    /**
-     * True if its this piece's first move. Significant for the pawn.
-     */
-    private boolean firstMove;
-    /**
-     * The colour of the current piece.
-     */
-    private String colour;
     /**
      * True if a Tile is currently selected already for processing a move.
      */
@@ -66,6 +78,46 @@ public class Move implements Serializable {
      * The current board being used.
      */
     private Board board;
+    /**
+     * The computer player.
+     */
+    private Engine engine;
+    /**
+     * The colour the computer plays, or NOBODY.
+     */
+    private int computerColour;
+    /**
+     * Counts the computer's searches, so a result that arrives after the
+     * game changed can be recognized and ignored.
+     */
+    private int searchId;
+    /**
+     * The thread possible moves are worked out on.
+     */
+    private final ExecutorService hints;
+    /**
+     * The possible moves being worked out, if any.
+     */
+    private Future<?> hintTask;
+    /**
+     * Counts the selections, so possible moves that arrive after another
+     * Tile was selected can be recognized and ignored.
+     */
+    private int hintId;
+    /**
+     * The squares whose Tile has a stroke other than its fill, one bit
+     * each, so only they are touched when the highlights are cleared.
+     */
+    private long stroked;
+    /**
+     * The number of times a Tile has been changed since last taken.
+     */
+    private long nodeUpdates;
+    /**
+     * The journal every move is saved to once the game has been saved,
+     * or null.
+     */
+    private MoveJournal journal;
 
     /**
      * 
@@ -76,14 +128,26 @@ public class Move implements Serializable {
     public Move(Board board) {
         this.board = board;
         dataBoard = new Tile[EIGHT][EIGHT];
-        savableDataBoard = new SavableTile[EIGHT][EIGHT];
-        possibleMoves = new ArrayList<>();
+        position = new Position();
+        possibleMoves = new int[MoveGenerator.MAX_MOVES];
+        possibleCount = 0;
+        redoMoves = new int[Position.INITIAL_STACK];
+        redoCount = 0;
         processing = false;
         current = null;
         currentX = -1;
         currentY = -1;
-        firstMove = true;
-        colour = null;
+        engine = new Engine(Runtime.getRuntime().availableProcessors());
+        computerColour = NOBODY;
+        searchId = 0;
+        hints = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "hints");
+            thread.setDaemon(true);
+            return thread;
+        });
+        hintId = 0;
+        stroked = 0L;
+        nodeUpdates = 0L;
     }
 
     /**
@@ -100,70 +164,148 @@ public class Move implements Serializable {
     }
     
     /**
-     * Loads the new savable board and replaces the old one.
-     * @param newSavableBoard
-     *          the new savable board.
-     */
-    public void setSavableBoard(SavableTile[][] newSavableBoard) {
-        for (int x = 0; x < EIGHT; x++) {
-            for (int y = 0; y < EIGHT; y++) {
-                SavableTile temp = newSavableBoard[x][y];
-                SavableTile newSavable = new SavableTile(
-                        temp.getX(),
-                        temp.getY(),
-                        temp.getOccupied(),
-                        temp.getType(), 
-                        temp.getColour(),
-                        temp.getFirstMove()
-                        );
-                savableDataBoard[x][y] = newSavable;
+     * Replaces the game with a position, such as one loaded from a file,
+     * and shows it on the board.
+     * @param loaded
+     *          the position, which is copied
+     */
+    void setPosition(Position loaded) {
+        cancelComputer();
+        position.copyFrom(loaded);
+        redoCount = 0;
+        reset();
+        render();
+        if (journal != null) {
+            try {
+                journal.snapshot(position);
+            } catch (IOException e) {
+                journalFailed(e);
             }
         }
+    }
 
-        copytoBoard();
-        board.loadNewBoard();
+    /**
+     * Saves the game to a journal, after which every move is saved as it
+     * is made. If the game is already saved there, waits until every move
+     * is on disk.
+     * @param path
+     *          the journal
+     * @throws IOException
+     *          if the journal cannot be written
+     */
+    void save(Path path) throws IOException {
+        if (journal != null && journal.getPath().equals(path)) {
+            journal.commit();
+            return;
+        }
+        closeJournal();
+        journal = MoveJournal.create(path, position);
     }
-    
+
     /**
-     * Copies everything in the dataBoard to the savableDataboard.
-     */
-    private void copytoBoard() {
-        for (int x = 0; x < EIGHT; x++) {
-            for (int y = 0; y < EIGHT; y++) {
-                SavableTile temp = savableDataBoard[x][y];
-                Tile newTile = new Tile(
-                        temp.getX(),
-                        temp.getY(),
-                        temp.getOccupied(),
-                        temp.getType(),
-                        temp.getColour()
-                        );
-                newTile.piece.setFirstMove(temp.getFirstMove());
-                dataBoard[x][y] = newTile;
+     * Replaces the game with the one in a journal and shows it on the
+     * board. The moves replayed can be taken back, and every move from
+     * now on is saved to the journal. If the game is already saved to
+     * that journal, it is committed and closed first, so the moves not
+     * yet written are loaded too and only one channel writes the file.
+     * @param path
+     *          the journal
+     * @throws IOException
+     *          if the journal cannot be read
+     */
+    void load(Path path) throws IOException {
+        if (journal != null && journal.getPath().equals(path)) {
+            closeJournal();
+        }
+        Position loaded = new Position();
+        MoveJournal opened = MoveJournal.open(path, loaded);
+        closeJournal();
+        cancelComputer();
+        position.copyFrom(loaded);
+        journal = opened;
+        redoCount = 0;
+        reset();
+        render();
+    }
+
+    /**
+     * Saves a move just made to the journal, if the game is being saved,
+     * compacting it now and then.
+     * @param played
+     *          the move
+     */
+    private void journalMove(int played) {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.append(played);
+            if (journal.needsSnapshot()) {
+                journal.snapshot(position);
             }
+        } catch (IOException e) {
+            journalFailed(e);
         }
     }
 
     /**
-     * Copies everything int the dataBoard to the savableDataboard.
+     * Stops saving the game after the journal could not be written.
+     * @param e
+     *          what went wrong
      */
-    public void copytoSavableBoard() {
-        for (int x = 0; x < EIGHT; x++) {
-            for (int y = 0; y < EIGHT; y++) {
-                Tile temp = dataBoard[x][y];
-                SavableTile tempSavable = new SavableTile(
-                        temp.getXCoordinate(),
-                        temp.getYCoordinate(),
-                        temp.getOccupied(),
-                        temp.getType(), 
-                        temp.getColour(),
-                        temp.piece.getFirstMove()
-                        );
-                savableDataBoard[x][y] = tempSavable;
-            }
+    private void journalFailed(IOException e) {
+        System.out.println("Could not save the game.");
+        e.printStackTrace();
+        closeJournal();
+    }
+
+    /**
+     * Closes the journal, if the game is being saved.
+     */
+    private void closeJournal() {
+        if (journal == null) {
+            return;
+        }
+        MoveJournal closing = journal;
+        journal = null;
+        try {
+            closing.close();
+        } catch (IOException e) {
+            System.out.println("Could not save the game.");
+            e.printStackTrace();
         }
     }
-    
+
+    /**
+     * Updates every Tile in the dataBoard to show the piece on its
+     * square in the position.
+     */
+    void render() {
+        for (int square = 0; square < Position.SQUARES; square++) {
+            renderSquare(square);
+        }
+    }
+
+    /**
+     * Updates the Tile of a square to show the piece on that square in
+     * the position, if it does not already.
+     * @param square
+     *          the square to render
+     */
+    private void renderSquare(int square) {
+        Tile tile = dataBoard[Position.row(square)][Position.column(square)];
+        int code = position.pieceAt(square);
+        if (tile.getCode() == code) {
+            return;
+        }
+        nodeUpdates++;
+        if (code == Piece.EMPTY) {
+            tile.removePiece();
+        } else {
+            tile.setPiece(code);
+        }
+    }
+
     /**
      * Sets the processing boolean.
      * @param processing
@@ -182,464 +324,288 @@ public class Move implements Serializable {
     }
 
     /**
-     * Takes in the current Tile selected and figures out which method to use to
-     * calculate its possible moves.
+     * Takes in the current Tile selected and highlights its possible moves.
+     * The moves are worked out on a copy of the position on another
+     * thread, and highlighted together on the JavaFX thread once they are
+     * known, unless another Tile was selected in the meantime.
      * @param newCurrent
      *              the current tile selected
      */
     void calculate(Tile newCurrent) {
         this.current = newCurrent;
         processing = true;
-        firstMove = newCurrent.piece.getFirstMove();
         currentX = newCurrent.getXCoordinate();
         currentY = newCurrent.getYCoordinate();
-        colour = newCurrent.getColour();
-        String type = newCurrent.getType();
-
-        if (type.equals("Pawn")) {
-            pawn();
-        } else if (type.equals("Bishop")) {
-            bishop();
-        } else if (type.equals("Rook")) {
-            rook();
-        } else if (type.equals("Knight")) {
-            knight();
-        } else if (type.equals("Queen")) {
-            queen();
-        } else {
-            king();
-        }
+
+        cancelHints();
+        int id = hintId;
+        int from = Position.square(currentX, currentY);
+        Position snapshot = new Position(position);
+        hintTask = hints.submit(() -> {
+            int[] found = new int[MoveGenerator.MAX_MOVES];
+            int count = MoveGenerator.generateFrom(snapshot, from, found, 0);
+            Platform.runLater(() -> showHints(id, found, count));
+        });
     }
 
     /**
-     * Movement calculations for the PAWN.
-     */
-    private void pawn() {
-        int max = 2;
-        if (colour.equals("White")) {
-            if (firstMove) {
-                max = THREE; 
-            } 
-            
-            for (int counter = 1; counter < max; counter++) {
-                if (currentX - counter > -1) {
-                    if (!dataBoard[currentX - counter]
-                            [currentY].getOccupied()) {
-                        possibleMoves.add(dataBoard[currentX - counter]
-                                [currentY]);
-                    } else {
-                        break;
-                    }
-                }
-            }
-            
-            if (currentX - 1 > -1 & currentY + 1 < EIGHT) {
-                if (dataBoard[currentX - 1][currentY + 1].getOccupied()) {
-                    if (oppositeTeam(dataBoard[currentX - 1][currentY + 1])) {
-                        possibleMoves.add(dataBoard[currentX - 1]
-                                [currentY + 1]);
-                    }
-                }
-            }
-            
-            if (currentX - 1 > -1 & currentY - 1 > -1) {
-                if (dataBoard[currentX - 1][currentY - 1].getOccupied()) {
-                    if (oppositeTeam(dataBoard[currentX - 1][currentY - 1])) {
-                        possibleMoves.add(dataBoard[currentX - 1]
-                                [currentY - 1]);
-                    }
-                }
-            }
-            
-        } else {
-            if (firstMove) {
-                max = THREE; 
-            } 
-            
-            for (int counter = 1; counter < max; counter++) {
-                if (currentX + counter < EIGHT) {
-                    if (!dataBoard[currentX + counter]
-                            [currentY].getOccupied()) {
-                        possibleMoves.add(dataBoard[currentX + counter]
-                                [currentY]);
-                    } else {
-                        break;
-                    }
-                }
-            }
-            
-            if (currentX + 1 < EIGHT & currentY + 1 < EIGHT) {
-                if (dataBoard[currentX + 1][currentY + 1].getOccupied()) {
-                    if (oppositeTeam(dataBoard[currentX + 1][currentY + 1])) {
-                        possibleMoves.add(dataBoard[currentX + 1]
-                                [currentY + 1]);
-                    }
-                }
-            }
-            
-            if (currentX + 1 < EIGHT & currentY - 1 > -1) {
-                if (dataBoard[currentX + 1][currentY - 1].getOccupied()) {
-                    if (oppositeTeam(dataBoard[currentX + 1][currentY - 1])) {
-                        possibleMoves.add(dataBoard[currentX + 1]
-                                [currentY - 1]);
-                    }
-                }
-            }
+     * Highlights the possible moves of the current Tile, unless they were
+     * worked out for an earlier selection.
+     * @param id
+     *              the selection the moves were worked out for
+     * @param found
+     *              the encoded moves
+     * @param count
+     *              the number of moves
+     */
+    private void showHints(int id, int[] found, int count) {
+        if (id != hintId) {
+            return;
         }
-        
-        for (int counter = 0; counter < possibleMoves.size(); counter++) {
-            possibleMoves.get(counter).setStroke(Color.DODGERBLUE);
+        System.arraycopy(found, 0, possibleMoves, 0, count);
+        possibleCount = count;
+        for (int counter = 0; counter < count; counter++) {
+            highlight(tileAt(MoveGenerator.to(found[counter])),
+                    Color.DODGERBLUE);
         }
     }
 
     /**
-     * Movement calculations for the BISHOP.
+     * Stops working out possible moves and ignores any about to be
+     * highlighted.
      */
-    private void bishop() {
-        int tempX = currentX;
-        int tempY = currentY;
-
-        tempX += 1;
-        tempY += 1;
-        while (tempX < EIGHT & tempY < EIGHT) {
-            if (!dataBoard[tempX][tempY].getOccupied()) {
-                possibleMoves.add(dataBoard[tempX][tempY]);
-                tempX++;
-                tempY++;
-            } else {
-                if (oppositeTeam(dataBoard[tempX][tempY])) {
-                    possibleMoves.add(dataBoard[tempX][tempY]);
-                }
-                break;
-            }
-        }
-
-        tempX = currentX + 1;
-        tempY = currentY - 1;
-
-        while (tempX < EIGHT & tempY > -1) {
-            if (!dataBoard[tempX][tempY].getOccupied()) {
-                possibleMoves.add(dataBoard[tempX][tempY]);
-                tempX++;
-                tempY--;
-            } else {
-                if (oppositeTeam(dataBoard[tempX][tempY])) {
-                    possibleMoves.add(dataBoard[tempX][tempY]);
-                }
-                break;
-            }
-        }
-
-        tempX = currentX - 1;
-        tempY = currentY + 1;
-
-        while (tempX > -1 & tempY < EIGHT) {
-            if (!dataBoard[tempX][tempY].getOccupied()) {
-                possibleMoves.add(dataBoard[tempX][tempY]);
-                tempX--;
-                tempY++;
-            } else {
-                if (oppositeTeam(dataBoard[tempX][tempY])) {
-                    possibleMoves.add(dataBoard[tempX][tempY]);
-                }
-                break;
-            }
-        }
-
-        tempX = currentX - 1;
-        tempY = currentY - 1;
-
-        while (tempX > -1 & tempY > -1) {
-            if (!dataBoard[tempX][tempY].getOccupied()) {
-                possibleMoves.add(dataBoard[tempX][tempY]);
-                tempX--;
-                tempY--;
-            } else {
-                if (oppositeTeam(dataBoard[tempX][tempY])) {
-                    possibleMoves.add(dataBoard[tempX][tempY]);
-                }
-                break;
-            }
-        }
-
-        for (int counter = 0; counter < possibleMoves.size(); counter++) {
-            possibleMoves.get(counter).setStroke(Color.DODGERBLUE);
+    private void cancelHints() {
+        hintId++;
+        if (hintTask != null) {
+            hintTask.cancel(false);
+            hintTask = null;
         }
     }
 
     /**
-     * Movement calculations for the ROOK.
+     * Returns the Tile of a square.
+     * @param square
+     *          the square
+     * @return the tile
      */
-    private void rook() {
-        int tempX = currentX + 1;
-        int tempY = currentY;
-
-        while (tempX < EIGHT) {
-            if (!dataBoard[tempX][tempY].getOccupied()) {
-                possibleMoves.add(dataBoard[tempX][tempY]);
-                tempX++;
-            } else {
-                if (oppositeTeam(dataBoard[tempX][tempY])) {
-                    possibleMoves.add(dataBoard[tempX][tempY]);
-                }
-                break;
-            }
-        }
-
-        tempX = currentX - 1;
-
-        while (tempX > -1) {
-            if (!dataBoard[tempX][tempY].getOccupied()) {
-                possibleMoves.add(dataBoard[tempX][tempY]);
-                tempX--;
-            } else {
-                if (oppositeTeam(dataBoard[tempX][tempY])) {
-                    possibleMoves.add(dataBoard[tempX][tempY]);
-                }
-                break;
-            }
-        }
-
-        tempX = currentX;
-        tempY += 1;
-
-        while (tempY < EIGHT) {
-            if (!dataBoard[tempX][tempY].getOccupied()) {
-                possibleMoves.add(dataBoard[tempX][tempY]);
-                tempY++;
-            } else {
-                if (oppositeTeam(dataBoard[tempX][tempY])) {
-                    possibleMoves.add(dataBoard[tempX][tempY]);
-                }
-                break;
-            }
-        }
-
-        tempY = currentY - 1;
-
-        while (tempY > -1) {
-            if (!dataBoard[tempX][tempY].getOccupied()) {
-                possibleMoves.add(dataBoard[tempX][tempY]);
-                tempY--;
-            } else {
-                if (oppositeTeam(dataBoard[tempX][tempY])) {
-                    possibleMoves.add(dataBoard[tempX][tempY]);
-                }
-                break;
-            }
-        }
-
-        for (int counter = 0; counter < possibleMoves.size(); counter++) {
-            this.possibleMoves.get(counter).setStroke(Color.DODGERBLUE);
-        }
+    private Tile tileAt(int square) {
+        return dataBoard[Position.row(square)][Position.column(square)];
     }
 
     /**
-     * Movement calculations for the KNIGHT.
+     * Executed once a second click has been made if the processing boolean
+     * is set to true.
+     * Moves the current TilePiece to the target TilePiece. Pawns reaching
+     * the last row become queens.
+     * @param target
+     *              the target tile
      */
-    private void knight() {
-        if (currentX + 2 < EIGHT & currentY + 1 < EIGHT) {
-            if (!dataBoard[currentX + 2][currentY + 1].getOccupied()) {
-                possibleMoves.add(dataBoard[currentX + 2][currentY + 1]); 
-            } else {
-                if (oppositeTeam(dataBoard[currentX + 2][currentY + 1])) {
-                    possibleMoves.add(dataBoard[currentX + 2][currentY + 1]);
-                }
-            }
-        }
-
-        if (currentX + 2 < EIGHT & currentY - 1 > -1) {
-            if (!dataBoard[currentX + 2][currentY - 1].getOccupied()) {
-                possibleMoves.add(dataBoard[currentX + 2][currentY - 1]); 
-            } else {
-                if (oppositeTeam(dataBoard[currentX + 2][currentY - 1])) {
-                    possibleMoves.add(dataBoard[currentX + 2][currentY - 1]);
-                }
-            }
-        }
-
-        if (currentX - 2 > -1 & currentY + 1 < EIGHT) {
-            if (!dataBoard[currentX - 2][currentY + 1].getOccupied()) {
-                possibleMoves.add(dataBoard[currentX - 2][currentY + 1]); 
-            } else {
-                if (oppositeTeam(dataBoard[currentX - 2][currentY + 1])) {
-                    possibleMoves.add(dataBoard[currentX - 2][currentY + 1]);
-                }
-            }
-        }
-
-        if (currentX - 2 > -1 & currentY - 1 > -1) {
-            if (!dataBoard[currentX - 2][currentY - 1].getOccupied()) {
-                possibleMoves.add(dataBoard[currentX - 2][currentY - 1]); 
-            } else {
-                if (oppositeTeam(dataBoard[currentX - 2][currentY - 1])) {
-                    possibleMoves.add(dataBoard[currentX - 2][currentY - 1]);
-                }
-            }
+    public void move(Tile target) {
+        int chosen = findMove(target);
+        if (chosen == 0) {
+            return;
         }
 
-        if (currentX + 1 < EIGHT & currentY + 2 < EIGHT) {
-            if (!dataBoard[currentX + 1][currentY + 2].getOccupied()) {
-                possibleMoves.add(dataBoard[currentX + 1][currentY + 2]); 
-            } else {
-                if (oppositeTeam(dataBoard[currentX + 1][currentY + 2])) {
-                    possibleMoves.add(dataBoard[currentX + 1][currentY + 2]);
-                }
-            }
-        }
+        redoCount = 0;
+        play(chosen);
+        playComputer();
+    }
 
-        if (currentX - 1 > -1 & currentY + 2 < EIGHT) {
-            if (!dataBoard[currentX - 1][currentY + 2].getOccupied()) {
-                possibleMoves.add(dataBoard[currentX - 1][currentY + 2]); 
-            } else {
-                if (oppositeTeam(dataBoard[currentX - 1][currentY + 2])) {
-                    possibleMoves.add(dataBoard[currentX - 1][currentY + 2]);
-                }
-            }
-        }
+    /**
+     * Makes a move on the position and shows it on the board.
+     * @param chosen
+     *              the encoded move
+     */
+    private void play(int chosen) {
+        position.makeMove(chosen);
+        journalMove(chosen);
+        reset();
+        renderMove(chosen);
+        board.switchTurns();
+        board.showStatus(position.getStatus());
+    }
 
-        if (currentX + 1 < EIGHT & currentY - 2 > -1) {
-            if (!dataBoard[currentX + 1][currentY - 2].getOccupied()) {
-                possibleMoves.add(dataBoard[currentX + 1][currentY - 2]); 
-            } else {
-                if (oppositeTeam(dataBoard[currentX + 1][currentY - 2])) {
-                    possibleMoves.add(dataBoard[currentX + 1][currentY - 2]);
+    /**
+     * Takes back the last move, if there is one. When playing the
+     * computer, moves are taken back until it is the player's turn.
+     */
+    void takeback() {
+        cancelComputer();
+        do {
+            if (position.getPly() == 0) {
+                return;
+            }
+            int undone = position.unmakeMove();
+            if (journal != null) {
+                try {
+                    journal.takeback(position);
+                } catch (IOException e) {
+                    journalFailed(e);
                 }
             }
-        }
-
-        if (currentX - 1 > -1 & currentY - 2 > -1) {
-            if (!dataBoard[currentX - 1][currentY - 2].getOccupied()) {
-                possibleMoves.add(dataBoard[currentX - 1][currentY - 2]); 
-            } else {
-                if (oppositeTeam(dataBoard[currentX - 1][currentY - 2])) {
-                    possibleMoves.add(dataBoard[currentX - 1][currentY - 2]);
-                }
+            if (redoCount == redoMoves.length) {
+                redoMoves = Arrays.copyOf(redoMoves, redoCount * 2);
             }
-        }
-
-        for (int counter = 0; counter < possibleMoves.size(); counter++) {
-            this.possibleMoves.get(counter).setStroke(Color.DODGERBLUE);
-        }
+            redoMoves[redoCount++] = undone;
+            reset();
+            renderMove(undone);
+            board.switchTurns();
+            board.showStatus(position.getStatus());
+        } while (isComputerTurn());
     }
 
     /**
-     * Movement calculations for the QUEEN.
+     * Makes the last move taken back again, if there is one. When playing
+     * the computer, moves are made again until it is the player's turn,
+     * and the computer moves if none are left.
      */
-    private void queen() {
-        rook();
-        bishop();
+    void redo() {
+        cancelComputer();
+        do {
+            if (redoCount == 0) {
+                playComputer();
+                return;
+            }
+            play(redoMoves[--redoCount]);
+        } while (isComputerTurn());
     }
 
     /**
-     * Movement calculations for the KING.
+     * Sets the colour the computer plays, and lets it move if it is its
+     * turn.
+     * @param colour
+     *              the colour, or NOBODY
      */
-    private void king() {
-        if (currentX + 1 < EIGHT) {
-            if (!dataBoard[currentX + 1][currentY].getOccupied()) {
-                possibleMoves.add(dataBoard[currentX + 1][currentY]); 
-            } else {
-                if (oppositeTeam(dataBoard[currentX + 1][currentY])) {
-                    possibleMoves.add(dataBoard[currentX + 1][currentY]);
-                }
-            }
-        }
-
-        if (currentX - 1 > -1) {
-            if (!dataBoard[currentX - 1][currentY].getOccupied()) {
-                possibleMoves.add(dataBoard[currentX - 1][currentY]); 
-            } else {
-                if (oppositeTeam(dataBoard[currentX - 1][currentY])) {
-                    possibleMoves.add(dataBoard[currentX - 1][currentY]);
-                }
-            }
-        }
-
-        if (currentY + 1 < EIGHT) {
-            if (!dataBoard[currentX][currentY + 1].getOccupied()) {
-                possibleMoves.add(dataBoard[currentX][currentY + 1]); 
-            } else {
-                if (oppositeTeam(dataBoard[currentX][currentY + 1])) {
-                    possibleMoves.add(dataBoard[currentX][currentY + 1]);
-                }
-            }
-        }
+    void setComputerColour(int colour) {
+        cancelComputer();
+        computerColour = colour;
+        playComputer();
+    }
 
-        if (currentY - 1 > -1) {
-            if (!dataBoard[currentX][currentY - 1].getOccupied()) {
-                possibleMoves.add(dataBoard[currentX][currentY - 1]); 
-            } else {
-                if (oppositeTeam(dataBoard[currentX][currentY - 1])) {
-                    possibleMoves.add(dataBoard[currentX][currentY - 1]);
-                }
-            }
-        }
+    /**
+     * Returns the colour the computer plays.
+     * @return computerColour
+     */
+    int getComputerColour() {
+        return computerColour;
+    }
 
-        if (currentX + 1 < EIGHT & currentY + 1 < EIGHT) {
-            if (!dataBoard[currentX + 1][currentY + 1].getOccupied()) {
-                possibleMoves.add(dataBoard[currentX + 1][currentY + 1]); 
-            } else {
-                if (oppositeTeam(dataBoard[currentX + 1][currentY + 1])) {
-                    possibleMoves.add(dataBoard[currentX + 1][currentY + 1]);
-                }
-            }
-        }
+    /**
+     * Returns true if it is the computer's turn.
+     * @return true if the computer is to move
+     */
+    boolean isComputerTurn() {
+        return position.getSideToMove() == computerColour;
+    }
 
-        if (currentX + 1 < EIGHT & currentY - 1 > -1) {
-            if (!dataBoard[currentX + 1][currentY - 1].getOccupied()) {
-                possibleMoves.add(dataBoard[currentX + 1][currentY - 1]); 
-            } else {
-                if (oppositeTeam(dataBoard[currentX + 1][currentY - 1])) {
-                    possibleMoves.add(dataBoard[currentX + 1][currentY - 1]);
-                }
-            }
-        }
+    /**
+     * Starts the computer thinking if it is its turn and the game is not
+     * over. The move is made on the JavaFX thread when the search is done.
+     */
+    void playComputer() {
+        int status = position.getStatus();
+        if (!isComputerTurn() || status == Position.CHECKMATE
+                || status == Position.STALEMATE) {
+            return;
+        }
+        int id = ++searchId;
+        engine.think(position, THINKING_TIME, (best, searcher) -> {
+            String info = "Depth " + searcher.getDepth() + ", "
+                    + searcher.getNodes() + " nodes, "
+                    + searcher.getNodesPerSecond() + " nodes/s, "
+                    + searcher.getThreads() + " threads, hash "
+                    + searcher.getTable().getFill() / 10 + "% full";
+            Platform.runLater(() -> computerMoved(id, best, info));
+        });
+    }
 
-        if (currentX - 1 > -1 & currentY - 1 > -1) {
-            if (!dataBoard[currentX - 1][currentY - 1].getOccupied()) {
-                possibleMoves.add(dataBoard[currentX - 1][currentY - 1]); 
-            } else {
-                if (oppositeTeam(dataBoard[currentX - 1][currentY - 1])) {
-                    possibleMoves.add(dataBoard[currentX - 1][currentY - 1]);
-                }
-            }
+    /**
+     * Makes the computer's move, unless the game changed while it was
+     * thinking.
+     * @param id
+     *              the search the move came from
+     * @param best
+     *              the move chosen
+     * @param info
+     *              the depth, nodes and speed of the search
+     */
+    private void computerMoved(int id, int best, String info) {
+        if (id != searchId || best == 0) {
+            return;
         }
+        board.showEngineInfo(info);
+        redoCount = 0;
+        play(best);
+    }
 
-        if (currentX - 1 > -1 & currentY + 1 < EIGHT) {
-            if (!dataBoard[currentX - 1][currentY + 1].getOccupied()) {
-                possibleMoves.add(dataBoard[currentX - 1][currentY + 1]); 
-            } else {
-                if (oppositeTeam(dataBoard[currentX - 1][currentY + 1])) {
-                    possibleMoves.add(dataBoard[currentX - 1][currentY + 1]);
-                }
-            }
-        }
+    /**
+     * Stops the computer thinking and ignores whatever it was about to
+     * play.
+     */
+    private void cancelComputer() {
+        searchId++;
+        engine.stop();
+    }
 
-        for (int counter = 0; counter < possibleMoves.size(); counter++) {
-            this.possibleMoves.get(counter).setStroke(Color.DODGERBLUE);
-        }
+    /**
+     * Stops the computer for good, once this game is no longer shown.
+     */
+    void shutdown() {
+        cancelComputer();
+        cancelHints();
+        closeJournal();
+        engine.shutdown();
+        hints.shutdown();
     }
 
     /**
-     * Executed once a second click has been made if the processing boolean
-     * is set to true.
-     * Moves the current TilePiece to the target TilePiece.
+     * Returns the possible move that lands on a tile, preferring a queen
+     * when the move is a promotion.
      * @param target
      *              the target tile
+     * @return the encoded move, or 0 if the tile is not a possible move
      */
-    public void move(Tile target) {
-        for (int counter = 0; counter < possibleMoves.size(); counter++) {
-            if (possibleMoves.get(counter) == target) {
-                target.setPiece(current.getType(), current.getColour());
-                target.piece.setFirstMove(false);
-                target.setOccupied(true);
-                current.setOccupied(false);
-                current.removePiece();
-                Board.switchTurns();
-                copytoSavableBoard();
-                reset();
-                break;
-            }
+    private int findMove(Tile target) {
+        int to = Position.square(target.getXCoordinate(),
+                target.getYCoordinate());
+        for (int counter = 0; counter < possibleCount; counter++) {
+            int candidate = possibleMoves[counter];
+            if (MoveGenerator.to(candidate) == to
+                    && (!MoveGenerator.isPromotion(candidate)
+                    || MoveGenerator.promotionType(candidate)
+                        == Piece.QUEEN)) {
+                return candidate;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Renders every square a move changed, whether it was made or taken
+     * back.
+     * @param played
+     *          the encoded move
+     */
+    private void renderMove(int played) {
+        int from = MoveGenerator.from(played);
+        int to = MoveGenerator.to(played);
+        renderSquare(from);
+        renderSquare(to);
+        switch (MoveGenerator.flags(played)) {
+        case MoveGenerator.EN_PASSANT:
+            renderSquare(Position.square(Position.row(from),
+                    Position.column(to)));
+            break;
+        case MoveGenerator.KING_CASTLE:
+            renderSquare(to - 1);
+            renderSquare(to + 1);
+            break;
+        case MoveGenerator.QUEEN_CASTLE:
+            renderSquare(to + 1);
+            renderSquare(to - 2);
+            break;
+        default:
+            break;
         }
     }
 
@@ -650,47 +616,67 @@ public class Move implements Serializable {
      * @return true if a possible move
      */
     public boolean isPossibleMove(Tile target) {
-        for (int counter = 0; counter < possibleMoves.size(); counter++) {
-            if (possibleMoves.get(counter) == target) {
-                return true;
-            }
-        }
-        return false;
+        return findMove(target) != 0;
     }
 
     /**
-     * Returns true if the tile sent in is on the opposite team from
-     * the current tile.
-     * @param test
-     *          the tile being tested
-     * @return true if tile is in the opposite team
+     * Strokes a Tile in a colour.
+     * @param tile
+     *              the tile
+     * @param colour
+     *              the colour of the stroke
      */
-    private boolean oppositeTeam(Tile test) {
-        if (!test.getColour().equals(colour)) {
-            return true;
+    void highlight(Tile tile, Color colour) {
+        tile.setStroke(colour);
+        stroked |= 1L << Position.square(tile.getXCoordinate(),
+                tile.getYCoordinate());
+        nodeUpdates++;
+    }
+
+    /**
+     * Strokes a Tile in its fill again, if it is highlighted.
+     * @param tile
+     *              the tile
+     */
+    void unhighlight(Tile tile) {
+        long bit = 1L << Position.square(tile.getXCoordinate(),
+                tile.getYCoordinate());
+        if ((stroked & bit) != 0L) {
+            tile.setStroke(tile.getFill());
+            stroked &= ~bit;
+            nodeUpdates++;
         }
-        return false;
     }
 
     /**
-     * Executed after a successful movement is made. Resets all members to their
-     * default values, removes the stroke from all Tiles in the possibleMoves 
-     * ArrayList
-     * and.
+     * Returns how many times a Tile has been changed since this was last
+     * called, so that the cost of each frame can be profiled.
+     * @return the number of Tile updates
+     */
+    public long takeNodeUpdates() {
+        long taken = nodeUpdates;
+        nodeUpdates = 0L;
+        return taken;
+    }
+
+    /**
+     * Executed after a successful movement is made. Resets all members to
+     * their default values and strokes every highlighted Tile in its fill
+     * again. Tiles that are not highlighted are left alone.
      */
     void reset() {
-        for (int x = 0; x < EIGHT; x++) {
-            for (int y = 0; y < EIGHT; y++) {
-                Tile temp = dataBoard[x][y];
-                temp.setStroke(temp.getFill());
-            }
+        cancelHints();
+        for (long left = stroked; left != 0L; left &= left - 1) {
+            Tile temp = tileAt(Long.numberOfTrailingZeros(left));
+            temp.setStroke(temp.getFill());
+            nodeUpdates++;
         }
+        stroked = 0L;
 
-        colour = null;
         current = null;
         currentX = -1;
         currentY = -1;
-        possibleMoves.clear();
+        possibleCount = 0;
         processing = false;
     }
 }
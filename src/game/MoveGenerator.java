@@ -0,0 +1,919 @@
+package game;
+
+/**
+ * MoveGenerator finds the legal moves of a Position without touching the
+ * user interface. Moves are encoded as ints and written into an array
+ * supplied by the caller, so generating moves allocates nothing.
+ * Knight, king and pawn attacks come from tables built once, and the
+ * sliding pieces walk precomputed rays that are cut off at the first
+ * blocking piece.
+ *
+ * A move is encoded as the from square in bits 0-5, the to square in
+ * bits 6-11, the flags in bits 12-15, the moving piece code in bits
+ * 16-19 and the captured piece code in bits 20-23.
+ *
+ * @author Kiaan Castillo A01024604
+ * @version 2018
+ */
+public final class MoveGenerator {
+
+    /**
+     * The most moves any position can have, rounded up.
+     */
+    public static final int MAX_MOVES = 256;
+    /**
+     * A move that does not capture.
+     */
+    public static final int QUIET = 0;
+    /**
+     * A pawn moving two squares.
+     */
+    public static final int DOUBLE_PUSH = 1;
+    /**
+     * Castling on the king side.
+     */
+    public static final int KING_CASTLE = 2;
+    /**
+     * Castling on the queen side.
+     */
+    public static final int QUEEN_CASTLE = 3;
+    /**
+     * A capture, or the capture bit of a promotion.
+     */
+    public static final int CAPTURE = 4;
+    /**
+     * A pawn capturing en passant.
+     */
+    public static final int EN_PASSANT = 5;
+    /**
+     * The promotion bit. The low two bits then give the piece promoted to,
+     * counted from the knight.
+     */
+    public static final int PROMOTION = 8;
+    /**
+     * Mask of the bits of a square.
+     */
+    private static final int SQUARE_MASK = 63;
+    /**
+     * Mask of the bits of a flag or a piece code.
+     */
+    private static final int NIBBLE_MASK = 15;
+    /**
+     * Shift of the to square.
+     */
+    private static final int TO_SHIFT = 6;
+    /**
+     * Shift of the flags.
+     */
+    private static final int FLAGS_SHIFT = 12;
+    /**
+     * Shift of the moving piece.
+     */
+    private static final int PIECE_SHIFT = 16;
+    /**
+     * Shift of the captured piece.
+     */
+    private static final int CAPTURED_SHIFT = 20;
+    /**
+     * Mask of the promotion piece bits of the flags.
+     */
+    private static final int PROMOTION_MASK = 3;
+    /**
+     * The number of ray directions.
+     */
+    private static final int DIRECTIONS = 8;
+    /**
+     * Row steps of each direction: the rook directions come first,
+     * then the bishop directions.
+     */
+    private static final int[] ROW_STEP = {-1, 1, 0, 0, -1, -1, 1, 1};
+    /**
+     * Column steps of each direction.
+     */
+    private static final int[] COLUMN_STEP = {0, 0, 1, -1, 1, -1, 1, -1};
+    /**
+     * The first bishop direction.
+     */
+    private static final int FIRST_BISHOP_DIRECTION = 4;
+    /**
+     * Row and column steps of a knight.
+     */
+    private static final int[][] KNIGHT_STEPS = {{2, 1}, {2, -1}, {-2, 1},
+        {-2, -1}, {1, 2}, {-1, 2}, {1, -2}, {-1, -2}};
+    /**
+     * The squares a knight attacks from each square.
+     */
+    private static final long[] KNIGHT_ATTACKS = new long[Position.SQUARES];
+    /**
+     * The squares a king attacks from each square.
+     */
+    private static final long[] KING_ATTACKS = new long[Position.SQUARES];
+    /**
+     * The squares a pawn of each colour attacks from each square.
+     */
+    private static final long[][] PAWN_ATTACKS
+        = new long[2][Position.SQUARES];
+    /**
+     * The squares seen from each square in each direction on an empty
+     * board.
+     */
+    private static final long[][] RAYS
+        = new long[DIRECTIONS][Position.SQUARES];
+    /**
+     * True for the directions that go towards higher squares.
+     */
+    private static final boolean[] ASCENDING = new boolean[DIRECTIONS];
+
+    static {
+        for (int square = 0; square < Position.SQUARES; square++) {
+            int x = Position.row(square);
+            int y = Position.column(square);
+            for (int[] step : KNIGHT_STEPS) {
+                KNIGHT_ATTACKS[square] |= bit(x + step[0], y + step[1]);
+            }
+            for (int dir = 0; dir < DIRECTIONS; dir++) {
+                KING_ATTACKS[square] |= bit(x + ROW_STEP[dir],
+                        y + COLUMN_STEP[dir]);
+                int tx = x + ROW_STEP[dir];
+                int ty = y + COLUMN_STEP[dir];
+                while (onBoard(tx, ty)) {
+                    RAYS[dir][square] |= bit(tx, ty);
+                    tx += ROW_STEP[dir];
+                    ty += COLUMN_STEP[dir];
+                }
+            }
+            PAWN_ATTACKS[Piece.WHITE][square] = bit(x - 1, y - 1)
+                    | bit(x - 1, y + 1);
+            PAWN_ATTACKS[Piece.BLACK][square] = bit(x + 1, y - 1)
+                    | bit(x + 1, y + 1);
+        }
+        for (int dir = 0; dir < DIRECTIONS; dir++) {
+            ASCENDING[dir] = ROW_STEP[dir] * Position.EIGHT
+                    + COLUMN_STEP[dir] > 0;
+        }
+    }
+
+    /**
+     * MoveGenerator only has static members.
+     */
+    private MoveGenerator() {
+    }
+
+    /**
+     * Returns true if a row and column are on the board.
+     * @param x
+     *          the row
+     * @param y
+     *          the column
+     * @return true if on the board
+     */
+    private static boolean onBoard(int x, int y) {
+        return x >= 0 && x < Position.EIGHT && y >= 0 && y < Position.EIGHT;
+    }
+
+    /**
+     * Returns the bitboard of a row and column, or 0 if off the board.
+     * @param x
+     *          the row
+     * @param y
+     *          the column
+     * @return the bitboard of the square
+     */
+    private static long bit(int x, int y) {
+        if (!onBoard(x, y)) {
+            return 0L;
+        }
+        return 1L << Position.square(x, y);
+    }
+
+    /**
+     * Encodes a move.
+     * @param from
+     *          the square moved from
+     * @param to
+     *          the square moved to
+     * @param flags
+     *          the move flags
+     * @param piece
+     *          the code of the moving piece
+     * @param captured
+     *          the code of the captured piece, or Piece.EMPTY
+     * @return the encoded move
+     */
+    public static int encode(int from, int to, int flags, int piece,
+            int captured) {
+        return from | (to << TO_SHIFT) | (flags << FLAGS_SHIFT)
+                | (piece << PIECE_SHIFT) | (captured << CAPTURED_SHIFT);
+    }
+
+    /**
+     * Returns the square a move is made from.
+     * @param move
+     *          the encoded move
+     * @return the from square
+     */
+    public static int from(int move) {
+        return move & SQUARE_MASK;
+    }
+
+    /**
+     * Returns the square a move is made to.
+     * @param move
+     *          the encoded move
+     * @return the to square
+     */
+    public static int to(int move) {
+        return (move >>> TO_SHIFT) & SQUARE_MASK;
+    }
+
+    /**
+     * Returns the flags of a move.
+     * @param move
+     *          the encoded move
+     * @return the flags
+     */
+    public static int flags(int move) {
+        return (move >>> FLAGS_SHIFT) & NIBBLE_MASK;
+    }
+
+    /**
+     * Returns the code of the piece making a move.
+     * @param move
+     *          the encoded move
+     * @return the piece code
+     */
+    public static int piece(int move) {
+        return (move >>> PIECE_SHIFT) & NIBBLE_MASK;
+    }
+
+    /**
+     * Returns the code of the piece a move captures.
+     * @param move
+     *          the encoded move
+     * @return the piece code, or Piece.EMPTY
+     */
+    public static int captured(int move) {
+        return (move >>> CAPTURED_SHIFT) & NIBBLE_MASK;
+    }
+
+    /**
+     * Returns true if a move captures a piece.
+     * @param move
+     *          the encoded move
+     * @return true if a capture
+     */
+    public static boolean isCapture(int move) {
+        return (flags(move) & CAPTURE) != 0;
+    }
+
+    /**
+     * Returns true if a move promotes a pawn.
+     * @param move
+     *          the encoded move
+     * @return true if a promotion
+     */
+    public static boolean isPromotion(int move) {
+        return (flags(move) & PROMOTION) != 0;
+    }
+
+    /**
+     * Returns the type a move promotes a pawn to.
+     * @param move
+     *          the encoded move
+     * @return the type promoted to
+     */
+    public static int promotionType(int move) {
+        return Piece.KNIGHT + (flags(move) & PROMOTION_MASK);
+    }
+
+    /**
+     * Returns the squares a knight attacks.
+     * @param square
+     *          the knight's square
+     * @return the attacked squares
+     */
+    public static long knightAttacks(int square) {
+        return KNIGHT_ATTACKS[square];
+    }
+
+    /**
+     * Returns the squares a king attacks.
+     * @param square
+     *          the king's square
+     * @return the attacked squares
+     */
+    public static long kingAttacks(int square) {
+        return KING_ATTACKS[square];
+    }
+
+    /**
+     * Returns the squares a pawn attacks.
+     * @param colour
+     *          the pawn's colour
+     * @param square
+     *          the pawn's square
+     * @return the attacked squares
+     */
+    public static long pawnAttacks(int colour, int square) {
+        return PAWN_ATTACKS[colour][square];
+    }
+
+    /**
+     * Returns the squares seen along one ray, up to and including the
+     * first occupied square.
+     * @param dir
+     *          the direction
+     * @param square
+     *          the square the ray starts from
+     * @param occupied
+     *          the occupied squares
+     * @return the squares seen
+     */
+    private static long ray(int dir, int square, long occupied) {
+        long attacks = RAYS[dir][square];
+        long blockers = attacks & occupied;
+        if (blockers != 0L) {
+            int blocker;
+            if (ASCENDING[dir]) {
+                blocker = Long.numberOfTrailingZeros(blockers);
+            } else {
+                blocker = SQUARE_MASK - Long.numberOfLeadingZeros(blockers);
+            }
+            attacks ^= RAYS[dir][blocker];
+        }
+        return attacks;
+    }
+
+    /**
+     * Returns the squares a rook attacks.
+     * @param square
+     *          the rook's square
+     * @param occupied
+     *          the occupied squares
+     * @return the attacked squares
+     */
+    public static long rookAttacks(int square, long occupied) {
+        long attacks = 0L;
+        for (int dir = 0; dir < FIRST_BISHOP_DIRECTION; dir++) {
+            attacks |= ray(dir, square, occupied);
+        }
+        return attacks;
+    }
+
+    /**
+     * Returns the squares a bishop attacks.
+     * @param square
+     *          the bishop's square
+     * @param occupied
+     *          the occupied squares
+     * @return the attacked squares
+     */
+    public static long bishopAttacks(int square, long occupied) {
+        long attacks = 0L;
+        for (int dir = FIRST_BISHOP_DIRECTION; dir < DIRECTIONS; dir++) {
+            attacks |= ray(dir, square, occupied);
+        }
+        return attacks;
+    }
+
+    /**
+     * Returns the squares attacked by a piece.
+     * @param code
+     *          the piece code, or Piece.EMPTY
+     * @param square
+     *          the piece's square
+     * @param occupied
+     *          the occupied squares
+     * @return the attacked squares
+     */
+    public static long attacks(int code, int square, long occupied) {
+        switch (Piece.type(code)) {
+        case Piece.PAWN:
+            return PAWN_ATTACKS[Piece.colour(code)][square];
+        case Piece.KNIGHT:
+            return KNIGHT_ATTACKS[square];
+        case Piece.BISHOP:
+            return bishopAttacks(square, occupied);
+        case Piece.ROOK:
+            return rookAttacks(square, occupied);
+        case Piece.QUEEN:
+            return bishopAttacks(square, occupied)
+                    | rookAttacks(square, occupied);
+        case Piece.KING:
+            return KING_ATTACKS[square];
+        default:
+            return 0L;
+        }
+    }
+
+    /**
+     * Returns true if a square is attacked by any piece of a colour.
+     * @param position
+     *          the position
+     * @param square
+     *          the square
+     * @param colour
+     *          the attacking colour
+     * @return true if attacked
+     */
+    public static boolean isAttacked(Position position, int square,
+            int colour) {
+        long occupied = position.getOccupied();
+        long queens = position.getPieces(Piece.QUEEN, colour);
+        return (KNIGHT_ATTACKS[square]
+                    & position.getPieces(Piece.KNIGHT, colour)) != 0L
+                || (PAWN_ATTACKS[Piece.opposite(colour)][square]
+                    & position.getPieces(Piece.PAWN, colour)) != 0L
+                || (KING_ATTACKS[square]
+                    & position.getPieces(Piece.KING, colour)) != 0L
+                || (bishopAttacks(square, occupied)
+                    & (position.getPieces(Piece.BISHOP, colour) | queens))
+                    != 0L
+                || (rookAttacks(square, occupied)
+                    & (position.getPieces(Piece.ROOK, colour) | queens))
+                    != 0L;
+    }
+
+    /**
+     * Writes every legal move of the side to move into an array.
+     * @param position
+     *          the position
+     * @param moves
+     *          the array to write to, with room for MAX_MOVES moves
+     * @param start
+     *          the index to start writing at
+     * @return the index after the last move written
+     */
+    public static int generate(Position position, int[] moves, int start) {
+        int end = start;
+        long own = position.getOccupancy(position.getSideToMove());
+        while (own != 0L) {
+            int from = Long.numberOfTrailingZeros(own);
+            own &= own - 1;
+            end = generateFrom(position, from, moves, end);
+        }
+        return end;
+    }
+
+    /**
+     * Returns true if the side to move has at least one legal move. The
+     * king is tried first, skipping squares the attack map already rules
+     * out, and the search stops at the first legal move found.
+     * @param position
+     *          the position
+     * @return true if there is a legal move
+     */
+    public static boolean hasLegalMove(Position position) {
+        int us = position.getSideToMove();
+        long own = position.getOccupancy(us);
+        long occupied = position.getOccupied();
+        int king = position.kingSquare(us);
+        if (king != Position.NO_SQUARE && anyLegal(position, king,
+                KING_ATTACKS[king] & ~own
+                    & ~position.getAttacks(Piece.opposite(us)))) {
+            return true;
+        }
+
+        long others = own & ~position.getPieces(Piece.KING, us);
+        while (others != 0L) {
+            int from = Long.numberOfTrailingZeros(others);
+            others &= others - 1;
+            int piece = position.pieceAt(from);
+            long targets;
+            if (Piece.type(piece) == Piece.PAWN) {
+                targets = pawnTargets(position, from, us, occupied);
+            } else {
+                targets = attacks(piece, from, occupied) & ~own;
+            }
+            if (anyLegal(position, from, targets)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if the piece on a square may legally move to any of the
+     * target squares.
+     * @param position
+     *          the position
+     * @param from
+     *          the square of the piece
+     * @param targets
+     *          the squares the piece may move to
+     * @return true if a move is legal
+     */
+    private static boolean anyLegal(Position position, int from,
+            long targets) {
+        int piece = position.pieceAt(from);
+        while (targets != 0L) {
+            int to = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            int flags = QUIET;
+            if (Piece.type(piece) == Piece.PAWN
+                    && to == position.getEnPassant()) {
+                flags = EN_PASSANT;
+            }
+            if (isLegal(position, encode(from, to, flags, piece,
+                    position.pieceAt(to)))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the squares a pawn may move to, ignoring checks.
+     * @param position
+     *          the position
+     * @param from
+     *          the square of the pawn
+     * @param us
+     *          the colour of the pawn
+     * @param occupied
+     *          the occupied squares
+     * @return the target squares
+     */
+    private static long pawnTargets(Position position, int from, int us,
+            long occupied) {
+        long targets = PAWN_ATTACKS[us][from]
+                & position.getOccupancy(Piece.opposite(us));
+        int enPassant = position.getEnPassant();
+        if (enPassant != Position.NO_SQUARE
+                && (PAWN_ATTACKS[us][from] & (1L << enPassant)) != 0L) {
+            targets |= 1L << enPassant;
+        }
+        int forward = pawnForward(us);
+        int to = from + forward;
+        if ((occupied & (1L << to)) == 0L) {
+            targets |= 1L << to;
+            int startRow = 1;
+            if (us == Piece.WHITE) {
+                startRow = Position.EIGHT - 2;
+            }
+            if (Position.row(from) == startRow
+                    && (occupied & (1L << (to + forward))) == 0L) {
+                targets |= 1L << (to + forward);
+            }
+        }
+        return targets;
+    }
+
+    /**
+     * Writes the legal moves of the piece on one square into an array.
+     * Nothing is written if the square does not hold a piece of the side
+     * to move.
+     * @param position
+     *          the position
+     * @param from
+     *          the square of the piece
+     * @param moves
+     *          the array to write to
+     * @param start
+     *          the index to start writing at
+     * @return the index after the last move written
+     */
+    public static int generateFrom(Position position, int from, int[] moves,
+            int start) {
+        return generatePiece(position, from, false, moves, start);
+    }
+
+    /**
+     * Writes the legal captures and promotions of the side to move into an
+     * array, for searches that only look at moves changing the material.
+     * @param position
+     *          the position
+     * @param moves
+     *          the array to write to, with room for MAX_MOVES moves
+     * @param start
+     *          the index to start writing at
+     * @return the index after the last move written
+     */
+    public static int generateCaptures(Position position, int[] moves,
+            int start) {
+        int end = start;
+        long own = position.getOccupancy(position.getSideToMove());
+        while (own != 0L) {
+            int from = Long.numberOfTrailingZeros(own);
+            own &= own - 1;
+            end = generatePiece(position, from, true, moves, end);
+        }
+        return end;
+    }
+
+    /**
+     * Writes the legal moves of the piece on one square into an array.
+     * @param position
+     *          the position
+     * @param from
+     *          the square of the piece
+     * @param capturesOnly
+     *          true to only write captures and promotions
+     * @param moves
+     *          the array to write to
+     * @param start
+     *          the index to start writing at
+     * @return the index after the last move written
+     */
+    private static int generatePiece(Position position, int from,
+            boolean capturesOnly, int[] moves, int start) {
+        int piece = position.pieceAt(from);
+        int us = position.getSideToMove();
+        if (piece == Piece.EMPTY || Piece.colour(piece) != us) {
+            return start;
+        }
+        long occupied = position.getOccupied();
+        long targets;
+
+        switch (Piece.type(piece)) {
+        case Piece.PAWN:
+            return pawnMoves(position, from, piece, capturesOnly, moves,
+                    start);
+        case Piece.KNIGHT:
+            targets = KNIGHT_ATTACKS[from];
+            break;
+        case Piece.BISHOP:
+            targets = bishopAttacks(from, occupied);
+            break;
+        case Piece.ROOK:
+            targets = rookAttacks(from, occupied);
+            break;
+        case Piece.QUEEN:
+            targets = bishopAttacks(from, occupied)
+                    | rookAttacks(from, occupied);
+            break;
+        default:
+            targets = KING_ATTACKS[from];
+            if (!capturesOnly) {
+                start = castlingMoves(position, from, piece, moves, start);
+            }
+            break;
+        }
+
+        if (capturesOnly) {
+            targets &= position.getOccupancy(Piece.opposite(us));
+        } else {
+            targets &= ~position.getOccupancy(us);
+        }
+        return addMoves(position, from, piece, targets, moves, start);
+    }
+
+    /**
+     * Writes the legal moves of a piece to each target square.
+     * @param position
+     *          the position
+     * @param from
+     *          the square of the piece
+     * @param piece
+     *          the code of the piece
+     * @param targets
+     *          the squares the piece may move to
+     * @param moves
+     *          the array to write to
+     * @param start
+     *          the index to start writing at
+     * @return the index after the last move written
+     */
+    private static int addMoves(Position position, int from, int piece,
+            long targets, int[] moves, int start) {
+        int end = start;
+        while (targets != 0L) {
+            int to = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            int captured = position.pieceAt(to);
+            int flags = QUIET;
+            if (captured != Piece.EMPTY) {
+                flags = CAPTURE;
+            }
+            int move = encode(from, to, flags, piece, captured);
+            if (isLegal(position, move)) {
+                moves[end++] = move;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Writes the legal moves of a pawn.
+     * @param position
+     *          the position
+     * @param from
+     *          the square of the pawn
+     * @param piece
+     *          the code of the pawn
+     * @param capturesOnly
+     *          true to only write captures and promotions
+     * @param moves
+     *          the array to write to
+     * @param start
+     *          the index to start writing at
+     * @return the index after the last move written
+     */
+    private static int pawnMoves(Position position, int from, int piece,
+            boolean capturesOnly, int[] moves, int start) {
+        int us = Piece.colour(piece);
+        int them = Piece.opposite(us);
+        int forward = pawnForward(us);
+        int startRow;
+        int lastRow;
+        if (us == Piece.WHITE) {
+            startRow = Position.EIGHT - 2;
+            lastRow = 0;
+        } else {
+            startRow = 1;
+            lastRow = Position.EIGHT - 1;
+        }
+        int end = start;
+        long occupied = position.getOccupied();
+
+        int to = from + forward;
+        boolean promotes = Position.row(to) == lastRow;
+        if ((occupied & (1L << to)) == 0L && (promotes || !capturesOnly)) {
+            end = addPawnMove(position, from, to, QUIET, piece, Piece.EMPTY,
+                    promotes, moves, end);
+            int jump = to + forward;
+            if (!capturesOnly && Position.row(from) == startRow
+                    && (occupied & (1L << jump)) == 0L) {
+                end = addPawnMove(position, from, jump, DOUBLE_PUSH, piece,
+                        Piece.EMPTY, false, moves, end);
+            }
+        }
+
+        long captures = PAWN_ATTACKS[us][from];
+        long enemies = position.getOccupancy(them);
+        while (captures != 0L) {
+            to = Long.numberOfTrailingZeros(captures);
+            captures &= captures - 1;
+            if ((enemies & (1L << to)) != 0L) {
+                end = addPawnMove(position, from, to, CAPTURE, piece,
+                        position.pieceAt(to), Position.row(to) == lastRow,
+                        moves, end);
+            } else if (to == position.getEnPassant()) {
+                end = addPawnMove(position, from, to, EN_PASSANT, piece,
+                        Piece.code(Piece.PAWN, them), false, moves, end);
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Writes a pawn move if it is legal, as four moves if it promotes.
+     * @param position
+     *          the position
+     * @param from
+     *          the square moved from
+     * @param to
+     *          the square moved to
+     * @param flags
+     *          the move flags
+     * @param piece
+     *          the code of the pawn
+     * @param captured
+     *          the code of the captured piece
+     * @param promotes
+     *          true if the pawn reaches the last row
+     * @param moves
+     *          the array to write to
+     * @param start
+     *          the index to start writing at
+     * @return the index after the last move written
+     */
+    private static int addPawnMove(Position position, int from, int to,
+            int flags, int piece, int captured, boolean promotes,
+            int[] moves, int start) {
+        int move = encode(from, to, flags, piece, captured);
+        if (!isLegal(position, move)) {
+            return start;
+        }
+        if (!promotes) {
+            moves[start] = move;
+            return start + 1;
+        }
+        int end = start;
+        for (int type = Piece.QUEEN; type >= Piece.KNIGHT; type--) {
+            moves[end++] = encode(from, to,
+                    flags | PROMOTION | (type - Piece.KNIGHT), piece,
+                    captured);
+        }
+        return end;
+    }
+
+    /**
+     * Writes the legal castling moves of a king.
+     * @param position
+     *          the position
+     * @param from
+     *          the square of the king
+     * @param piece
+     *          the code of the king
+     * @param moves
+     *          the array to write to
+     * @param start
+     *          the index to start writing at
+     * @return the index after the last move written
+     */
+    private static int castlingMoves(Position position, int from, int piece,
+            int[] moves, int start) {
+        int us = Piece.colour(piece);
+        int rights = position.getCastling();
+        if (us == Piece.WHITE) {
+            rights &= Position.WHITE_KINGSIDE | Position.WHITE_QUEENSIDE;
+        } else {
+            rights &= Position.BLACK_KINGSIDE | Position.BLACK_QUEENSIDE;
+        }
+        if (rights == 0 || from != Position.castlingKingSquare(us)) {
+            return start;
+        }
+        int them = Piece.opposite(us);
+        if (isAttacked(position, from, them)) {
+            return start;
+        }
+        int end = start;
+        long occupied = position.getOccupied();
+        int rook = Piece.code(Piece.ROOK, us);
+
+        if ((rights & (Position.WHITE_KINGSIDE | Position.BLACK_KINGSIDE))
+                != 0
+                && position.pieceAt(from + 3) == rook
+                && (occupied & ((1L << (from + 1)) | (1L << (from + 2))))
+                    == 0L
+                && !isAttacked(position, from + 1, them)
+                && !isAttacked(position, from + 2, them)) {
+            moves[end++] = encode(from, from + 2, KING_CASTLE, piece,
+                    Piece.EMPTY);
+        }
+        if ((rights & (Position.WHITE_QUEENSIDE | Position.BLACK_QUEENSIDE))
+                != 0
+                && position.pieceAt(from - 4) == rook
+                && (occupied & ((1L << (from - 1)) | (1L << (from - 2))
+                    | (1L << (from - 3)))) == 0L
+                && !isAttacked(position, from - 1, them)
+                && !isAttacked(position, from - 2, them)) {
+            moves[end++] = encode(from, from - 2, QUEEN_CASTLE, piece,
+                    Piece.EMPTY);
+        }
+        return end;
+    }
+
+    /**
+     * Returns true if a move does not leave the mover's own king attacked.
+     * The check is made against the occupancy after the move without
+     * changing the position.
+     * @param position
+     *          the position before the move
+     * @param move
+     *          the encoded move
+     * @return true if the move is legal
+     */
+    static boolean isLegal(Position position, int move) {
+        int us = position.getSideToMove();
+        int them = Piece.opposite(us);
+        int from = from(move);
+        int to = to(move);
+        int king;
+        if (Piece.type(piece(move)) == Piece.KING) {
+            king = to;
+        } else {
+            king = position.kingSquare(us);
+            if (king == Position.NO_SQUARE) {
+                return true;
+            }
+        }
+
+        long remaining = ~(1L << to);
+        long occupied = (position.getOccupied() & ~(1L << from))
+                | (1L << to);
+        if (flags(move) == EN_PASSANT) {
+            long taken = 1L << (to - pawnForward(us));
+            occupied &= ~taken;
+            remaining &= ~taken;
+        }
+        long queens = position.getPieces(Piece.QUEEN, them);
+
+        return (KNIGHT_ATTACKS[king] & remaining
+                    & position.getPieces(Piece.KNIGHT, them)) == 0L
+                && (PAWN_ATTACKS[us][king] & remaining
+                    & position.getPieces(Piece.PAWN, them)) == 0L
+                && (KING_ATTACKS[king]
+                    & position.getPieces(Piece.KING, them)) == 0L
+                && (bishopAttacks(king, occupied) & remaining
+                    & (position.getPieces(Piece.BISHOP, them) | queens))
+                    == 0L
+                && (rookAttacks(king, occupied) & remaining
+                    & (position.getPieces(Piece.ROOK, them) | queens))
+                    == 0L;
+    }
+
+    /**
+     * Returns how a pawn of a colour moves from one square to the next.
+     * @param colour
+     *          the colour of the pawn
+     * @return the change in square
+     */
+    static int pawnForward(int colour) {
+        if (colour == Piece.WHITE) {
+            return -Position.EIGHT;
+        }
+        return Position.EIGHT;
+    }
+}
@@ -0,0 +1,555 @@
+package game;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * MoveJournal saves a game as it is played. The file starts with a
+ * snapshot of the position in the GameFile format, followed by one four
+ * byte record for every move made or taken back since. Saving a move only
+ * adds its record to a buffer; a background thread writes the buffer and
+ * forces it to disk every few milliseconds, so the moves made in that
+ * time share one fsync.
+ *
+ * Every so many moves the journal is compacted: a new file holding only a
+ * snapshot of the current position is written beside it, forced to disk
+ * and renamed over it, so there is always one complete file. A crash can
+ * lose at most the last moves not yet forced. When a journal is opened
+ * the snapshot is loaded and the moves replayed; a record that was torn
+ * or does not hold a legal move ends the game there, and it is cut off.
+ *
+ * A record is the move's from square, to square and promotion type in
+ * sixteen bits, then the low sixteen bits of a CRC32 of the record's
+ * number and the move.
+ *
+ * @author Kiaan Castillo A01024604
+ * @version 2018
+ */
+public final class MoveJournal implements Closeable {
+
+    /**
+     * The first four bytes of every journal, "SAJL".
+     */
+    public static final int MAGIC = 0x53414A4C;
+    /**
+     * The version of the format written.
+     */
+    public static final int VERSION = 1;
+    /**
+     * The length of the header: the magic number, the version and the
+     * snapshot.
+     */
+    public static final int HEADER_LENGTH = Integer.BYTES + 1
+            + GameFile.LENGTH;
+    /**
+     * The length of a record.
+     */
+    public static final int RECORD_LENGTH = 4;
+    /**
+     * The records after which the journal asks to be compacted.
+     */
+    public static final int SNAPSHOT_INTERVAL = 512;
+    /**
+     * How long moves are gathered before they are forced, in
+     * milliseconds.
+     */
+    public static final long COMMIT_INTERVAL = 20L;
+    /**
+     * The record of a move taken back, which no move encodes to since its
+     * from and to squares are the same.
+     */
+    private static final int TAKEBACK = 0xFFFF;
+    /**
+     * The records the buffer starts with room for.
+     */
+    private static final int INITIAL_RECORDS = 256;
+    /**
+     * The bits of a square in a record.
+     */
+    private static final int SQUARE_BITS = 6;
+    /**
+     * Mask of a square in a record.
+     */
+    private static final int SQUARE_MASK = 63;
+    /**
+     * Mask of an unsigned short.
+     */
+    private static final int SHORT_MASK = 0xFFFF;
+    /**
+     * The file.
+     */
+    private final Path path;
+    /**
+     * Held while the file is written, forced or replaced.
+     */
+    private final Object io;
+    /**
+     * Guards the buffers and counters.
+     */
+    private final Object lock;
+    /**
+     * The thread that writes and forces records.
+     */
+    private final Thread committer;
+    /**
+     * The channel records are appended to.
+     */
+    private FileChannel channel;
+    /**
+     * The records not yet written.
+     */
+    private ByteBuffer pending;
+    /**
+     * The records being written, swapped with pending.
+     */
+    private ByteBuffer writing;
+    /**
+     * The number of records since the snapshot.
+     */
+    private long appended;
+    /**
+     * The number of records since the snapshot that are on disk.
+     */
+    private long durable;
+    /**
+     * The moves made since the snapshot that have not been taken back.
+     */
+    private int depth;
+    /**
+     * The error the committer ran into, if any.
+     */
+    private IOException failure;
+    /**
+     * True once the journal is closed.
+     */
+    private boolean closed;
+
+    /**
+     * Constructs an object of type MoveJournal appending to an open file.
+     * @param path
+     *          the file
+     * @param channel
+     *          the file, positioned after its last record
+     * @param records
+     *          the number of records after the snapshot
+     * @param depth
+     *          the moves of the position since the snapshot
+     */
+    private MoveJournal(Path path, FileChannel channel, long records,
+            int depth) {
+        this.path = path;
+        this.channel = channel;
+        io = new Object();
+        lock = new Object();
+        pending = ByteBuffer.allocate(INITIAL_RECORDS * RECORD_LENGTH);
+        writing = ByteBuffer.allocate(INITIAL_RECORDS * RECORD_LENGTH);
+        appended = records;
+        durable = records;
+        this.depth = depth;
+        committer = new Thread(this::commitLoop, "journal");
+        committer.setDaemon(true);
+        committer.start();
+    }
+
+    /**
+     * Starts a journal, replacing any file, with a snapshot of a position.
+     * @param path
+     *          the file
+     * @param position
+     *          the position
+     * @return the journal
+     * @throws IOException
+     *          if the file cannot be written
+     */
+    public static MoveJournal create(Path path, Position position)
+            throws IOException {
+        return new MoveJournal(path, writeSnapshot(path, position), 0L, 0);
+    }
+
+    /**
+     * Loads a journal and opens it to carry on appending.
+     * @param path
+     *          the file
+     * @param position
+     *          set to the snapshot with every move replayed, so the moves
+     *          can be taken back; left alone if the file is bad
+     * @return the journal
+     * @throws IOException
+     *          if the file cannot be read or its snapshot is bad
+     */
+    public static MoveJournal open(Path path, Position position)
+            throws IOException {
+        Position loaded = new Position();
+        long records = replay(path, loaded);
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.WRITE);
+        long end = HEADER_LENGTH + records * RECORD_LENGTH;
+        channel.truncate(end);
+        channel.position(end);
+        position.copyFrom(loaded);
+        return new MoveJournal(path, channel, records, loaded.getPly());
+    }
+
+    /**
+     * Loads a journal without opening it for appending.
+     * @param path
+     *          the file
+     * @param position
+     *          set to the snapshot with every move replayed; left alone
+     *          if the file is bad
+     * @return the number of records replayed, not counting any cut off
+     * @throws IOException
+     *          if the file cannot be read or its snapshot is bad
+     */
+    public static long replay(Path path, Position position)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        if (buffer.remaining() < HEADER_LENGTH
+                || buffer.getInt() != MAGIC) {
+            throw new IOException("Not a move journal: " + path);
+        }
+        int version = buffer.get();
+        if (version != VERSION) {
+            throw new IOException("Unsupported move journal version "
+                    + version + ": " + path);
+        }
+        Position loaded = new Position();
+        GameFile.decode(buffer, loaded, path.toString());
+
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        long records = 0L;
+        while (buffer.remaining() >= RECORD_LENGTH) {
+            int record = buffer.getShort() & SHORT_MASK;
+            int check = buffer.getShort() & SHORT_MASK;
+            if (check != check(records, record)) {
+                break;
+            }
+            if (record == TAKEBACK) {
+                if (loaded.getPly() == 0) {
+                    break;
+                }
+                loaded.unmakeMove();
+            } else {
+                int move = decode(loaded, record, moves);
+                if (move == 0) {
+                    break;
+                }
+                loaded.makeMove(move);
+            }
+            records++;
+        }
+        position.copyFrom(loaded);
+        return records;
+    }
+
+    /**
+     * Returns the record of a move.
+     * @param move
+     *          the move
+     * @return the record
+     */
+    private static int encode(int move) {
+        int record = MoveGenerator.from(move)
+                | MoveGenerator.to(move) << SQUARE_BITS;
+        if (MoveGenerator.isPromotion(move)) {
+            record |= MoveGenerator.promotionType(move) << 2 * SQUARE_BITS;
+        }
+        return record;
+    }
+
+    /**
+     * Returns the legal move a record stands for.
+     * @param position
+     *          the position the move is made in
+     * @param record
+     *          the record
+     * @param moves
+     *          scratch space for at least MoveGenerator.MAX_MOVES moves
+     * @return the move, or 0 if it is not legal
+     */
+    private static int decode(Position position, int record, int[] moves) {
+        int from = record & SQUARE_MASK;
+        int count = MoveGenerator.generateFrom(position, from, moves, 0);
+        for (int index = 0; index < count; index++) {
+            if (encode(moves[index]) == record) {
+                return moves[index];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the check of a record.
+     * @param number
+     *          the number of the record after the snapshot
+     * @param record
+     *          the record
+     * @return the low sixteen bits of a CRC32 of both
+     */
+    private static int check(long number, int record) {
+        CRC32 crc = new CRC32();
+        for (int shift = 0; shift < Long.SIZE; shift += Byte.SIZE) {
+            crc.update((int) (number >>> shift));
+        }
+        crc.update(record);
+        crc.update(record >>> Byte.SIZE);
+        return (int) crc.getValue() & SHORT_MASK;
+    }
+
+    /**
+     * Writes a file holding only a snapshot of a position, forces it to
+     * disk and renames it over the journal.
+     * @param path
+     *          the journal
+     * @param position
+     *          the position
+     * @return the new file, open for appending after the snapshot
+     * @throws IOException
+     *          if the file cannot be written
+     */
+    private static FileChannel writeSnapshot(Path path, Position position)
+            throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        header.putInt(MAGIC);
+        header.put((byte) VERSION);
+        GameFile.encode(position, header);
+        header.flip();
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            channel.force(true);
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.WRITE);
+        channel.position(HEADER_LENGTH);
+        return channel;
+    }
+
+    /**
+     * Returns the file.
+     * @return path
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Saves a move that was just made. Returns at once; the move is on
+     * disk within COMMIT_INTERVAL, or when commit returns.
+     * @param move
+     *          the move
+     * @throws IOException
+     *          if an earlier write failed
+     */
+    public void append(int move) throws IOException {
+        add(encode(move));
+        depth++;
+    }
+
+    /**
+     * Saves a move being taken back. If the move was made before the
+     * snapshot, the journal is compacted to the position instead.
+     * @param position
+     *          the position after the move was taken back
+     * @throws IOException
+     *          if an earlier write failed or the snapshot cannot be
+     *          written
+     */
+    public void takeback(Position position) throws IOException {
+        if (depth == 0) {
+            snapshot(position);
+            return;
+        }
+        add(TAKEBACK);
+        depth--;
+    }
+
+    /**
+     * Adds a record to the buffer.
+     * @param record
+     *          the record
+     * @throws IOException
+     *          if an earlier write failed or the journal is closed
+     */
+    private void add(int record) throws IOException {
+        synchronized (lock) {
+            if (failure != null) {
+                throw failure;
+            }
+            if (closed) {
+                throw new IOException("Move journal is closed: " + path);
+            }
+            if (pending.remaining() < RECORD_LENGTH) {
+                ByteBuffer larger = ByteBuffer.allocate(
+                        pending.capacity() * 2);
+                pending.flip();
+                larger.put(pending);
+                pending = larger;
+            }
+            pending.putShort((short) record);
+            pending.putShort((short) check(appended, record));
+            appended++;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Returns true if enough records have been added since the snapshot
+     * that the journal should be compacted.
+     * @return true if snapshot should be called
+     */
+    public boolean needsSnapshot() {
+        synchronized (lock) {
+            return appended >= SNAPSHOT_INTERVAL;
+        }
+    }
+
+    /**
+     * Compacts the journal to a snapshot of a position, which must be the
+     * position its records lead to or one the game was set to.
+     * @param position
+     *          the position
+     * @throws IOException
+     *          if the snapshot cannot be written
+     */
+    public void snapshot(Position position) throws IOException {
+        synchronized (io) {
+            FileChannel replaced = writeSnapshot(path, position);
+            synchronized (lock) {
+                pending.clear();
+                appended = 0L;
+                durable = 0L;
+                depth = 0;
+                lock.notifyAll();
+            }
+            channel.close();
+            channel = replaced;
+        }
+    }
+
+    /**
+     * Waits until every move saved so far is on disk.
+     * @throws IOException
+     *          if a write failed
+     */
+    public void commit() throws IOException {
+        synchronized (lock) {
+            long target = appended;
+            lock.notifyAll();
+            while (durable < target && failure == null && !closed) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while saving", e);
+                }
+                target = Math.min(target, appended);
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    /**
+     * Writes and forces the buffered records whenever there are some,
+     * waiting COMMIT_INTERVAL first so that records arriving together are
+     * forced together.
+     */
+    private void commitLoop() {
+        while (true) {
+            synchronized (lock) {
+                while (!closed && appended == durable) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (closed && appended == durable) {
+                    return;
+                }
+            }
+            try {
+                Thread.sleep(COMMIT_INTERVAL);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            try {
+                flush();
+            } catch (IOException e) {
+                synchronized (lock) {
+                    failure = e;
+                    lock.notifyAll();
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Writes the buffered records and forces them to disk.
+     * @throws IOException
+     *          if the file cannot be written
+     */
+    private void flush() throws IOException {
+        synchronized (io) {
+            long target;
+            synchronized (lock) {
+                target = appended;
+                ByteBuffer swapped = writing;
+                writing = pending;
+                pending = swapped;
+                pending.clear();
+            }
+            writing.flip();
+            while (writing.hasRemaining()) {
+                channel.write(writing);
+            }
+            channel.force(false);
+            synchronized (lock) {
+                durable = target;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Forces every record to disk and closes the file.
+     * @throws IOException
+     *          if a write failed
+     */
+    public void close() throws IOException {
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+        }
+        try {
+            committer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (io) {
+            if (failure == null) {
+                flush();
+            }
+            channel.close();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
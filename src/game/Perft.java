@@ -0,0 +1,211 @@
+package game;
+
+/**
+ * Perft counts the leaf nodes of the move tree of a Position to a fixed
+ * depth. The counts of the reference positions are known exactly, so
+ * comparing against them checks the rules, and timing them measures how
+ * fast the rules run.
+ *
+ * Running the main method checks every reference position and then
+ * reports nodes per second for depths 1 to 6 from the start position of
+ * the board. It exits with status 1 if any count is wrong. With --check
+ * it only checks the reference positions, so it can be run as a
+ * regression check after changing the rules.
+ *
+ * <pre>
+ * java game.Perft [--check | DEPTH]
+ * </pre>
+ *
+ * @author Kiaan Castillo A01024604
+ * @version 2018
+ */
+public class Perft {
+
+    /**
+     * The deepest search supported.
+     */
+    public static final int MAX_DEPTH = 16;
+    /**
+     * The argument that checks the reference positions without timing.
+     */
+    public static final String CHECK = "--check";
+    /**
+     * The exit status when a count is wrong.
+     */
+    private static final int FAILURE = 1;
+    /**
+     * The deepest depth timed by the benchmark.
+     */
+    private static final int BENCHMARK_DEPTH = 6;
+    /**
+     * The depth searched to warm up before timing.
+     */
+    private static final int WARMUP_DEPTH = 4;
+    /**
+     * The number of warm up searches.
+     */
+    private static final int WARMUP_ROUNDS = 5;
+    /**
+     * Nanoseconds in a second.
+     */
+    private static final double NANOS = 1e9;
+    /**
+     * The reference positions, in FEN.
+     */
+    static final String[] REFERENCE_FENS = {
+        Fen.STANDARD_START,
+        "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+        "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+        "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+        "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+        "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 "
+            + "w - - 0 10",
+    };
+    /**
+     * The node counts of each reference position, from depth 1.
+     */
+    static final long[][] REFERENCE_COUNTS = {
+        {20L, 400L, 8902L, 197281L, 4865609L},
+        {48L, 2039L, 97862L, 4085603L},
+        {14L, 191L, 2812L, 43238L, 674624L},
+        {6L, 264L, 9467L, 422333L},
+        {44L, 1486L, 62379L, 2103487L},
+        {46L, 2079L, 89890L, 3894594L},
+    };
+    /**
+     * The position moves are made and taken back on.
+     */
+    private final Position position;
+    /**
+     * The moves at each ply.
+     */
+    private final int[][] moves;
+
+    /**
+     * Constructs an object of type Perft.
+     */
+    public Perft() {
+        position = new Position();
+        moves = new int[MAX_DEPTH][MoveGenerator.MAX_MOVES];
+    }
+
+    /**
+     * Counts the leaf nodes of the move tree of a position.
+     * @param root
+     *          the position, which is not changed
+     * @param depth
+     *          the depth to count to
+     * @return the number of leaf nodes
+     */
+    public long perft(Position root, int depth) {
+        if (depth < 0 || depth > MAX_DEPTH) {
+            throw new IllegalArgumentException("Depth out of range: "
+                    + depth);
+        }
+        if (depth == 0) {
+            return 1L;
+        }
+        position.copyFrom(root);
+        return count(0, depth);
+    }
+
+    /**
+     * Counts the leaf nodes below one ply.
+     * @param ply
+     *          the ply
+     * @param depth
+     *          the depth left
+     * @return the number of leaf nodes
+     */
+    private long count(int ply, int depth) {
+        int[] list = moves[ply];
+        int end = MoveGenerator.generate(position, list, 0);
+        if (depth == 1) {
+            return end;
+        }
+        long nodes = 0L;
+        for (int index = 0; index < end; index++) {
+            position.makeMove(list[index]);
+            nodes += count(ply + 1, depth - 1);
+            position.unmakeMove();
+        }
+        return nodes;
+    }
+
+    /**
+     * Checks every reference position and prints the result of each.
+     * @param perft
+     *          the perft to count with
+     * @return true if every count matched
+     */
+    static boolean verify(Perft perft) {
+        boolean passed = true;
+        Position position = new Position();
+        for (int index = 0; index < REFERENCE_FENS.length; index++) {
+            Fen.parse(REFERENCE_FENS[index], position);
+            long[] expected = REFERENCE_COUNTS[index];
+            boolean matched = true;
+            for (int depth = 1; depth <= expected.length; depth++) {
+                long nodes = perft.perft(position, depth);
+                if (nodes != expected[depth - 1]) {
+                    System.out.println("FAIL " + REFERENCE_FENS[index]
+                            + " depth " + depth + ": " + nodes
+                            + " expected " + expected[depth - 1]);
+                    matched = false;
+                }
+            }
+            if (matched) {
+                System.out.println("ok   " + REFERENCE_FENS[index]);
+            }
+            passed &= matched;
+        }
+        return passed;
+    }
+
+    /**
+     * Times perft from the start position of the board at each depth.
+     * @param perft
+     *          the perft to count with
+     * @param maxDepth
+     *          the deepest depth to time
+     */
+    static void benchmark(Perft perft, int maxDepth) {
+        Position position = new Position();
+        position.setStartPosition();
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            perft.perft(position, WARMUP_DEPTH);
+        }
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            long start = System.nanoTime();
+            long nodes = perft.perft(position, depth);
+            double seconds = (System.nanoTime() - start) / NANOS;
+            System.out.printf("perft %d: %d nodes in %.3f s, %.0f nodes/s%n",
+                    depth, nodes, seconds, nodes / seconds);
+        }
+    }
+
+    /**
+     * Checks the reference positions and runs the benchmark, exiting
+     * with status 1 if any count is wrong.
+     * @param args
+     *          optionally --check to skip the benchmark, or the deepest
+     *          depth to benchmark
+     */
+    public static void main(String[] args) {
+        Perft perft = new Perft();
+        boolean passed = verify(perft);
+        if (args.length > 0 && args[0].equals(CHECK)) {
+            System.out.println(passed ? "all reference counts match"
+                    : "reference counts do not match");
+            System.exit(passed ? 0 : FAILURE);
+        }
+        int depth = BENCHMARK_DEPTH;
+        if (args.length > 0) {
+            depth = Integer.parseInt(args[0]);
+        }
+        benchmark(perft, depth);
+        if (!passed) {
+            System.exit(FAILURE);
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package game;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * PgnBenchmark measures how fast PgnReader reads and checks games, in
+ * games and megabytes per second. Given a PGN file it reads that file;
+ * otherwise it first writes a file of random legal games to read.
+ *
+ * @author Kiaan Castillo A01024604
+ * @version 2018
+ */
+public final class PgnBenchmark {
+
+    /**
+     * The number of random games written when no file is given.
+     */
+    static final int SAMPLE_GAMES = 20000;
+    /**
+     * The most moves of a random game.
+     */
+    private static final int SAMPLE_PLIES = 160;
+    /**
+     * The seed of the random games.
+     */
+    private static final long SEED = 2018L;
+    /**
+     * The longest line written.
+     */
+    private static final int LINE_LENGTH = 79;
+    /**
+     * The number of times the file is read, the first to warm up.
+     */
+    private static final int ROUNDS = 3;
+    /**
+     * Bytes in a megabyte.
+     */
+    private static final double MEGABYTE = 1 << 20;
+    /**
+     * Nanoseconds in a second.
+     */
+    private static final double NANOS = 1e9;
+
+    /**
+     * PgnBenchmark only has static members.
+     */
+    private PgnBenchmark() {
+    }
+
+    /**
+     * Writes random legal games to a file.
+     * @param path
+     *          the file
+     * @param games
+     *          the number of games
+     * @throws IOException
+     *          if the file cannot be written
+     */
+    static void writeSample(Path path, int games) throws IOException {
+        Random random = new Random(SEED);
+        Position position = new Position();
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        StringBuilder text = new StringBuilder();
+        try (BufferedWriter writer = Files.newBufferedWriter(path,
+                StandardCharsets.UTF_8)) {
+            for (int game = 1; game <= games; game++) {
+                Fen.parse(Fen.STANDARD_START, position);
+                text.setLength(0);
+                String result = randomGame(random, position, SAMPLE_PLIES,
+                        moves, text);
+                writer.write("[Event \"Sample\"]\n[Round \"" + game
+                        + "\"]\n[Result \"" + result + "\"]\n\n");
+                writer.write(text.toString());
+                writer.write(result + "\n\n");
+            }
+        }
+    }
+
+    /**
+     * Plays random legal moves and appends them as PGN movetext, broken
+     * into lines.
+     * @param random
+     *          the source of the moves
+     * @param position
+     *          the position to play from, which is left after the last
+     *          move
+     * @param maxPlies
+     *          the most moves to play
+     * @param moves
+     *          scratch space for at least MoveGenerator.MAX_MOVES moves
+     * @param text
+     *          the builder the movetext is appended to
+     * @return the result, which is "*" if the game did not end
+     */
+    static String randomGame(Random random, Position position, int maxPlies,
+            int[] moves, StringBuilder text) {
+        int lineStart = text.length();
+        for (int ply = 0; ply < maxPlies; ply++) {
+            int count = MoveGenerator.generate(position, moves, 0);
+            if (count == 0) {
+                if (!position.inCheck()) {
+                    return "1/2-1/2";
+                }
+                return position.getSideToMove() == Piece.WHITE
+                        ? "0-1" : "1-0";
+            }
+            int move = moves[random.nextInt(count)];
+            int before = text.length();
+            if (position.getSideToMove() == Piece.WHITE || ply == 0) {
+                text.append(position.getFullmoveNumber());
+                text.append(position.getSideToMove() == Piece.WHITE
+                        ? ". " : "... ");
+            }
+            San.append(position, move, moves, text);
+            text.append(' ');
+            if (text.length() - lineStart > LINE_LENGTH && before > 0) {
+                text.setCharAt(before - 1, '\n');
+                lineStart = before;
+            }
+            position.makeMove(move);
+        }
+        return PgnGame.UNKNOWN_RESULT;
+    }
+
+    /**
+     * Reads every game of a file once.
+     * @param path
+     *          the file
+     * @return the number of games, moves and invalid games read
+     * @throws IOException
+     *          if the file cannot be read
+     */
+    private static long[] readAll(Path path) throws IOException {
+        long games = 0L;
+        long moves = 0L;
+        long invalid = 0L;
+        PgnGame game = new PgnGame();
+        try (PgnReader reader = new PgnReader(path)) {
+            while (true) {
+                try {
+                    if (!reader.next(game)) {
+                        break;
+                    }
+                    games++;
+                    moves += game.getMoveCount();
+                } catch (PgnException e) {
+                    if (invalid == 0L) {
+                        System.out.println("first invalid game: "
+                                + e.getMessage());
+                    }
+                    invalid++;
+                }
+            }
+        }
+        return new long[] {games, moves, invalid};
+    }
+
+    /**
+     * Runs the benchmark.
+     * @param args
+     *          optionally the PGN file to read
+     * @throws IOException
+     *          if a file cannot be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        Path path;
+        if (args.length > 0) {
+            path = Paths.get(args[0]);
+        } else {
+            path = Files.createTempFile("sample", ".pgn");
+            path.toFile().deleteOnExit();
+            writeSample(path, SAMPLE_GAMES);
+        }
+        double megabytes = Files.size(path) / MEGABYTE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            long[] counts = readAll(path);
+            double seconds = (System.nanoTime() - start) / NANOS;
+            System.out.printf("%d games, %d moves, %d invalid in %.3f s: "
+                    + "%.0f games/s, %.1f MB/s%n", counts[0], counts[1],
+                    counts[2], seconds, counts[0] / seconds,
+                    megabytes / seconds);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package game;
+
+import java.io.IOException;
+
+/**
+ * PgnException is thrown when a game read by a PgnReader is invalid,
+ * such as when it has an illegal move. It gives the line and column of
+ * the problem. The reader skips the rest of the game, so reading can go
+ * on with the next one.
+ *
+ * @author Kiaan Castillo A01024604
+ * @version 2018
+ */
+public class PgnException extends IOException {
+
+    /**
+     * The serialVersionUID of the PgnException class.
+     */
+    private static final long serialVersionUID = 1L;
+    /**
+     * The line of the problem, from 1.
+     */
+    private final long line;
+    /**
+     * The column of the problem, from 1.
+     */
+    private final int column;
+    /**
+     * What the problem is.
+     */
+    private final String problem;
+
+    /**
+     * Constructs an object of type PgnException.
+     * @param problem
+     *          what the problem is
+     * @param line
+     *          the line of the problem
+     * @param column
+     *          the column of the problem
+     */
+    public PgnException(String problem, long line, int column) {
+        super("line " + line + ", column " + column + ": " + problem);
+        this.line = line;
+        this.column = column;
+        this.problem = problem;
+    }
+
+    /**
+     * Returns the line of the problem, from 1.
+     * @return line
+     */
+    public long getLine() {
+        return line;
+    }
+
+    /**
+     * Returns the column of the problem, from 1.
+     * @return column
+     */
+    public int getColumn() {
+        return column;
+    }
+
+    /**
+     * Returns what the problem is, without where it is.
+     * @return problem
+     */
+    public String getProblem() {
+        return problem;
+    }
+}
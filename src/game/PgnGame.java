@@ -0,0 +1,188 @@
+package game;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * PgnGame is one game read by a PgnReader: its tags, the position it
+ * starts from, its moves and its result. A reader refills the same
+ * PgnGame for each game, so reading a whole database needs only one.
+ *
+ * @author Kiaan Castillo A01024604
+ * @version 2018
+ */
+public class PgnGame {
+
+    /**
+     * The result of a game that is unfinished or has no result.
+     */
+    public static final String UNKNOWN_RESULT = "*";
+    /**
+     * The number of moves there is room for at first.
+     */
+    private static final int INITIAL_MOVES = 256;
+    /**
+     * The tags, in the order they were read.
+     */
+    private final Map<String, String> tags;
+    /**
+     * The position the game starts from.
+     */
+    private final Position start;
+    /**
+     * The position after the moves read so far.
+     */
+    private final Position position;
+    /**
+     * The moves.
+     */
+    private int[] moves;
+    /**
+     * The number of moves.
+     */
+    private int moveCount;
+    /**
+     * The result, such as "1-0".
+     */
+    private String result;
+    /**
+     * The line of the file the game starts on.
+     */
+    private long line;
+
+    /**
+     * Constructs an object of type PgnGame.
+     */
+    public PgnGame() {
+        tags = new LinkedHashMap<>();
+        start = new Position();
+        position = new Position();
+        moves = new int[INITIAL_MOVES];
+        clear(0L);
+    }
+
+    /**
+     * Empties the game so that the next one can be read into it.
+     * @param startLine
+     *          the line of the file the next game starts on
+     */
+    void clear(long startLine) {
+        tags.clear();
+        moveCount = 0;
+        result = UNKNOWN_RESULT;
+        line = startLine;
+    }
+
+    /**
+     * Sets the position the game starts from, once its tags are read.
+     * @param from
+     *          the position, which is copied
+     */
+    void setStart(Position from) {
+        start.copyFrom(from);
+        position.copyFrom(from);
+    }
+
+    /**
+     * Makes a move and adds it to the game.
+     * @param move
+     *          the legal move
+     */
+    void addMove(int move) {
+        if (moveCount == moves.length) {
+            moves = Arrays.copyOf(moves, moveCount * 2);
+        }
+        moves[moveCount++] = move;
+        position.makeMove(move);
+    }
+
+    /**
+     * Sets a tag.
+     * @param name
+     *          the name of the tag
+     * @param value
+     *          the value of the tag
+     */
+    void setTag(String name, String value) {
+        tags.put(name, value);
+    }
+
+    /**
+     * Sets the result.
+     * @param result
+     *          the result
+     */
+    void setResult(String result) {
+        this.result = result;
+    }
+
+    /**
+     * Returns the value of a tag.
+     * @param name
+     *          the name of the tag
+     * @return the value, or null if the game does not have the tag
+     */
+    public String getTag(String name) {
+        return tags.get(name);
+    }
+
+    /**
+     * Returns every tag, in the order they were read.
+     * @return tags
+     */
+    public Map<String, String> getTags() {
+        return Collections.unmodifiableMap(tags);
+    }
+
+    /**
+     * Returns the position the game starts from.
+     * @return start
+     */
+    public Position getStart() {
+        return start;
+    }
+
+    /**
+     * Returns the position after every move of the game.
+     * @return position
+     */
+    public Position getPosition() {
+        return position;
+    }
+
+    /**
+     * Returns the number of moves.
+     * @return moveCount
+     */
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    /**
+     * Returns a move.
+     * @param index
+     *          the index of the move, from 0
+     * @return the move
+     */
+    public int getMove(int index) {
+        return moves[index];
+    }
+
+    /**
+     * Returns the result.
+     * @return result
+     */
+    public String getResult() {
+        return result;
+    }
+
+    /**
+     * Returns the line of the file the game starts on.
+     * @return line
+     */
+    public long getLine() {
+        return line;
+    }
+}
@@ -0,0 +1,550 @@
+package game;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * PgnReader reads games one at a time from a PGN file of any size. The
+ * file is read in fixed chunks through a channel, and every move is
+ * checked against the rules as it is read, so memory stays the same
+ * however many games there are.
+ *
+ * Comments, variations, numeric annotation glyphs and escape lines are
+ * skipped. A game that starts from a FEN tag starts from that position.
+ * When a game is invalid, next throws a PgnException with the line and
+ * column of the problem and skips the rest of that game; calling next
+ * again reads the game after it.
+ *
+ * @author Kiaan Castillo A01024604
+ * @version 2018
+ */
+public class PgnReader implements Closeable {
+
+    /**
+     * The size of the chunks read, in bytes.
+     */
+    public static final int BUFFER_SIZE = 1 << 16;
+    /**
+     * The longest move, move number or tag name accepted.
+     */
+    private static final int MAX_TOKEN = 255;
+    /**
+     * Returned when there is nothing left to read.
+     */
+    private static final int END = -1;
+    /**
+     * Marks that no byte has been pushed back.
+     */
+    private static final int NONE = -2;
+    /**
+     * The room for tag values at first.
+     */
+    private static final int INITIAL_VALUE = 64;
+    /**
+     * The results a game can end with.
+     */
+    private static final String[] RESULTS = {"1-0", "0-1", "1/2-1/2", "*"};
+    /**
+     * Where the bytes come from.
+     */
+    private final ReadableByteChannel channel;
+    /**
+     * The chunk being read.
+     */
+    private final ByteBuffer buffer;
+    /**
+     * The token being read.
+     */
+    private final StringBuilder token;
+    /**
+     * Scratch space for the moves generated to match a move against.
+     */
+    private final int[] scratch;
+    /**
+     * The position games start from when they have no FEN tag.
+     */
+    private final Position standard;
+    /**
+     * The bytes of the tag value being read.
+     */
+    private byte[] value;
+    /**
+     * A byte read and pushed back, or NONE.
+     */
+    private int pushedBack;
+    /**
+     * The line of the last byte read, from 1.
+     */
+    private long line;
+    /**
+     * The column of the last byte read, from 1.
+     */
+    private int column;
+    /**
+     * The line the last token started on.
+     */
+    private long tokenLine;
+    /**
+     * The column the last token started on.
+     */
+    private int tokenColumn;
+    /**
+     * The number of bytes read.
+     */
+    private long bytesRead;
+    /**
+     * True once the result of the game being read has been read.
+     */
+    private boolean gameOver;
+
+    /**
+     * Constructs a reader of a file.
+     * @param path
+     *          the PGN file
+     * @throws IOException
+     *          if the file cannot be opened
+     */
+    public PgnReader(Path path) throws IOException {
+        this(FileChannel.open(path, StandardOpenOption.READ));
+    }
+
+    /**
+     * Constructs a reader of a channel, which it closes when closed.
+     * @param channel
+     *          the channel PGN is read from
+     */
+    public PgnReader(ReadableByteChannel channel) {
+        this.channel = channel;
+        buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        buffer.flip();
+        token = new StringBuilder(MAX_TOKEN);
+        scratch = new int[MoveGenerator.MAX_MOVES];
+        standard = new Position();
+        Fen.parse(Fen.STANDARD_START, standard);
+        value = new byte[INITIAL_VALUE];
+        pushedBack = NONE;
+        line = 1L;
+        column = 0;
+    }
+
+    /**
+     * Reads the next game.
+     * @param game
+     *          filled with the game read
+     * @return false if there are no games left
+     * @throws PgnException
+     *          if the game is invalid; the rest of it is skipped
+     * @throws IOException
+     *          if the file cannot be read
+     */
+    public boolean next(PgnGame game) throws IOException {
+        game.clear(line);
+        gameOver = false;
+        boolean started = false;
+        boolean inMoves = false;
+        while (true) {
+            int c = read();
+            if (c == END) {
+                if (!started) {
+                    return false;
+                }
+                if (!inMoves) {
+                    startMoves(game);
+                }
+                return true;
+            }
+            if (isSpace(c) || c == '.') {
+                continue;
+            }
+            tokenLine = line;
+            tokenColumn = column;
+            if (!started) {
+                game.clear(line);
+                started = true;
+            }
+            if (c == '[') {
+                if (inMoves) {
+                    pushedBack = c;
+                    return true;
+                }
+                readTag(game);
+            } else if (c == '%' && column == 1) {
+                skipLine();
+            } else if (c == '{') {
+                skipComment();
+            } else if (c == ';') {
+                skipLine();
+            } else if (c == '(') {
+                skipVariation();
+            } else if (c == '$') {
+                readSymbol(read());
+            } else if (isSymbol(c)) {
+                readSymbol(c);
+                String result = result();
+                if (result != null) {
+                    gameOver = true;
+                    game.setResult(result);
+                }
+                if (!inMoves) {
+                    startMoves(game);
+                    inMoves = true;
+                }
+                if (result != null) {
+                    return true;
+                }
+                if (!isMoveNumber() && !isAnnotation()) {
+                    playMove(game);
+                }
+            } else {
+                throw fail("unexpected '" + (char) c + "'");
+            }
+        }
+    }
+
+    /**
+     * Sets the position a game starts from, once its tags are read.
+     * @param game
+     *          the game
+     * @throws IOException
+     *          if the FEN tag is invalid or the file cannot be read
+     */
+    private void startMoves(PgnGame game) throws IOException {
+        String fen = game.getTag("FEN");
+        if (fen == null) {
+            game.setStart(standard);
+            return;
+        }
+        Position start = new Position();
+        try {
+            Fen.parse(fen, start);
+        } catch (IllegalArgumentException e) {
+            throw fail(e.getMessage());
+        }
+        game.setStart(start);
+    }
+
+    /**
+     * Matches the token against the legal moves and makes it.
+     * @param game
+     *          the game
+     * @throws IOException
+     *          if the move is illegal, ambiguous or malformed, or the file
+     *          cannot be read
+     */
+    private void playMove(PgnGame game) throws IOException {
+        int move = San.parse(game.getPosition(), token, scratch);
+        if (move == San.ILLEGAL) {
+            throw fail("illegal move " + token);
+        } else if (move == San.AMBIGUOUS) {
+            throw fail("ambiguous move " + token);
+        } else if (move == San.MALFORMED) {
+            throw fail("not a move: " + token);
+        }
+        game.addMove(move);
+    }
+
+    /**
+     * Reads a tag, the opening bracket already read.
+     * @param game
+     *          the game the tag belongs to
+     * @throws IOException
+     *          if the tag is malformed or the file cannot be read
+     */
+    private void readTag(PgnGame game) throws IOException {
+        int c = skipSpaces();
+        if (!isSymbol(c)) {
+            throw fail("tag name missing");
+        }
+        readSymbol(c);
+        String name = token.toString();
+        if (skipSpaces() != '"') {
+            throw fail("tag value missing");
+        }
+        int length = 0;
+        for (c = read(); c != '"'; c = read()) {
+            if (c == END || c == '\n') {
+                throw fail("tag value not closed");
+            }
+            if (c == '\\') {
+                c = read();
+            }
+            if (length == value.length) {
+                value = Arrays.copyOf(value, length * 2);
+            }
+            value[length++] = (byte) c;
+        }
+        if (skipSpaces() != ']') {
+            throw fail("tag not closed");
+        }
+        game.setTag(name, new String(value, 0, length,
+                StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Reads a token into the token builder.
+     * @param first
+     *          the first character of the token, already read
+     * @throws IOException
+     *          if the token is too long or the file cannot be read
+     */
+    private void readSymbol(int first) throws IOException {
+        token.setLength(0);
+        tokenLine = line;
+        tokenColumn = column;
+        int c = first;
+        while (isSymbol(c)) {
+            if (token.length() == MAX_TOKEN) {
+                throw fail("token too long");
+            }
+            token.append((char) c);
+            c = read();
+        }
+        pushedBack = c;
+    }
+
+    /**
+     * Returns the result the token is, if it is one.
+     * @return the result, or null if the token is not a result
+     */
+    private String result() {
+        for (String result : RESULTS) {
+            if (result.contentEquals(token)) {
+                return result;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns true if the token is a move number.
+     * @return true if every character is a digit
+     */
+    private boolean isMoveNumber() {
+        for (int index = 0; index < token.length(); index++) {
+            char c = token.charAt(index);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if the token is an annotation standing on its own,
+     * such as "!?".
+     * @return true if every character is '!' or '?'
+     */
+    private boolean isAnnotation() {
+        for (int index = 0; index < token.length(); index++) {
+            char c = token.charAt(index);
+            if (c != '!' && c != '?') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Skips a comment in braces, the opening brace already read.
+     * @throws IOException
+     *          if the file cannot be read
+     */
+    private void skipComment() throws IOException {
+        int c = read();
+        while (c != '}' && c != END) {
+            c = read();
+        }
+    }
+
+    /**
+     * Skips the rest of the line.
+     * @throws IOException
+     *          if the file cannot be read
+     */
+    private void skipLine() throws IOException {
+        int c = read();
+        while (c != '\n' && c != END) {
+            c = read();
+        }
+    }
+
+    /**
+     * Skips a variation, which may hold comments and other variations,
+     * the opening parenthesis already read.
+     * @throws IOException
+     *          if the file cannot be read
+     */
+    private void skipVariation() throws IOException {
+        int depth = 1;
+        while (depth > 0) {
+            int c = read();
+            if (c == END) {
+                return;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (c == '{') {
+                skipComment();
+            } else if (c == ';') {
+                skipLine();
+            }
+        }
+    }
+
+    /**
+     * Skips spaces and returns the first other character.
+     * @return the character, or END
+     * @throws IOException
+     *          if the file cannot be read
+     */
+    private int skipSpaces() throws IOException {
+        int c = read();
+        while (isSpace(c)) {
+            c = read();
+        }
+        return c;
+    }
+
+    /**
+     * Skips what is left of a game after a problem: everything up to its
+     * result or the tags of the next game.
+     * @throws IOException
+     *          if the file cannot be read
+     */
+    private void skipGame() throws IOException {
+        while (true) {
+            int c = read();
+            if (c == END) {
+                return;
+            } else if (c == '[') {
+                pushedBack = c;
+                return;
+            } else if (c == '{') {
+                skipComment();
+            } else if (c == ';') {
+                skipLine();
+            } else if (c == '(') {
+                skipVariation();
+            } else if (isSymbol(c)) {
+                token.setLength(0);
+                while (isSymbol(c) && token.length() < MAX_TOKEN) {
+                    token.append((char) c);
+                    c = read();
+                }
+                pushedBack = c;
+                if (result() != null) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Skips the rest of the game, unless it is already over, and returns
+     * the exception for a problem found at the last token.
+     * @param problem
+     *          what the problem is
+     * @return the exception
+     * @throws IOException
+     *          if the file cannot be read
+     */
+    private PgnException fail(String problem) throws IOException {
+        PgnException failure = new PgnException(problem, tokenLine,
+                tokenColumn);
+        if (!gameOver) {
+            skipGame();
+        }
+        return failure;
+    }
+
+    /**
+     * Reads the next byte.
+     * @return the byte, or END
+     * @throws IOException
+     *          if the file cannot be read
+     */
+    private int read() throws IOException {
+        if (pushedBack != NONE) {
+            int c = pushedBack;
+            pushedBack = NONE;
+            return c;
+        }
+        if (!buffer.hasRemaining()) {
+            buffer.clear();
+            int count = channel.read(buffer);
+            while (count == 0) {
+                count = channel.read(buffer);
+            }
+            buffer.flip();
+            if (count < 0) {
+                return END;
+            }
+            bytesRead += count;
+        }
+        int c = buffer.get() & 0xFF;
+        if (c == '\n') {
+            line++;
+            column = 0;
+        } else {
+            column++;
+        }
+        return c;
+    }
+
+    /**
+     * Returns true if a character separates tokens.
+     * @param c
+     *          the character
+     * @return true if a space, tab or line break
+     */
+    private static boolean isSpace(int c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+    }
+
+    /**
+     * Returns true if a character can be part of a move, move number,
+     * result or tag name.
+     * @param c
+     *          the character
+     * @return true if it can
+     */
+    private static boolean isSymbol(int c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z'
+                || c >= '0' && c <= '9' || c == '+' || c == '#' || c == '='
+                || c == ':' || c == '-' || c == '/' || c == '_' || c == '!'
+                || c == '?' || c == '*';
+    }
+
+    /**
+     * Returns the line being read, from 1.
+     * @return line
+     */
+    public long getLine() {
+        return line;
+    }
+
+    /**
+     * Returns the number of bytes read so far.
+     * @return bytesRead
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * Closes the channel.
+     * @throws IOException
+     *          if it cannot be closed
+     */
+    public void close() throws IOException {
+        channel.close();
+    }
+}
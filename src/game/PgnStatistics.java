@@ -0,0 +1,631 @@
+package game;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * PgnStatistics checks every game of a PGN file and counts results, moves
+ * and openings, on all cores. The file is split into ranges that start at
+ * game boundaries, each range is read by its own PgnReader in a fork-join
+ * pool, and each task counts into its own PgnStatistics. The counts are
+ * merged as the tasks join, so no counter is shared between threads.
+ *
+ * Nothing here touches JavaFX, so it runs headless.
+ *
+ * @author Kiaan Castillo A01024604
+ * @version 2018
+ */
+public class PgnStatistics {
+
+    /**
+     * The number of plies that name an opening.
+     */
+    public static final int OPENING_PLIES = 4;
+    /**
+     * The most problems kept.
+     */
+    public static final int MAX_PROBLEMS = 100;
+    /**
+     * The number of ranges each thread gets, so that threads which finish
+     * early can take ranges from slower ones.
+     */
+    private static final int RANGES_PER_THREAD = 8;
+    /**
+     * The bytes read at a time when looking for a game boundary.
+     */
+    private static final int SCAN_SIZE = 1 << 16;
+    /**
+     * The results counted, in the order of their counts.
+     */
+    private static final String[] RESULTS = {"1-0", "0-1", "1/2-1/2", "*"};
+    /**
+     * The number of openings printed.
+     */
+    private static final int TOP_OPENINGS = 10;
+    /**
+     * Bytes in a megabyte.
+     */
+    private static final double MEGABYTE = 1 << 20;
+    /**
+     * Nanoseconds in a second.
+     */
+    private static final double NANOS = 1e9;
+    /**
+     * The number of valid games.
+     */
+    private long games;
+    /**
+     * The number of invalid games.
+     */
+    private long invalid;
+    /**
+     * The number of moves of the valid games.
+     */
+    private long plies;
+    /**
+     * The fewest moves of a valid game.
+     */
+    private int minPlies;
+    /**
+     * The most moves of a valid game.
+     */
+    private int maxPlies;
+    /**
+     * The number of games with each result.
+     */
+    private final long[] results;
+    /**
+     * The number of games that start with each opening.
+     */
+    private final Map<String, Long> openings;
+    /**
+     * The first problems found, with their lines counted from the start
+     * of their range until merged.
+     */
+    private final List<Problem> problems;
+    /**
+     * The lines in the ranges counted.
+     */
+    private long lines;
+    /**
+     * Scratch space for the moves generated when naming an opening.
+     */
+    private final int[] scratch;
+    /**
+     * The opening being named.
+     */
+    private final StringBuilder opening;
+    /**
+     * The position an opening is named on.
+     */
+    private final Position position;
+
+    /**
+     * A problem found in a game.
+     */
+    public static final class Problem {
+
+        /**
+         * The line of the problem, from 1.
+         */
+        private long line;
+        /**
+         * The column of the problem, from 1.
+         */
+        private final int column;
+        /**
+         * What the problem is.
+         */
+        private final String problem;
+
+        /**
+         * Constructs an object of type Problem.
+         * @param failure
+         *          the exception the problem was reported by
+         */
+        private Problem(PgnException failure) {
+            line = failure.getLine();
+            column = failure.getColumn();
+            problem = failure.getProblem();
+        }
+
+        /**
+         * Returns the line of the problem, from 1.
+         * @return line
+         */
+        public long getLine() {
+            return line;
+        }
+
+        /**
+         * Returns the column of the problem, from 1.
+         * @return column
+         */
+        public int getColumn() {
+            return column;
+        }
+
+        /**
+         * Returns where and what the problem is.
+         * @return the description
+         */
+        public String toString() {
+            return "line " + line + ", column " + column + ": " + problem;
+        }
+    }
+
+    /**
+     * Constructs an object of type PgnStatistics with nothing counted.
+     */
+    public PgnStatistics() {
+        minPlies = Integer.MAX_VALUE;
+        results = new long[RESULTS.length];
+        openings = new HashMap<>();
+        problems = new ArrayList<>();
+        scratch = new int[MoveGenerator.MAX_MOVES];
+        opening = new StringBuilder();
+        position = new Position();
+    }
+
+    /**
+     * Counts a valid game.
+     * @param game
+     *          the game
+     */
+    public void add(PgnGame game) {
+        games++;
+        int count = game.getMoveCount();
+        plies += count;
+        minPlies = Math.min(minPlies, count);
+        maxPlies = Math.max(maxPlies, count);
+        for (int index = 0; index < RESULTS.length; index++) {
+            if (RESULTS[index].equals(game.getResult())) {
+                results[index]++;
+            }
+        }
+
+        position.copyFrom(game.getStart());
+        opening.setLength(0);
+        int named = Math.min(count, OPENING_PLIES);
+        for (int ply = 0; ply < named; ply++) {
+            if (ply > 0) {
+                opening.append(' ');
+            }
+            San.append(position, game.getMove(ply), scratch, opening);
+            position.makeMove(game.getMove(ply));
+        }
+        openings.merge(opening.toString(), 1L, Long::sum);
+    }
+
+    /**
+     * Counts an invalid game.
+     * @param failure
+     *          what was wrong with it
+     */
+    public void addInvalid(PgnException failure) {
+        invalid++;
+        if (problems.size() < MAX_PROBLEMS) {
+            problems.add(new Problem(failure));
+        }
+    }
+
+    /**
+     * Adds the counts of the range that follows this one.
+     * @param next
+     *          the counts of the next range
+     */
+    public void merge(PgnStatistics next) {
+        games += next.games;
+        invalid += next.invalid;
+        plies += next.plies;
+        minPlies = Math.min(minPlies, next.minPlies);
+        maxPlies = Math.max(maxPlies, next.maxPlies);
+        for (int index = 0; index < RESULTS.length; index++) {
+            results[index] += next.results[index];
+        }
+        for (Map.Entry<String, Long> entry : next.openings.entrySet()) {
+            openings.merge(entry.getKey(), entry.getValue(), Long::sum);
+        }
+        for (Problem problem : next.problems) {
+            if (problems.size() < MAX_PROBLEMS) {
+                problem.line += lines;
+                problems.add(problem);
+            }
+        }
+        lines += next.lines;
+    }
+
+    /**
+     * Checks and counts every game of a file.
+     * @param path
+     *          the PGN file
+     * @param pool
+     *          the pool to count on
+     * @return the counts
+     * @throws IOException
+     *          if the file cannot be read
+     */
+    public static PgnStatistics collect(Path path, ForkJoinPool pool)
+            throws IOException {
+        try (FileChannel file = FileChannel.open(path,
+                StandardOpenOption.READ)) {
+            long[] bounds = split(file,
+                    pool.getParallelism() * RANGES_PER_THREAD);
+            try {
+                return pool.invoke(new RangeTask(file, bounds, 0,
+                        bounds.length - 1));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    /**
+     * Splits a file into ranges that each start at the tags of a game.
+     * @param file
+     *          the file
+     * @param parts
+     *          the number of ranges wanted
+     * @return the start of each range followed by the end of the file
+     * @throws IOException
+     *          if the file cannot be read
+     */
+    static long[] split(FileChannel file, int parts) throws IOException {
+        long size = file.size();
+        long[] bounds = new long[parts + 1];
+        int count = 1;
+        for (int part = 1; part < parts; part++) {
+            long bound = nextGame(file, Math.max(size / parts * part,
+                    bounds[count - 1] + 1));
+            if (bound >= size) {
+                break;
+            }
+            if (bound > bounds[count - 1]) {
+                bounds[count++] = bound;
+            }
+        }
+        bounds[count++] = size;
+        long[] trimmed = new long[count];
+        System.arraycopy(bounds, 0, trimmed, 0, count);
+        return trimmed;
+    }
+
+    /**
+     * Finds the first game that starts at or after a byte: a '[' that
+     * starts a line following a blank line.
+     * @param file
+     *          the file
+     * @param from
+     *          where to start looking
+     * @return where the game starts, or the size of the file if no game
+     *          does
+     * @throws IOException
+     *          if the file cannot be read
+     */
+    private static long nextGame(FileChannel file, long from)
+            throws IOException {
+        ByteBuffer chunk = ByteBuffer.allocate(SCAN_SIZE);
+        int newlines = 0;
+        long position = from;
+        while (true) {
+            chunk.clear();
+            int count = file.read(chunk, position);
+            if (count < 0) {
+                return file.size();
+            }
+            for (int index = 0; index < count; index++) {
+                byte c = chunk.get(index);
+                if (c == '[' && newlines >= 2) {
+                    return position + index;
+                } else if (c == '\n') {
+                    newlines++;
+                } else if (c != '\r' && c != ' ' && c != '\t') {
+                    newlines = 0;
+                }
+            }
+            position += count;
+        }
+    }
+
+    /**
+     * RangeTask counts a run of ranges, splitting it in two until it is a
+     * single range.
+     */
+    private static final class RangeTask
+            extends RecursiveTask<PgnStatistics> {
+
+        /**
+         * The serialVersionUID of the RangeTask class.
+         */
+        private static final long serialVersionUID = 1L;
+        /**
+         * The file.
+         */
+        private final transient FileChannel file;
+        /**
+         * The bounds of every range.
+         */
+        private final long[] bounds;
+        /**
+         * The first range of the run.
+         */
+        private final int first;
+        /**
+         * The range after the last range of the run.
+         */
+        private final int last;
+
+        /**
+         * Constructs an object of type RangeTask.
+         * @param file
+         *          the file
+         * @param bounds
+         *          the bounds of every range
+         * @param first
+         *          the first range of the run
+         * @param last
+         *          the range after the last range of the run
+         */
+        private RangeTask(FileChannel file, long[] bounds, int first,
+                int last) {
+            this.file = file;
+            this.bounds = bounds;
+            this.first = first;
+            this.last = last;
+        }
+
+        /**
+         * Counts the run of ranges.
+         * @return the counts
+         */
+        protected PgnStatistics compute() {
+            if (last - first == 1) {
+                try {
+                    return count(file, bounds[first], bounds[last]);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            int middle = (first + last) >>> 1;
+            RangeTask right = new RangeTask(file, bounds, middle, last);
+            right.fork();
+            PgnStatistics counted = new RangeTask(file, bounds, first,
+                    middle).compute();
+            counted.merge(right.join());
+            return counted;
+        }
+    }
+
+    /**
+     * Checks and counts the games of one range of a file.
+     * @param file
+     *          the file
+     * @param start
+     *          the first byte of the range
+     * @param end
+     *          the byte after the range
+     * @return the counts
+     * @throws IOException
+     *          if the file cannot be read
+     */
+    private static PgnStatistics count(FileChannel file, long start,
+            long end) throws IOException {
+        PgnStatistics counted = new PgnStatistics();
+        PgnGame game = new PgnGame();
+        PgnReader reader = new PgnReader(new RangeChannel(file, start, end));
+        while (true) {
+            try {
+                if (!reader.next(game)) {
+                    break;
+                }
+                counted.add(game);
+            } catch (PgnException e) {
+                counted.addInvalid(e);
+            }
+        }
+        counted.lines = reader.getLine() - 1;
+        return counted;
+    }
+
+    /**
+     * RangeChannel reads one range of a file that other threads may be
+     * reading other ranges of at the same time.
+     */
+    private static final class RangeChannel implements ReadableByteChannel {
+
+        /**
+         * The file.
+         */
+        private final FileChannel file;
+        /**
+         * The next byte to read.
+         */
+        private long position;
+        /**
+         * The byte after the range.
+         */
+        private final long end;
+
+        /**
+         * Constructs an object of type RangeChannel.
+         * @param file
+         *          the file
+         * @param start
+         *          the first byte of the range
+         * @param end
+         *          the byte after the range
+         */
+        private RangeChannel(FileChannel file, long start, long end) {
+            this.file = file;
+            this.position = start;
+            this.end = end;
+        }
+
+        /**
+         * Reads bytes of the range.
+         * @param destination
+         *          where the bytes go
+         * @return the number of bytes read, or -1 at the end of the range
+         * @throws IOException
+         *          if the file cannot be read
+         */
+        public int read(ByteBuffer destination) throws IOException {
+            if (position >= end) {
+                return -1;
+            }
+            int limit = destination.limit();
+            destination.limit(destination.position() + (int) Math.min(
+                    destination.remaining(), end - position));
+            int count = file.read(destination, position);
+            destination.limit(limit);
+            if (count > 0) {
+                position += count;
+            }
+            return count;
+        }
+
+        /**
+         * Returns true, as the file is closed by its owner.
+         * @return true
+         */
+        public boolean isOpen() {
+            return true;
+        }
+
+        /**
+         * Does nothing, as the file is closed by its owner.
+         */
+        public void close() {
+        }
+    }
+
+    /**
+     * Returns the number of valid games.
+     * @return games
+     */
+    public long getGames() {
+        return games;
+    }
+
+    /**
+     * Returns the number of invalid games.
+     * @return invalid
+     */
+    public long getInvalid() {
+        return invalid;
+    }
+
+    /**
+     * Returns the number of moves of the valid games.
+     * @return plies
+     */
+    public long getPlies() {
+        return plies;
+    }
+
+    /**
+     * Returns the number of games with a result.
+     * @param result
+     *          the result, such as "1-0"
+     * @return the number of games
+     */
+    public long getResultCount(String result) {
+        for (int index = 0; index < RESULTS.length; index++) {
+            if (RESULTS[index].equals(result)) {
+                return results[index];
+            }
+        }
+        return 0L;
+    }
+
+    /**
+     * Returns the number of games that start with each opening, named by
+     * its first moves.
+     * @return openings
+     */
+    public Map<String, Long> getOpenings() {
+        return openings;
+    }
+
+    /**
+     * Returns the first problems found.
+     * @return problems
+     */
+    public List<Problem> getProblems() {
+        return problems;
+    }
+
+    /**
+     * Returns a report of the counts.
+     * @return the report
+     */
+    public String toString() {
+        StringBuilder report = new StringBuilder();
+        report.append(games).append(" valid games, ").append(invalid)
+            .append(" invalid, ").append(plies).append(" moves");
+        if (games > 0L) {
+            report.append(" (").append(minPlies).append(" to ")
+                .append(maxPlies).append(", average ")
+                .append(plies / games).append(')');
+        }
+        report.append('\n');
+        for (int index = 0; index < RESULTS.length; index++) {
+            report.append(RESULTS[index]).append(": ")
+                .append(results[index]).append('\n');
+        }
+        openings.entrySet().stream()
+            .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+            .limit(TOP_OPENINGS)
+            .forEach(entry -> report.append(entry.getValue()).append("  ")
+                    .append(entry.getKey()).append('\n'));
+        for (Problem problem : problems) {
+            report.append(problem).append('\n');
+        }
+        return report.toString();
+    }
+
+    /**
+     * Counts a file and reports the counts and how fast they were made.
+     * @param args
+     *          the PGN file, or none to count random games, then
+     *          optionally the number of threads
+     * @throws IOException
+     *          if a file cannot be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        Path path;
+        if (args.length > 0) {
+            path = Paths.get(args[0]);
+        } else {
+            path = Files.createTempFile("sample", ".pgn");
+            path.toFile().deleteOnExit();
+            PgnBenchmark.writeSample(path, PgnBenchmark.SAMPLE_GAMES);
+        }
+        int threads = Runtime.getRuntime().availableProcessors();
+        if (args.length > 1) {
+            threads = Integer.parseInt(args[1]);
+        }
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        long start = System.nanoTime();
+        PgnStatistics statistics = collect(path, pool);
+        double seconds = (System.nanoTime() - start) / NANOS;
+        pool.shutdown();
+        System.out.print(statistics);
+        System.out.printf("%d threads: %.3f s, %.0f games/s, %.1f MB/s%n",
+                threads, seconds, (statistics.games + statistics.invalid)
+                    / seconds, Files.size(path) / MEGABYTE / seconds);
+    }
+}
@@ -0,0 +1,130 @@
+package game;
+
+/**
+ * Piece holds the numeric codes used for pieces by the rules code.
+ * A piece code packs the type ordinal and the colour bit into a single
+ * small integer so that a square can be stored in one byte.
+ *
+ * @author Kiaan Castillo A01024604
+ * @version 2018
+ */
+public final class Piece {
+
+    /**
+     * The colour white.
+     */
+    public static final int WHITE = 0;
+    /**
+     * The colour black.
+     */
+    public static final int BLACK = 1;
+    /**
+     * The code of an empty square.
+     */
+    public static final int EMPTY = 0;
+    /**
+     * The pawn type.
+     */
+    public static final int PAWN = 1;
+    /**
+     * The knight type.
+     */
+    public static final int KNIGHT = 2;
+    /**
+     * The bishop type.
+     */
+    public static final int BISHOP = 3;
+    /**
+     * The rook type.
+     */
+    public static final int ROOK = 4;
+    /**
+     * The queen type.
+     */
+    public static final int QUEEN = 5;
+    /**
+     * The king type.
+     */
+    public static final int KING = 6;
+    /**
+     * The number of distinct piece codes, including the empty code.
+     */
+    public static final int CODES = 14;
+    /**
+     * The names of the types, indexed by type.
+     */
+    private static final String[] TYPE_NAMES = {null, "Pawn", "Knight",
+        "Bishop", "Rook", "Queen", "King"};
+    /**
+     * The names of the colours, indexed by colour.
+     */
+    private static final String[] COLOUR_NAMES = {"White", "Black"};
+
+    /**
+     * Piece only has static members.
+     */
+    private Piece() {
+    }
+
+    /**
+     * Returns the code of a piece.
+     * @param type
+     *          the type of the piece
+     * @param colour
+     *          the colour of the piece
+     * @return the piece code
+     */
+    public static int code(int type, int colour) {
+        return (type << 1) | colour;
+    }
+
+    /**
+     * Returns the type of a piece code.
+     * @param code
+     *          the piece code
+     * @return the type
+     */
+    public static int type(int code) {
+        return code >>> 1;
+    }
+
+    /**
+     * Returns the colour of a piece code.
+     * @param code
+     *          the piece code
+     * @return the colour
+     */
+    public static int colour(int code) {
+        return code & 1;
+    }
+
+    /**
+     * Returns the colour playing against the given colour.
+     * @param colour
+     *          the colour
+     * @return the opposite colour
+     */
+    public static int opposite(int colour) {
+        return colour ^ 1;
+    }
+
+    /**
+     * Returns the type name of a piece code.
+     * @param code
+     *          the piece code
+     * @return the type name, or null for an empty square
+     */
+    public static String typeName(int code) {
+        return TYPE_NAMES[type(code)];
+    }
+
+    /**
+     * Returns the name of a colour.
+     * @param colour
+     *          the colour
+     * @return the colour name
+     */
+    public static String colourName(int colour) {
+        return COLOUR_NAMES[colour];
+    }
+}
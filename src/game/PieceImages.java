@@ -0,0 +1,76 @@
+package game;
+
+import javafx.scene.image.Image;
+
+/**
+ * PieceImages decodes the image of each piece once and shares it between
+ * every Tile of every Board, instead of decoding a PNG each time a piece
+ * lands on a square. An Image can be shown by any number of ImageViews,
+ * so one decoded copy of each of the twelve pieces is enough.
+ *
+ * @author Kiaan Castillo A01024604
+ * @version 2018
+ */
+public final class PieceImages {
+
+    /**
+     * The folder the images are in.
+     */
+    private static final String FOLDER = "/images/";
+    /**
+     * The extension of the images.
+     */
+    private static final String EXTENSION = ".png";
+    /**
+     * The decoded image of each piece code, or null until it is needed.
+     */
+    private static final Image[] IMAGES = new Image[Piece.CODES];
+    /**
+     * The number of images decoded so far.
+     */
+    private static int decodes;
+
+    /**
+     * PieceImages only has static members.
+     */
+    private PieceImages() {
+    }
+
+    /**
+     * Decodes the image of every piece that has not been decoded yet, so
+     * that the first boards shown do not wait for them.
+     */
+    public static synchronized void load() {
+        for (int colour = Piece.WHITE; colour <= Piece.BLACK; colour++) {
+            for (int type = Piece.PAWN; type <= Piece.KING; type++) {
+                get(Piece.code(type, colour));
+            }
+        }
+    }
+
+    /**
+     * Returns the image of a piece, decoding it the first time.
+     * @param code
+     *          the piece code
+     * @return the image
+     */
+    public static synchronized Image get(int code) {
+        Image image = IMAGES[code];
+        if (image == null) {
+            image = new Image(FOLDER + Piece.typeName(code)
+                    + Piece.colourName(Piece.colour(code)) + EXTENSION);
+            IMAGES[code] = image;
+            decodes++;
+        }
+        return image;
+    }
+
+    /**
+     * Returns how many images have been decoded, which stays at twelve
+     * however many boards are shown.
+     * @return the number of images decoded
+     */
+    public static synchronized int getDecodeCount() {
+        return decodes;
+    }
+}
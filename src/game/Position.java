@@ -0,0 +1,883 @@
+package game;
+
+import java.util.Arrays;
+
+/**
+ * Position is the state of a chess game independent of the user interface.
+ * Every piece type of each colour is held in a 64-bit bitboard, with one
+ * bit per square, along with the side to move, the castling rights, the
+ * en passant square and the move clocks.
+ * Squares are numbered row by row from the top left of the board, so
+ * square = x * 8 + y where x is the row and y is the column of a Tile.
+ * A Zobrist key identifying the position is kept up to date as pieces
+ * move.
+ *
+ * @author Kiaan Castillo A01024604
+ * @version 2018
+ */
+public class Position {
+
+    /**
+     * The number of squares on the board.
+     */
+    public static final int SQUARES = 64;
+    /**
+     * The number of rows and columns on the board.
+     */
+    public static final int EIGHT = 8;
+    /**
+     * The value used when there is no en passant square.
+     */
+    public static final int NO_SQUARE = -1;
+    /**
+     * White may castle on the king side.
+     */
+    public static final int WHITE_KINGSIDE = 1;
+    /**
+     * White may castle on the queen side.
+     */
+    public static final int WHITE_QUEENSIDE = 2;
+    /**
+     * Black may castle on the king side.
+     */
+    public static final int BLACK_KINGSIDE = 4;
+    /**
+     * Black may castle on the queen side.
+     */
+    public static final int BLACK_QUEENSIDE = 8;
+    /**
+     * The game continues and the side to move is not in check.
+     */
+    public static final int IN_PLAY = 0;
+    /**
+     * The side to move is in check and has a legal move.
+     */
+    public static final int CHECK = 1;
+    /**
+     * The side to move is in check and has no legal move.
+     */
+    public static final int CHECKMATE = 2;
+    /**
+     * The side to move is not in check and has no legal move.
+     */
+    public static final int STALEMATE = 3;
+    /**
+     * The number of moves the undo stack starts with room for.
+     */
+    public static final int INITIAL_STACK = 1024;
+    /**
+     * Shift of the castling rights in an undo record.
+     */
+    private static final int CASTLING_SHIFT = 4;
+    /**
+     * Shift of the en passant square in an undo record.
+     */
+    private static final int EN_PASSANT_SHIFT = 8;
+    /**
+     * Shift of the half move clock in an undo record.
+     */
+    private static final int CLOCK_SHIFT = 16;
+    /**
+     * Mask of the piece and castling fields of an undo record.
+     */
+    private static final int NIBBLE_MASK = 15;
+    /**
+     * Mask of the en passant field of an undo record.
+     */
+    private static final int EN_PASSANT_MASK = 127;
+    /**
+     * The row black's pieces start on.
+     */
+    private static final int BLACK_BACK_ROW = 0;
+    /**
+     * The row black's pawns start on.
+     */
+    private static final int BLACK_PAWN_ROW = 1;
+    /**
+     * The row white's pawns start on.
+     */
+    private static final int WHITE_PAWN_ROW = 6;
+    /**
+     * The row white's pieces start on.
+     */
+    private static final int WHITE_BACK_ROW = 7;
+    /**
+     * The square a king must stand on to castle, by colour.
+     */
+    private static final int[] CASTLING_KING_SQUARE = {60, 4};
+    /**
+     * All castling rights.
+     */
+    private static final int ALL_CASTLING = 15;
+    /**
+     * The castling rights kept when a piece moves from or to each square.
+     */
+    private static final int[] CASTLING_MASK = new int[SQUARES];
+    /**
+     * The back row of the start position, by column.
+     */
+    private static final int[] BACK_ROW = {Piece.ROOK, Piece.KNIGHT,
+        Piece.BISHOP, Piece.KING, Piece.QUEEN, Piece.BISHOP, Piece.KNIGHT,
+        Piece.ROOK};
+    /**
+     * The squares occupied by each piece code.
+     */
+    private final long[] pieces;
+    /**
+     * The squares occupied by each colour.
+     */
+    private final long[] occupancy;
+    /**
+     * The piece code on each square.
+     */
+    private final byte[] squares;
+    /**
+     * The squares attacked by the piece on each square.
+     */
+    private final long[] squareAttacks;
+    /**
+     * The squares attacked by each colour.
+     */
+    private final long[] attacks;
+    /**
+     * True if pieces were placed or removed outside of play, so the
+     * attack maps must be rebuilt before use.
+     */
+    private boolean attacksStale;
+    /**
+     * The moves made, for taking them back.
+     */
+    private int[] moveStack;
+    /**
+     * The state each move overwrote: the captured piece, the castling
+     * rights, the en passant square and the half move clock.
+     */
+    private int[] undoStack;
+    /**
+     * The key of the position before each move, for finding repetitions.
+     */
+    private long[] keyStack;
+    /**
+     * The number of moves that can be taken back.
+     */
+    private int ply;
+    /**
+     * The Zobrist key of the pieces, castling rights and side to move.
+     */
+    private long key;
+    /**
+     * The material and piece-square value of the pieces for white, packed
+     * the way Evaluation packs midgame and endgame values.
+     */
+    private int pieceSquares;
+    /**
+     * The phase of the pieces, counting down towards the endgame.
+     */
+    private int phase;
+    /**
+     * The colour to move.
+     */
+    private int sideToMove;
+    /**
+     * The castling rights still available.
+     */
+    private int castling;
+    /**
+     * The square a pawn may capture en passant on, or NO_SQUARE.
+     */
+    private int enPassant;
+    /**
+     * Half moves since the last capture or pawn move.
+     */
+    private int halfmoveClock;
+    /**
+     * The number of the current full move, starting at 1.
+     */
+    private int fullmoveNumber;
+
+    static {
+        for (int square = 0; square < SQUARES; square++) {
+            CASTLING_MASK[square] = ALL_CASTLING;
+        }
+        CASTLING_MASK[square(BLACK_BACK_ROW, 0)] &= ~BLACK_QUEENSIDE;
+        CASTLING_MASK[square(BLACK_BACK_ROW, EIGHT - 1)] &= ~BLACK_KINGSIDE;
+        CASTLING_MASK[CASTLING_KING_SQUARE[Piece.BLACK]]
+            &= ~(BLACK_KINGSIDE | BLACK_QUEENSIDE);
+        CASTLING_MASK[square(WHITE_BACK_ROW, 0)] &= ~WHITE_QUEENSIDE;
+        CASTLING_MASK[square(WHITE_BACK_ROW, EIGHT - 1)] &= ~WHITE_KINGSIDE;
+        CASTLING_MASK[CASTLING_KING_SQUARE[Piece.WHITE]]
+            &= ~(WHITE_KINGSIDE | WHITE_QUEENSIDE);
+    }
+
+    /**
+     * Constructs an empty Position with white to move.
+     */
+    public Position() {
+        this(INITIAL_STACK);
+    }
+
+    /**
+     * Constructs an empty Position with white to move and room for a
+     * number of moves to be taken back before the stacks grow.
+     * @param capacity
+     *          the number of moves the stacks start with room for
+     */
+    public Position(int capacity) {
+        pieces = new long[Piece.CODES];
+        occupancy = new long[2];
+        squares = new byte[SQUARES];
+        squareAttacks = new long[SQUARES];
+        attacks = new long[2];
+        moveStack = new int[Math.max(1, capacity)];
+        undoStack = new int[Math.max(1, capacity)];
+        keyStack = new long[Math.max(1, capacity)];
+        clear();
+    }
+
+    /**
+     * Constructs a copy of another Position.
+     * @param other
+     *          the position to copy
+     */
+    public Position(Position other) {
+        this();
+        copyFrom(other);
+    }
+
+    /**
+     * Returns the square of a row and column.
+     * @param x
+     *          the row
+     * @param y
+     *          the column
+     * @return the square
+     */
+    public static int square(int x, int y) {
+        return x * EIGHT + y;
+    }
+
+    /**
+     * Returns the row of a square.
+     * @param square
+     *          the square
+     * @return the row
+     */
+    public static int row(int square) {
+        return square >>> 3;
+    }
+
+    /**
+     * Returns the column of a square.
+     * @param square
+     *          the square
+     * @return the column
+     */
+    public static int column(int square) {
+        return square & (EIGHT - 1);
+    }
+
+    /**
+     * Returns the square a colour's king must stand on to castle.
+     * @param colour
+     *          the colour
+     * @return the square
+     */
+    public static int castlingKingSquare(int colour) {
+        return CASTLING_KING_SQUARE[colour];
+    }
+
+    /**
+     * Removes every piece and resets the game state.
+     */
+    public void clear() {
+        for (int code = 0; code < Piece.CODES; code++) {
+            pieces[code] = 0L;
+        }
+        occupancy[Piece.WHITE] = 0L;
+        occupancy[Piece.BLACK] = 0L;
+        for (int square = 0; square < SQUARES; square++) {
+            squares[square] = Piece.EMPTY;
+        }
+        attacksStale = true;
+        ply = 0;
+        key = 0L;
+        pieceSquares = 0;
+        phase = 0;
+        sideToMove = Piece.WHITE;
+        castling = 0;
+        enPassant = NO_SQUARE;
+        halfmoveClock = 0;
+        fullmoveNumber = 1;
+    }
+
+    /**
+     * Sets up the pieces the way the board starts a new game.
+     * The king starts on the fourth column, which the standard castling
+     * rules do not cover, so no castling rights are granted.
+     */
+    public void setStartPosition() {
+        clear();
+        for (int y = 0; y < EIGHT; y++) {
+            put(square(BLACK_BACK_ROW, y),
+                    Piece.code(BACK_ROW[y], Piece.BLACK));
+            put(square(BLACK_PAWN_ROW, y),
+                    Piece.code(Piece.PAWN, Piece.BLACK));
+            put(square(WHITE_PAWN_ROW, y),
+                    Piece.code(Piece.PAWN, Piece.WHITE));
+            put(square(WHITE_BACK_ROW, y),
+                    Piece.code(BACK_ROW[y], Piece.WHITE));
+        }
+    }
+
+    /**
+     * Copies the whole state of another position into this one, including
+     * the moves that can be taken back.
+     * @param other
+     *          the position to copy
+     */
+    public void copyFrom(Position other) {
+        System.arraycopy(other.pieces, 0, pieces, 0, Piece.CODES);
+        System.arraycopy(other.occupancy, 0, occupancy, 0, 2);
+        System.arraycopy(other.squares, 0, squares, 0, SQUARES);
+        System.arraycopy(other.squareAttacks, 0, squareAttacks, 0, SQUARES);
+        attacks[Piece.WHITE] = other.attacks[Piece.WHITE];
+        attacks[Piece.BLACK] = other.attacks[Piece.BLACK];
+        attacksStale = other.attacksStale;
+        ensureStack(other.ply);
+        System.arraycopy(other.moveStack, 0, moveStack, 0, other.ply);
+        System.arraycopy(other.undoStack, 0, undoStack, 0, other.ply);
+        System.arraycopy(other.keyStack, 0, keyStack, 0, other.ply);
+        ply = other.ply;
+        key = other.key;
+        pieceSquares = other.pieceSquares;
+        phase = other.phase;
+        sideToMove = other.sideToMove;
+        castling = other.castling;
+        enPassant = other.enPassant;
+        halfmoveClock = other.halfmoveClock;
+        fullmoveNumber = other.fullmoveNumber;
+    }
+
+    /**
+     * Places a piece on an empty square.
+     * @param square
+     *          the square
+     * @param code
+     *          the piece code
+     */
+    public void put(int square, int code) {
+        attacksStale = true;
+        place(square, code);
+    }
+
+    /**
+     * Removes the piece on a square, if any.
+     * @param square
+     *          the square
+     * @return the code of the piece removed
+     */
+    public int remove(int square) {
+        attacksStale = true;
+        return lift(square);
+    }
+
+    /**
+     * Places a piece on an empty square without touching the attack maps.
+     * @param square
+     *          the square
+     * @param code
+     *          the piece code
+     */
+    private void place(int square, int code) {
+        long bit = 1L << square;
+        key ^= Zobrist.piece(code, square);
+        pieceSquares += Evaluation.pieceSquare(code, square);
+        phase += Evaluation.phase(code);
+        pieces[code] |= bit;
+        occupancy[Piece.colour(code)] |= bit;
+        squares[square] = (byte) code;
+    }
+
+    /**
+     * Removes the piece on a square, if any, without touching the attack
+     * maps.
+     * @param square
+     *          the square
+     * @return the code of the piece removed
+     */
+    private int lift(int square) {
+        int code = squares[square];
+        if (code != Piece.EMPTY) {
+            long bit = ~(1L << square);
+            pieces[code] &= bit;
+            occupancy[Piece.colour(code)] &= bit;
+            squares[square] = Piece.EMPTY;
+            key ^= Zobrist.piece(code, square);
+            pieceSquares -= Evaluation.pieceSquare(code, square);
+            phase -= Evaluation.phase(code);
+        }
+        return code;
+    }
+
+    /**
+     * Makes a move generated by the MoveGenerator and passes the turn to
+     * the other side. The state the move overwrites is pushed on the undo
+     * stack so that unmakeMove can restore it.
+     * @param move
+     *          the encoded move
+     */
+    public void makeMove(int move) {
+        ensureStack(ply + 1);
+        keyStack[ply] = getKey();
+        int from = MoveGenerator.from(move);
+        int to = MoveGenerator.to(move);
+        int flags = MoveGenerator.flags(move);
+        long changed = (1L << from) | (1L << to);
+        int code = lift(from);
+        int captured;
+        if (flags == MoveGenerator.EN_PASSANT) {
+            int taken = to - MoveGenerator.pawnForward(sideToMove);
+            captured = lift(taken);
+            changed |= 1L << taken;
+        } else {
+            captured = lift(to);
+        }
+
+        if (MoveGenerator.isPromotion(move)) {
+            place(to, Piece.code(MoveGenerator.promotionType(move),
+                    sideToMove));
+        } else {
+            place(to, code);
+        }
+        if (flags == MoveGenerator.KING_CASTLE) {
+            place(to - 1, lift(to + 1));
+            changed |= (1L << (to - 1)) | (1L << (to + 1));
+        } else if (flags == MoveGenerator.QUEEN_CASTLE) {
+            place(to + 1, lift(to - 2));
+            changed |= (1L << (to + 1)) | (1L << (to - 2));
+        }
+        updateAttacks(changed);
+
+        moveStack[ply] = move;
+        undoStack[ply] = captured | (castling << CASTLING_SHIFT)
+                | ((enPassant + 1) << EN_PASSANT_SHIFT)
+                | (halfmoveClock << CLOCK_SHIFT);
+        ply++;
+
+        setCastling(castling & CASTLING_MASK[from] & CASTLING_MASK[to]);
+        if (flags == MoveGenerator.DOUBLE_PUSH) {
+            enPassant = (from + to) >>> 1;
+        } else {
+            enPassant = NO_SQUARE;
+        }
+        if (captured != Piece.EMPTY || Piece.type(code) == Piece.PAWN) {
+            halfmoveClock = 0;
+        } else {
+            halfmoveClock++;
+        }
+        if (sideToMove == Piece.BLACK) {
+            fullmoveNumber++;
+        }
+        setSideToMove(Piece.opposite(sideToMove));
+    }
+
+    /**
+     * Takes back the last move made and gives the turn back.
+     * @return the move taken back
+     */
+    public int unmakeMove() {
+        ply--;
+        int move = moveStack[ply];
+        int undo = undoStack[ply];
+        int from = MoveGenerator.from(move);
+        int to = MoveGenerator.to(move);
+        int flags = MoveGenerator.flags(move);
+        setSideToMove(Piece.opposite(sideToMove));
+        if (sideToMove == Piece.BLACK) {
+            fullmoveNumber--;
+        }
+        setCastling((undo >>> CASTLING_SHIFT) & NIBBLE_MASK);
+        enPassant = ((undo >>> EN_PASSANT_SHIFT) & EN_PASSANT_MASK) - 1;
+        halfmoveClock = undo >>> CLOCK_SHIFT;
+
+        long changed = (1L << from) | (1L << to);
+        int code = lift(to);
+        if (MoveGenerator.isPromotion(move)) {
+            code = Piece.code(Piece.PAWN, sideToMove);
+        }
+        place(from, code);
+        int captured = undo & NIBBLE_MASK;
+        if (flags == MoveGenerator.EN_PASSANT) {
+            int taken = to - MoveGenerator.pawnForward(sideToMove);
+            place(taken, captured);
+            changed |= 1L << taken;
+        } else if (captured != Piece.EMPTY) {
+            place(to, captured);
+        }
+        if (flags == MoveGenerator.KING_CASTLE) {
+            place(to + 1, lift(to - 1));
+            changed |= (1L << (to - 1)) | (1L << (to + 1));
+        } else if (flags == MoveGenerator.QUEEN_CASTLE) {
+            place(to - 2, lift(to + 1));
+            changed |= (1L << (to + 1)) | (1L << (to - 2));
+        }
+        updateAttacks(changed);
+        return move;
+    }
+
+    /**
+     * Returns the Zobrist key of the position. The en passant column is
+     * only part of the key when a pawn of the side to move can actually
+     * capture there, so transposed positions get the same key.
+     * @return the key
+     */
+    public long getKey() {
+        if (enPassant != NO_SQUARE
+                && (MoveGenerator.pawnAttacks(Piece.opposite(sideToMove),
+                    enPassant)
+                    & pieces[Piece.code(Piece.PAWN, sideToMove)]) != 0L) {
+            return key ^ Zobrist.enPassant(column(enPassant));
+        }
+        return key;
+    }
+
+    /**
+     * Returns how many times the current position occurred before, looking
+     * back only as far as the last capture or pawn move.
+     * @return the number of earlier occurrences
+     */
+    public int repetitions() {
+        long current = getKey();
+        int count = 0;
+        int oldest = Math.max(0, ply - halfmoveClock);
+        for (int index = ply - 2; index >= oldest; index -= 2) {
+            if (keyStack[index] == current) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of moves that can be taken back.
+     * @return ply
+     */
+    public int getPly() {
+        return ply;
+    }
+
+    /**
+     * Returns a move that can be taken back.
+     * @param index
+     *          the index of the move, 0 being the first move made
+     * @return the encoded move
+     */
+    public int getMove(int index) {
+        return moveStack[index];
+    }
+
+    /**
+     * Makes sure the undo stack has room for a number of moves, doubling
+     * it if it does not.
+     * @param size
+     *          the number of moves
+     */
+    private void ensureStack(int size) {
+        if (size > moveStack.length) {
+            int length = Math.max(size, moveStack.length * 2);
+            moveStack = Arrays.copyOf(moveStack, length);
+            undoStack = Arrays.copyOf(undoStack, length);
+            keyStack = Arrays.copyOf(keyStack, length);
+        }
+    }
+
+    /**
+     * Brings the attack maps up to date after the pieces on some squares
+     * changed. Only the pieces on those squares and the sliding pieces
+     * whose rays reach them are recalculated.
+     * @param changed
+     *          the squares whose contents changed
+     */
+    private void updateAttacks(long changed) {
+        if (attacksStale) {
+            rebuildAttacks();
+            return;
+        }
+        long occupied = getOccupied();
+        long sliders = (pieces[Piece.code(Piece.BISHOP, Piece.WHITE)]
+                | pieces[Piece.code(Piece.ROOK, Piece.WHITE)]
+                | pieces[Piece.code(Piece.QUEEN, Piece.WHITE)]
+                | pieces[Piece.code(Piece.BISHOP, Piece.BLACK)]
+                | pieces[Piece.code(Piece.ROOK, Piece.BLACK)]
+                | pieces[Piece.code(Piece.QUEEN, Piece.BLACK)]) & ~changed;
+        long dirty = changed;
+        while (sliders != 0L) {
+            int square = Long.numberOfTrailingZeros(sliders);
+            sliders &= sliders - 1;
+            if ((squareAttacks[square] & changed) != 0L) {
+                dirty |= 1L << square;
+            }
+        }
+        while (dirty != 0L) {
+            int square = Long.numberOfTrailingZeros(dirty);
+            dirty &= dirty - 1;
+            squareAttacks[square] = MoveGenerator.attacks(squares[square],
+                    square, occupied);
+        }
+        sumAttacks();
+    }
+
+    /**
+     * Recalculates the attacks of every piece.
+     */
+    private void rebuildAttacks() {
+        long occupied = getOccupied();
+        for (int square = 0; square < SQUARES; square++) {
+            squareAttacks[square] = MoveGenerator.attacks(squares[square],
+                    square, occupied);
+        }
+        sumAttacks();
+        attacksStale = false;
+    }
+
+    /**
+     * Combines the attacks of each piece into the attack map of its
+     * colour.
+     */
+    private void sumAttacks() {
+        for (int colour = Piece.WHITE; colour <= Piece.BLACK; colour++) {
+            long own = occupancy[colour];
+            long map = 0L;
+            while (own != 0L) {
+                map |= squareAttacks[Long.numberOfTrailingZeros(own)];
+                own &= own - 1;
+            }
+            attacks[colour] = map;
+        }
+    }
+
+    /**
+     * Returns the squares attacked by a colour.
+     * @param colour
+     *          the colour
+     * @return the attack map of the colour
+     */
+    public long getAttacks(int colour) {
+        if (attacksStale) {
+            rebuildAttacks();
+        }
+        return attacks[colour];
+    }
+
+    /**
+     * Returns the squares attacked by the piece on a square.
+     * @param square
+     *          the square
+     * @return the attack map of the piece, or 0 if the square is empty
+     */
+    public long getSquareAttacks(int square) {
+        if (attacksStale) {
+            rebuildAttacks();
+        }
+        return squareAttacks[square];
+    }
+
+    /**
+     * Returns the material and piece-square value of the pieces, kept up
+     * to date as pieces are placed and lifted.
+     * @return the value for white, packed as by Evaluation
+     */
+    public int getPieceSquares() {
+        return pieceSquares;
+    }
+
+    /**
+     * Returns the phase of the pieces, kept up to date as pieces are
+     * placed and lifted.
+     * @return the phase, which is Evaluation.MAX_PHASE at the start
+     */
+    public int getPhase() {
+        return phase;
+    }
+
+    /**
+     * Returns true if the side to move is in check.
+     * @return true if in check
+     */
+    public boolean inCheck() {
+        return (getAttacks(Piece.opposite(sideToMove))
+                & pieces[Piece.code(Piece.KING, sideToMove)]) != 0L;
+    }
+
+    /**
+     * Returns whether the game goes on, and whether the side to move is in
+     * check, checkmated or stalemated.
+     * @return IN_PLAY, CHECK, CHECKMATE or STALEMATE
+     */
+    public int getStatus() {
+        boolean check = inCheck();
+        if (MoveGenerator.hasLegalMove(this)) {
+            if (check) {
+                return CHECK;
+            }
+            return IN_PLAY;
+        }
+        if (check) {
+            return CHECKMATE;
+        }
+        return STALEMATE;
+    }
+
+    /**
+     * Returns the code of the piece on a square.
+     * @param square
+     *          the square
+     * @return the piece code, or Piece.EMPTY
+     */
+    public int pieceAt(int square) {
+        return squares[square];
+    }
+
+    /**
+     * Returns the squares occupied by a piece code.
+     * @param code
+     *          the piece code
+     * @return the bitboard of the piece
+     */
+    public long getPieces(int code) {
+        return pieces[code];
+    }
+
+    /**
+     * Returns the squares occupied by a type of piece of a colour.
+     * @param type
+     *          the type
+     * @param colour
+     *          the colour
+     * @return the bitboard of the pieces
+     */
+    public long getPieces(int type, int colour) {
+        return pieces[Piece.code(type, colour)];
+    }
+
+    /**
+     * Returns the squares occupied by a colour.
+     * @param colour
+     *          the colour
+     * @return the bitboard of the colour
+     */
+    public long getOccupancy(int colour) {
+        return occupancy[colour];
+    }
+
+    /**
+     * Returns every occupied square.
+     * @return the bitboard of all pieces
+     */
+    public long getOccupied() {
+        return occupancy[Piece.WHITE] | occupancy[Piece.BLACK];
+    }
+
+    /**
+     * Returns the square of a colour's king.
+     * @param colour
+     *          the colour
+     * @return the square, or NO_SQUARE if there is no king
+     */
+    public int kingSquare(int colour) {
+        long king = pieces[Piece.code(Piece.KING, colour)];
+        if (king == 0L) {
+            return NO_SQUARE;
+        }
+        return Long.numberOfTrailingZeros(king);
+    }
+
+    /**
+     * Returns the colour to move.
+     * @return sideToMove
+     */
+    public int getSideToMove() {
+        return sideToMove;
+    }
+
+    /**
+     * Sets the colour to move.
+     * @param sideToMove
+     *          the colour to move
+     */
+    public void setSideToMove(int sideToMove) {
+        if (sideToMove != this.sideToMove) {
+            key ^= Zobrist.blackToMove();
+        }
+        this.sideToMove = sideToMove;
+    }
+
+    /**
+     * Returns the castling rights.
+     * @return castling
+     */
+    public int getCastling() {
+        return castling;
+    }
+
+    /**
+     * Sets the castling rights.
+     * @param castling
+     *          the castling rights
+     */
+    public void setCastling(int castling) {
+        key ^= Zobrist.castling(this.castling) ^ Zobrist.castling(castling);
+        this.castling = castling;
+    }
+
+    /**
+     * Returns the en passant square.
+     * @return enPassant
+     */
+    public int getEnPassant() {
+        return enPassant;
+    }
+
+    /**
+     * Sets the en passant square.
+     * @param enPassant
+     *          the en passant square, or NO_SQUARE
+     */
+    public void setEnPassant(int enPassant) {
+        this.enPassant = enPassant;
+    }
+
+    /**
+     * Returns the number of half moves since the last capture or pawn move.
+     * @return halfmoveClock
+     */
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+
+    /**
+     * Sets the number of half moves since the last capture or pawn move.
+     * @param halfmoveClock
+     *          the half move clock
+     */
+    public void setHalfmoveClock(int halfmoveClock) {
+        this.halfmoveClock = halfmoveClock;
+    }
+
+    /**
+     * Returns the number of the current full move.
+     * @return fullmoveNumber
+     */
+    public int getFullmoveNumber() {
+        return fullmoveNumber;
+    }
+
+    /**
+     * Sets the number of the current full move.
+     * @param fullmoveNumber
+     *          the full move number
+     */
+    public void setFullmoveNumber(int fullmoveNumber) {
+        this.fullmoveNumber = fullmoveNumber;
+    }
+}
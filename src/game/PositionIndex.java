@@ -0,0 +1,631 @@
+package game;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * PositionIndex finds the games of a GameArchive that reached a position.
+ * It is a file of one entry for every position of every game, the
+ * position's Zobrist key and the game and ply it was reached at, sorted
+ * by key. The file is mapped into memory rather than read onto the heap;
+ * only the first key of each block of BLOCK entries is kept on the heap,
+ * so a lookup is a binary search of those keys and then of one block.
+ *
+ * The file starts with a 32 byte header: the magic number "SAPI", the
+ * version, the number of entries and the number of games indexed. The
+ * entries follow, sixteen bytes each, and then the first key of each
+ * block. An index is built in one pass over an archive, sorting runs of
+ * entries on the heap and merging them, so its size is not limited by
+ * the heap.
+ *
+ * An index may be searched from many threads at once.
+ *
+ * @author Kiaan Castillo A01024604
+ * @version 2018
+ */
+public final class PositionIndex implements Closeable {
+
+    /**
+     * The first four bytes of every index, "SAPI".
+     */
+    public static final int MAGIC = 0x53415049;
+    /**
+     * The version of the format written.
+     */
+    public static final int VERSION = 1;
+    /**
+     * The length of the header.
+     */
+    public static final int HEADER_LENGTH = 32;
+    /**
+     * The number of entries whose first key is kept on the heap.
+     */
+    public static final int BLOCK = 1024;
+    /**
+     * The length of an entry: its key, then its game and ply.
+     */
+    private static final int ENTRY_LENGTH = 2 * Long.BYTES;
+    /**
+     * The shift from an entry's number to the region holding it.
+     */
+    private static final int REGION_SHIFT = 26;
+    /**
+     * Mask of an entry's number within its region.
+     */
+    private static final long REGION_MASK = (1L << REGION_SHIFT) - 1;
+    /**
+     * The shift of the game above the ply in an entry's value.
+     */
+    private static final int GAME_SHIFT = 16;
+    /**
+     * Mask of the ply in an entry's value.
+     */
+    private static final long PLY_MASK = (1L << GAME_SHIFT) - 1;
+    /**
+     * The entries sorted on the heap at a time while building.
+     */
+    private static final int RUN_ENTRIES = 1 << 21;
+    /**
+     * The size of each buffer used while building.
+     */
+    private static final int BUFFER_SIZE = 1 << 20;
+    /**
+     * Ranges this short are sorted by insertion.
+     */
+    private static final int INSERTION_SORT = 16;
+    /**
+     * The file.
+     */
+    private final Path path;
+    /**
+     * The entries, mapped in regions of 1 << REGION_SHIFT entries.
+     */
+    private final MappedByteBuffer[] regions;
+    /**
+     * The first key of each block.
+     */
+    private final long[] fences;
+    /**
+     * The number of entries.
+     */
+    private final long size;
+    /**
+     * The number of games indexed.
+     */
+    private final long gameCount;
+
+    /**
+     * Opens an index.
+     * @param path
+     *          the file
+     * @throws IOException
+     *          if the file cannot be read or is not an index
+     */
+    public PositionIndex(Path path) throws IOException {
+        this.path = path;
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                continue;
+            }
+            header.flip();
+            if (header.remaining() < HEADER_LENGTH
+                    || header.getInt() != MAGIC) {
+                throw new IOException("Not a position index: " + path);
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported position index version "
+                        + version + ": " + path);
+            }
+            size = header.getLong();
+            gameCount = header.getLong();
+            long blocks = (size + BLOCK - 1) / BLOCK;
+            if (size < 0L || blocks > Integer.MAX_VALUE
+                    || channel.size() != HEADER_LENGTH + size * ENTRY_LENGTH
+                    + blocks * Long.BYTES) {
+                throw new IOException("Position index is corrupt: " + path);
+            }
+
+            int count = (int) ((size + REGION_MASK) >>> REGION_SHIFT);
+            regions = new MappedByteBuffer[count];
+            for (int region = 0; region < count; region++) {
+                long first = (long) region << REGION_SHIFT;
+                regions[region] = channel.map(FileChannel.MapMode.READ_ONLY,
+                        HEADER_LENGTH + first * ENTRY_LENGTH,
+                        Math.min(REGION_MASK + 1, size - first)
+                        * ENTRY_LENGTH);
+            }
+            fences = new long[(int) blocks];
+            ByteBuffer fenceBytes = ByteBuffer.allocate(fences.length
+                    * Long.BYTES);
+            long offset = HEADER_LENGTH + size * ENTRY_LENGTH;
+            while (fenceBytes.hasRemaining()) {
+                if (channel.read(fenceBytes, offset
+                        + fenceBytes.position()) < 0) {
+                    throw new IOException("Position index is corrupt: "
+                            + path);
+                }
+            }
+            fenceBytes.flip();
+            fenceBytes.asLongBuffer().get(fences);
+        }
+    }
+
+    /**
+     * Returns the number of positions indexed.
+     * @return size
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of games indexed.
+     * @return gameCount
+     */
+    public long getGameCount() {
+        return gameCount;
+    }
+
+    /**
+     * Returns the file.
+     * @return path
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Returns the key of an entry.
+     * @param entry
+     *          the number of the entry
+     * @return the key
+     */
+    private long key(long entry) {
+        return regions[(int) (entry >>> REGION_SHIFT)].getLong(
+                (int) (entry & REGION_MASK) * ENTRY_LENGTH);
+    }
+
+    /**
+     * Returns the game and ply of an entry.
+     * @param entry
+     *          the number of the entry
+     * @return the game and ply, as decoded by game and ply
+     */
+    private long value(long entry) {
+        return regions[(int) (entry >>> REGION_SHIFT)].getLong(
+                (int) (entry & REGION_MASK) * ENTRY_LENGTH + Long.BYTES);
+    }
+
+    /**
+     * Returns the number of the first entry with a key, or of the first
+     * with a greater key if there is none. The first block starting with
+     * the key or a greater one is found among the fences, and the entry
+     * is either its first or in the block before it.
+     * @param key
+     *          the key
+     * @return the number of the entry
+     */
+    private long first(long key) {
+        int block = 0;
+        int last = fences.length;
+        while (block < last) {
+            int middle = (block + last) >>> 1;
+            if (fences[middle] < key) {
+                block = middle + 1;
+            } else {
+                last = middle;
+            }
+        }
+        long low = Math.max(0L, (long) (block - 1) * BLOCK);
+        long high = Math.min(size, (long) block * BLOCK);
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            if (key(middle) < key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Finds where a position was reached.
+     * @param key
+     *          the Zobrist key of the position
+     * @param hits
+     *          filled with the game and ply of each time, in order of
+     *          game and ply, as decoded by game and ply
+     * @return the number of times the position was reached, which may be
+     *          more than the hits filled
+     */
+    public long find(long key, long[] hits) {
+        long first = first(key);
+        long end = key == Long.MAX_VALUE ? size : first(key + 1);
+        for (long entry = first; entry < Math.min(end, first + hits.length);
+                entry++) {
+            hits[(int) (entry - first)] = value(entry);
+        }
+        return end - first;
+    }
+
+    /**
+     * Finds where a position was reached.
+     * @param position
+     *          the position
+     * @param hits
+     *          filled with the game and ply of each time, in order of
+     *          game and ply, as decoded by game and ply
+     * @return the number of times the position was reached, which may be
+     *          more than the hits filled
+     */
+    public long find(Position position, long[] hits) {
+        return find(position.getKey(), hits);
+    }
+
+    /**
+     * Returns the game of a hit.
+     * @param hit
+     *          the hit
+     * @return the game's index in the archive
+     */
+    public static int game(long hit) {
+        return (int) (hit >>> GAME_SHIFT);
+    }
+
+    /**
+     * Returns the ply of a hit.
+     * @param hit
+     *          the hit
+     * @return the number of moves made before the position was reached
+     */
+    public static int ply(long hit) {
+        return (int) (hit & PLY_MASK);
+    }
+
+    /**
+     * Lets go of the mapped file. The mapping itself is released when it
+     * is garbage collected.
+     */
+    public void close() {
+        Arrays.fill(regions, null);
+    }
+
+    /**
+     * Builds the index of every position of every game of an archive,
+     * replacing any file.
+     * @param archive
+     *          the archive
+     * @param path
+     *          the file
+     * @throws IOException
+     *          if a game cannot be loaded or the file cannot be written
+     */
+    public static void build(GameArchive archive, Path path)
+            throws IOException {
+        long[] keys = new long[RUN_ENTRIES];
+        long[] values = new long[RUN_ENTRIES];
+        List<Path> runs = new ArrayList<>();
+        PgnGame game = new PgnGame();
+        Position position = new Position();
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = 0;
+        try {
+            for (int index = 0; index < archive.size(); index++) {
+                archive.read(index, game, moves);
+                position.copyFrom(game.getStart());
+                for (int ply = 0; ply <= game.getMoveCount(); ply++) {
+                    if (ply > 0) {
+                        position.makeMove(game.getMove(ply - 1));
+                    }
+                    if (count == RUN_ENTRIES) {
+                        runs.add(writeRun(keys, values, count, path));
+                        count = 0;
+                    }
+                    keys[count] = position.getKey();
+                    values[count++] = (long) index << GAME_SHIFT | ply;
+                }
+            }
+            runs.add(writeRun(keys, values, count, path));
+            merge(runs, archive.size(), path);
+        } finally {
+            for (Path run : runs) {
+                Files.deleteIfExists(run);
+            }
+        }
+    }
+
+    /**
+     * Sorts entries and writes them to a temporary file beside the index.
+     * @param keys
+     *          the keys
+     * @param values
+     *          the games and plies
+     * @param count
+     *          the number of entries
+     * @param path
+     *          the index being built
+     * @return the temporary file
+     * @throws IOException
+     *          if the file cannot be written
+     */
+    private static Path writeRun(long[] keys, long[] values, int count,
+            Path path) throws IOException {
+        sort(keys, values, 0, count - 1);
+        Path directory = path.toAbsolutePath().getParent();
+        Path run = Files.createTempFile(directory,
+                path.getFileName().toString(), ".run");
+        try (FileChannel channel = FileChannel.open(run,
+                StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            for (int index = 0; index < count; index++) {
+                if (!buffer.hasRemaining()) {
+                    drain(channel, buffer);
+                }
+                buffer.putLong(keys[index]).putLong(values[index]);
+            }
+            drain(channel, buffer);
+        } catch (IOException e) {
+            Files.deleteIfExists(run);
+            throw e;
+        }
+        return run;
+    }
+
+    /**
+     * Sorts entries by key, then by game and ply. Equal keys are gathered
+     * in the middle of each partition, since the first moves of most games
+     * are the same.
+     * @param keys
+     *          the keys
+     * @param values
+     *          the games and plies, moved with their keys
+     * @param low
+     *          the first entry to sort
+     * @param high
+     *          the last entry to sort
+     */
+    private static void sort(long[] keys, long[] values, int low, int high) {
+        while (high - low >= INSERTION_SORT) {
+            int middle = (low + high) >>> 1;
+            long pivotKey = keys[middle];
+            long pivotValue = values[middle];
+            int less = low;
+            int greater = high;
+            int index = low;
+            while (index <= greater) {
+                int order = compare(keys[index], values[index], pivotKey,
+                        pivotValue);
+                if (order < 0) {
+                    swap(keys, values, less++, index++);
+                } else if (order > 0) {
+                    swap(keys, values, index, greater--);
+                } else {
+                    index++;
+                }
+            }
+            if (less - low < high - greater) {
+                sort(keys, values, low, less - 1);
+                low = greater + 1;
+            } else {
+                sort(keys, values, greater + 1, high);
+                high = less - 1;
+            }
+        }
+        for (int index = low + 1; index <= high; index++) {
+            long key = keys[index];
+            long value = values[index];
+            int hole = index;
+            while (hole > low && compare(keys[hole - 1], values[hole - 1],
+                    key, value) > 0) {
+                keys[hole] = keys[hole - 1];
+                values[hole] = values[hole - 1];
+                hole--;
+            }
+            keys[hole] = key;
+            values[hole] = value;
+        }
+    }
+
+    /**
+     * Compares two entries by key, then by game and ply.
+     * @param key
+     *          the first key
+     * @param value
+     *          the first game and ply
+     * @param otherKey
+     *          the second key
+     * @param otherValue
+     *          the second game and ply
+     * @return a negative number, zero or a positive number as the first
+     *          entry is less than, equal to or greater than the second
+     */
+    private static int compare(long key, long value, long otherKey,
+            long otherValue) {
+        int order = Long.compare(key, otherKey);
+        return order != 0 ? order : Long.compare(value, otherValue);
+    }
+
+    /**
+     * Swaps two entries.
+     * @param keys
+     *          the keys
+     * @param values
+     *          the games and plies
+     * @param first
+     *          the first entry
+     * @param second
+     *          the second entry
+     */
+    private static void swap(long[] keys, long[] values, int first,
+            int second) {
+        long key = keys[first];
+        keys[first] = keys[second];
+        keys[second] = key;
+        long value = values[first];
+        values[first] = values[second];
+        values[second] = value;
+    }
+
+    /**
+     * Writes a buffer to a file and empties it.
+     * @param channel
+     *          the file
+     * @param buffer
+     *          the buffer
+     * @throws IOException
+     *          if the file cannot be written
+     */
+    private static void drain(FileChannel channel, ByteBuffer buffer)
+            throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Run is a sorted run being merged.
+     */
+    private static final class Run {
+
+        /**
+         * The file.
+         */
+        private final FileChannel channel;
+        /**
+         * The entries read but not yet merged.
+         */
+        private final ByteBuffer buffer;
+        /**
+         * The key of the current entry.
+         */
+        private long key;
+        /**
+         * The game and ply of the current entry.
+         */
+        private long value;
+
+        /**
+         * Opens a run.
+         * @param path
+         *          the file
+         * @throws IOException
+         *          if the file cannot be read
+         */
+        Run(Path path) throws IOException {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+            buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            buffer.flip();
+        }
+
+        /**
+         * Moves to the next entry.
+         * @return false if there are no more entries
+         * @throws IOException
+         *          if the file cannot be read
+         */
+        boolean next() throws IOException {
+            if (!buffer.hasRemaining()) {
+                buffer.clear();
+                while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                    continue;
+                }
+                buffer.flip();
+                if (!buffer.hasRemaining()) {
+                    return false;
+                }
+            }
+            key = buffer.getLong();
+            value = buffer.getLong();
+            return true;
+        }
+    }
+
+    /**
+     * Merges sorted runs into an index.
+     * @param runs
+     *          the runs
+     * @param games
+     *          the number of games indexed
+     * @param path
+     *          the index
+     * @throws IOException
+     *          if a run cannot be read or the index written
+     */
+    private static void merge(List<Path> runs, long games, Path path)
+            throws IOException {
+        PriorityQueue<Run> queue = new PriorityQueue<>(runs.size(),
+                (first, second) -> compare(first.key, first.value,
+                        second.key, second.value));
+        List<Run> open = new ArrayList<>();
+        long[] fences = new long[0];
+        long size = 0L;
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (Path file : runs) {
+                Run run = new Run(file);
+                open.add(run);
+                if (run.next()) {
+                    queue.add(run);
+                }
+            }
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            buffer.put(new byte[HEADER_LENGTH]);
+            while (!queue.isEmpty()) {
+                Run run = queue.poll();
+                if (size % BLOCK == 0L) {
+                    int block = (int) (size / BLOCK);
+                    if (block == fences.length) {
+                        fences = Arrays.copyOf(fences,
+                                Math.max(BLOCK, block * 2));
+                    }
+                    fences[block] = run.key;
+                }
+                if (!buffer.hasRemaining()) {
+                    drain(channel, buffer);
+                }
+                buffer.putLong(run.key).putLong(run.value);
+                size++;
+                if (run.next()) {
+                    queue.add(run);
+                }
+            }
+            for (int block = 0; block < (size + BLOCK - 1) / BLOCK;
+                    block++) {
+                if (!buffer.hasRemaining()) {
+                    drain(channel, buffer);
+                }
+                buffer.putLong(fences[block]);
+            }
+            drain(channel, buffer);
+            buffer.putInt(MAGIC).putInt(VERSION).putLong(size)
+                .putLong(games).putLong(0L);
+            buffer.flip();
+            long written = 0L;
+            while (buffer.hasRemaining()) {
+                written += channel.write(buffer, written);
+            }
+            channel.force(true);
+        } finally {
+            for (Run run : open) {
+                run.channel.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package game;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * PositionIndexBenchmark measures how fast a PositionIndex is built and
+ * searched: positions indexed per second, and the latency of finding
+ * positions that were reached and positions that were not. Given a game
+ * archive it indexes that archive; otherwise it first writes one of
+ * random legal games.
+ *
+ * <pre>
+ * java game.PositionIndexBenchmark [GAMES | ARCHIVE]
+ * </pre>
+ *
+ * @author Kiaan Castillo A01024604
+ * @version 2018
+ */
+public final class PositionIndexBenchmark {
+
+    /**
+     * The number of random games written when no number is given.
+     */
+    private static final int DEFAULT_GAMES = 100000;
+    /**
+     * The number of positions searched for of each kind.
+     */
+    private static final int QUERIES = 100000;
+    /**
+     * The most hits of a search kept.
+     */
+    private static final int MAX_HITS = 64;
+    /**
+     * The seed of the positions searched for.
+     */
+    private static final long SEED = 2018L;
+    /**
+     * The percentile reported besides the median.
+     */
+    private static final double PERCENTILE = 0.99;
+    /**
+     * Bytes in a megabyte.
+     */
+    private static final double MEGABYTE = 1 << 20;
+    /**
+     * Nanoseconds in a second.
+     */
+    private static final double NANOS = 1e9;
+
+    /**
+     * PositionIndexBenchmark only has static members.
+     */
+    private PositionIndexBenchmark() {
+    }
+
+    /**
+     * Returns the keys of positions reached in random games of an archive.
+     * @param archive
+     *          the archive
+     * @param random
+     *          the source of the games and plies
+     * @return the keys
+     * @throws IOException
+     *          if a game cannot be loaded
+     */
+    private static long[] reachedKeys(GameArchive archive, Random random)
+            throws IOException {
+        long[] keys = new long[QUERIES];
+        PgnGame game = new PgnGame();
+        Position position = new Position();
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        for (int query = 0; query < QUERIES; query++) {
+            archive.read(random.nextInt(archive.size()), game, moves);
+            position.copyFrom(game.getStart());
+            int plies = random.nextInt(game.getMoveCount() + 1);
+            for (int ply = 0; ply < plies; ply++) {
+                position.makeMove(game.getMove(ply));
+            }
+            keys[query] = position.getKey();
+        }
+        return keys;
+    }
+
+    /**
+     * Searches for positions and prints the latency.
+     * @param name
+     *          what is searched for
+     * @param index
+     *          the index
+     * @param keys
+     *          the keys of the positions
+     * @return the number of positions found at least once
+     */
+    private static int search(String name, PositionIndex index,
+            long[] keys) {
+        long[] hits = new long[MAX_HITS];
+        long[] nanos = new long[keys.length];
+        int found = 0;
+        for (int query = 0; query < keys.length; query++) {
+            long start = System.nanoTime();
+            long count = index.find(keys[query], hits);
+            nanos[query] = System.nanoTime() - start;
+            if (count > 0L) {
+                found++;
+            }
+        }
+        Arrays.sort(nanos);
+        System.out.printf("%s: %d of %d found, median %.1f us, p99 %.1f us, "
+                + "max %.1f us%n", name, found, keys.length,
+                nanos[nanos.length / 2] / 1e3,
+                nanos[(int) (nanos.length * PERCENTILE)] / 1e3,
+                nanos[nanos.length - 1] / 1e3);
+        return found;
+    }
+
+    /**
+     * Runs the benchmark.
+     * @param args
+     *          optionally the number of random games to write, or the
+     *          archive to index
+     * @throws IOException
+     *          if a file cannot be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        Path path;
+        if (args.length > 0 && Files.exists(Paths.get(args[0]))) {
+            path = Paths.get(args[0]);
+        } else {
+            int games = args.length > 0 ? Integer.parseInt(args[0])
+                    : DEFAULT_GAMES;
+            path = Files.createTempFile("sample", ".saga");
+            path.toFile().deleteOnExit();
+            GameArchiveBenchmark.writeSample(path, games);
+        }
+        Path indexPath = Files.createTempFile("sample", ".index");
+        indexPath.toFile().deleteOnExit();
+        try (GameArchive archive = new GameArchive(path)) {
+            long start = System.nanoTime();
+            PositionIndex.build(archive, indexPath);
+            double seconds = (System.nanoTime() - start) / NANOS;
+            try (PositionIndex index = new PositionIndex(indexPath)) {
+                System.out.printf("indexed %d positions of %d games in "
+                        + "%.1f s: %.0f positions/s, %.1f MB%n",
+                        index.size(), index.getGameCount(), seconds,
+                        index.size() / seconds,
+                        Files.size(indexPath) / MEGABYTE);
+
+                Random random = new Random(SEED);
+                long[] reached = reachedKeys(archive, random);
+                long[] missed = new long[QUERIES];
+                for (int query = 0; query < QUERIES; query++) {
+                    missed[query] = random.nextLong();
+                }
+                search("warm up", index, reached);
+                if (search("reached", index, reached) != QUERIES) {
+                    throw new IOException("Reached positions not found");
+                }
+                search("not reached", index, missed);
+            }
+        }
+    }
+}
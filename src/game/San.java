@@ -0,0 +1,310 @@
+package game;
+
+/**
+ * San reads and writes moves in Standard Algebraic Notation, such as
+ * "Nbd7", "exd5", "e8=Q+" and "O-O". Reading matches the text against
+ * the legal moves of the position, so a move read is always legal.
+ * Neither reading nor writing into a builder makes any objects.
+ *
+ * @author Kiaan Castillo A01024604
+ * @version 2018
+ */
+public final class San {
+
+    /**
+     * Returned by parse when no legal move matches.
+     */
+    public static final int ILLEGAL = 0;
+    /**
+     * Returned by parse when more than one legal move matches.
+     */
+    public static final int AMBIGUOUS = -1;
+    /**
+     * Returned by parse when the text is not a move.
+     */
+    public static final int MALFORMED = -2;
+    /**
+     * The letters of the pieces, indexed by type.
+     */
+    private static final String PIECE_LETTERS = " PNBRQK";
+    /**
+     * Marks a part of the move that is not given.
+     */
+    private static final int ANY = -1;
+    /**
+     * The shortest castling text, "O-O".
+     */
+    private static final int SHORT_CASTLE_LENGTH = 3;
+    /**
+     * The longest castling text, "O-O-O".
+     */
+    private static final int LONG_CASTLE_LENGTH = 5;
+
+    /**
+     * San only has static members.
+     */
+    private San() {
+    }
+
+    /**
+     * Finds the legal move a SAN text stands for. Check, mate and
+     * annotation marks at the end are ignored. Only the moves of the
+     * pieces the text could mean are generated.
+     * @param position
+     *          the position the move is made in
+     * @param san
+     *          the text
+     * @param moves
+     *          scratch space for at least MoveGenerator.MAX_MOVES moves
+     * @return the move, or ILLEGAL, AMBIGUOUS or MALFORMED
+     */
+    public static int parse(Position position, CharSequence san,
+            int[] moves) {
+        int end = san.length();
+        while (end > 0 && isSuffix(san.charAt(end - 1))) {
+            end--;
+        }
+        if (end < 2) {
+            return MALFORMED;
+        }
+        int side = position.getSideToMove();
+
+        char first = san.charAt(0);
+        if (first == 'O' || first == '0') {
+            int flags;
+            if (end == SHORT_CASTLE_LENGTH) {
+                flags = MoveGenerator.KING_CASTLE;
+            } else if (end == LONG_CASTLE_LENGTH) {
+                flags = MoveGenerator.QUEEN_CASTLE;
+            } else {
+                return MALFORMED;
+            }
+            for (int index = 1; index < end; index++) {
+                char c = san.charAt(index);
+                if (c != (index % 2 == 1 ? '-' : first)) {
+                    return MALFORMED;
+                }
+            }
+            int count = MoveGenerator.generateFrom(position,
+                    position.kingSquare(side), moves, 0);
+            for (int index = 0; index < count; index++) {
+                if (MoveGenerator.flags(moves[index]) == flags) {
+                    return moves[index];
+                }
+            }
+            return ILLEGAL;
+        }
+
+        int type = Piece.PAWN;
+        int index = 0;
+        if (first >= 'A' && first <= 'Z') {
+            type = PIECE_LETTERS.indexOf(first);
+            if (type <= Piece.PAWN) {
+                return MALFORMED;
+            }
+            index = 1;
+        }
+
+        int promotion = Piece.EMPTY;
+        char last = san.charAt(end - 1);
+        if (type == Piece.PAWN && last >= 'A' && last <= 'Z') {
+            promotion = PIECE_LETTERS.indexOf(last);
+            if (promotion <= Piece.PAWN || promotion == Piece.KING) {
+                return MALFORMED;
+            }
+            end--;
+            if (end > 0 && san.charAt(end - 1) == '=') {
+                end--;
+            }
+        }
+        if (end - index < 2) {
+            return MALFORMED;
+        }
+        int toColumn = san.charAt(end - 2) - 'a';
+        int toRow = '8' - san.charAt(end - 1);
+        if (!onBoard(toColumn) || !onBoard(toRow)) {
+            return MALFORMED;
+        }
+        int to = Position.square(toRow, toColumn);
+
+        int fromColumn = ANY;
+        int fromRow = ANY;
+        for (; index < end - 2; index++) {
+            char c = san.charAt(index);
+            if (c >= 'a' && c <= 'h') {
+                fromColumn = c - 'a';
+            } else if (c >= '1' && c <= '8') {
+                fromRow = '8' - c;
+            } else if (c != 'x' && c != ':' && c != '-') {
+                return MALFORMED;
+            }
+        }
+        if (type == Piece.PAWN && fromColumn == ANY) {
+            fromColumn = toColumn;
+        }
+
+        int count = 0;
+        for (long pieces = position.getPieces(type, side); pieces != 0L;
+                pieces &= pieces - 1) {
+            int from = Long.numberOfTrailingZeros(pieces);
+            if ((fromColumn == ANY || Position.column(from) == fromColumn)
+                    && (fromRow == ANY || Position.row(from) == fromRow)) {
+                count = MoveGenerator.generateFrom(position, from, moves,
+                        count);
+            }
+        }
+
+        int found = ILLEGAL;
+        for (int candidate = 0; candidate < count; candidate++) {
+            int move = moves[candidate];
+            if (MoveGenerator.to(move) != to) {
+                continue;
+            }
+            if (MoveGenerator.isPromotion(move)
+                    ? MoveGenerator.promotionType(move) != promotion
+                    : promotion != Piece.EMPTY) {
+                continue;
+            }
+            if (found != ILLEGAL) {
+                return AMBIGUOUS;
+            }
+            found = move;
+        }
+        return found;
+    }
+
+    /**
+     * Returns true if a character marks check, mate or an annotation.
+     * @param c
+     *          the character
+     * @return true if a suffix
+     */
+    private static boolean isSuffix(char c) {
+        return c == '+' || c == '#' || c == '!' || c == '?';
+    }
+
+    /**
+     * Returns true if a row or column is on the board.
+     * @param line
+     *          the row or column
+     * @return true if on the board
+     */
+    private static boolean onBoard(int line) {
+        return line >= 0 && line < Position.EIGHT;
+    }
+
+    /**
+     * Returns the SAN text of a legal move.
+     * @param position
+     *          the position the move is made in, which is not changed
+     * @param move
+     *          the move
+     * @return the text
+     */
+    public static String toSan(Position position, int move) {
+        StringBuilder builder = new StringBuilder();
+        append(position, move, new int[MoveGenerator.MAX_MOVES], builder);
+        return builder.toString();
+    }
+
+    /**
+     * Appends the SAN text of a legal move to a builder.
+     * @param position
+     *          the position the move is made in, which is not changed
+     * @param move
+     *          the move
+     * @param moves
+     *          scratch space for at least MoveGenerator.MAX_MOVES moves
+     * @param builder
+     *          the builder
+     */
+    public static void append(Position position, int move, int[] moves,
+            StringBuilder builder) {
+        int flags = MoveGenerator.flags(move);
+        int from = MoveGenerator.from(move);
+        int to = MoveGenerator.to(move);
+        int piece = MoveGenerator.piece(move);
+        if (flags == MoveGenerator.KING_CASTLE) {
+            builder.append("O-O");
+        } else if (flags == MoveGenerator.QUEEN_CASTLE) {
+            builder.append("O-O-O");
+        } else if (Piece.type(piece) == Piece.PAWN) {
+            if (MoveGenerator.isCapture(move)) {
+                builder.append(columnLetter(from)).append('x');
+            }
+            appendSquare(to, builder);
+            if (MoveGenerator.isPromotion(move)) {
+                builder.append('=').append(PIECE_LETTERS.charAt(
+                        MoveGenerator.promotionType(move)));
+            }
+        } else {
+            builder.append(PIECE_LETTERS.charAt(Piece.type(piece)));
+            boolean rivals = false;
+            boolean sameColumn = false;
+            boolean sameRow = false;
+            int count = MoveGenerator.generate(position, moves, 0);
+            for (int index = 0; index < count; index++) {
+                int other = moves[index];
+                int otherFrom = MoveGenerator.from(other);
+                if (MoveGenerator.to(other) == to && otherFrom != from
+                        && MoveGenerator.piece(other) == piece) {
+                    rivals = true;
+                    sameColumn |= Position.column(otherFrom)
+                            == Position.column(from);
+                    sameRow |= Position.row(otherFrom) == Position.row(from);
+                }
+            }
+            if (rivals && (!sameColumn || sameRow)) {
+                builder.append(columnLetter(from));
+            }
+            if (rivals && sameColumn) {
+                builder.append(rowDigit(from));
+            }
+            if (MoveGenerator.isCapture(move)) {
+                builder.append('x');
+            }
+            appendSquare(to, builder);
+        }
+
+        position.makeMove(move);
+        if (position.inCheck()) {
+            if (MoveGenerator.hasLegalMove(position)) {
+                builder.append('+');
+            } else {
+                builder.append('#');
+            }
+        }
+        position.unmakeMove();
+    }
+
+    /**
+     * Appends the name of a square, such as "e4", to a builder.
+     * @param square
+     *          the square
+     * @param builder
+     *          the builder
+     */
+    public static void appendSquare(int square, StringBuilder builder) {
+        builder.append(columnLetter(square)).append(rowDigit(square));
+    }
+
+    /**
+     * Returns the letter of a square's column.
+     * @param square
+     *          the square
+     * @return the letter, from 'a' to 'h'
+     */
+    private static char columnLetter(int square) {
+        return (char) ('a' + Position.column(square));
+    }
+
+    /**
+     * Returns the digit of a square's row.
+     * @param square
+     *          the square
+     * @return the digit, from '1' to '8'
+     */
+    private static char rowDigit(int square) {
+        return (char) ('8' - Position.row(square));
+    }
+}
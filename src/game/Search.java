@@ -0,0 +1,690 @@
+package game;
+
+import java.util.Arrays;
+
+/**
+ * Search finds the best move of a Position with a negamax alpha-beta
+ * search, deepened one ply at a time until the time runs out. Captures
+ * are searched to the end in a quiescence search so that the evaluation
+ * is only taken in quiet positions. Moves are tried in the order most
+ * likely to cause a cut off: the best move of the last iteration, then
+ * captures by most valuable victim and least valuable attacker, then
+ * killer moves, then quiet moves by their history score. What is learned
+ * about each position is kept in a TranspositionTable, which gives both
+ * cut offs and the move to try first when the position comes up again.
+ *
+ * A Search is used by one thread at a time, but its table may be shared.
+ *
+ * @author Kiaan Castillo A01024604
+ * @version 2018
+ */
+public class Search {
+
+    /**
+     * The deepest ply the search reaches.
+     */
+    public static final int MAX_PLY = 128;
+    /**
+     * A score greater than any evaluation.
+     */
+    public static final int INFINITY = 32000;
+    /**
+     * The score of giving checkmate right now.
+     */
+    public static final int MATE = 31000;
+    /**
+     * Scores beyond this are checkmates.
+     */
+    public static final int MATE_BOUND = MATE - MAX_PLY;
+    /**
+     * The score of a draw.
+     */
+    private static final int DRAW = 0;
+    /**
+     * The half move clock at which the game is drawn.
+     */
+    private static final int FIFTY_MOVES = 100;
+    /**
+     * The clock is read once per this many nodes plus one.
+     */
+    private static final int CHECK_INTERVAL = 1023;
+    /**
+     * The ordering score of the best move of the last iteration.
+     */
+    private static final int BEST_SCORE = 1 << 30;
+    /**
+     * The ordering score captures and promotions start from.
+     */
+    private static final int CAPTURE_SCORE = 1 << 29;
+    /**
+     * The ordering score of the first killer move.
+     */
+    private static final int KILLER_SCORE = 1 << 28;
+    /**
+     * History scores are halved when one reaches this.
+     */
+    private static final int HISTORY_LIMIT = 1 << 20;
+    /**
+     * Weight of the victim in the capture ordering score.
+     */
+    private static final int VICTIM_WEIGHT = 8;
+    /**
+     * Nanoseconds in a millisecond.
+     */
+    private static final long NANOS_PER_MILLI = 1000000L;
+    /**
+     * Nanoseconds in a second.
+     */
+    private static final double NANOS_PER_SECOND = 1e9;
+    /**
+     * The position searched.
+     */
+    private final Position position;
+    /**
+     * The table of positions already searched.
+     */
+    private final TranspositionTable table;
+    /**
+     * The moves at each ply.
+     */
+    private final int[][] moves;
+    /**
+     * The ordering scores of the moves at each ply.
+     */
+    private final int[][] scores;
+    /**
+     * Two quiet moves at each ply that last caused a cut off.
+     */
+    private final int[][] killers;
+    /**
+     * How often quiet moves by piece and target square caused cut offs.
+     */
+    private final int[][] history;
+    /**
+     * True once the search has been told to stop.
+     */
+    private volatile boolean stopped;
+    /**
+     * The time at which to stop, or 0 for no limit.
+     */
+    private long deadline;
+    /**
+     * The number of nodes at which to stop, or 0 for no limit.
+     */
+    private long nodeLimit;
+    /**
+     * Run after each iteration completes, or null.
+     */
+    private Runnable progress;
+    /**
+     * The time the search started.
+     */
+    private long startTime;
+    /**
+     * The time the search finished.
+     */
+    private long endTime;
+    /**
+     * The number of nodes searched.
+     */
+    private long nodes;
+    /**
+     * The number of table probes.
+     */
+    private long probes;
+    /**
+     * The number of table probes that found an entry.
+     */
+    private long hits;
+    /**
+     * The deepest iteration completed.
+     */
+    private int completedDepth;
+    /**
+     * The best move found.
+     */
+    private int bestMove;
+    /**
+     * The score of the best move found.
+     */
+    private int bestScore;
+
+    /**
+     * Constructs an object of type Search with its own table.
+     */
+    public Search() {
+        this(new TranspositionTable());
+    }
+
+    /**
+     * Constructs an object of type Search.
+     * @param table
+     *          the table of positions already searched, which may be
+     *          shared with other searches
+     */
+    public Search(TranspositionTable table) {
+        this.table = table;
+        position = new Position();
+        moves = new int[MAX_PLY][MoveGenerator.MAX_MOVES];
+        scores = new int[MAX_PLY][MoveGenerator.MAX_MOVES];
+        killers = new int[MAX_PLY][2];
+        history = new int[Piece.CODES][Position.SQUARES];
+    }
+
+    /**
+     * Searches a position and returns the best move found.
+     * @param root
+     *          the position, which is not changed
+     * @param maxDepth
+     *          the deepest iteration to search
+     * @param millis
+     *          the time allowed in milliseconds, or 0 for no limit
+     * @return the best move, or 0 if there are no legal moves
+     */
+    public int think(Position root, int maxDepth, long millis) {
+        table.newSearch();
+        resume();
+        return run(root, 1, maxDepth, millis);
+    }
+
+    /**
+     * Clears a stop so that the next run searches, and the count of nodes
+     * so that counts read before the run starts are not stale. A stop that
+     * arrives after this and before the run starts is kept; Engine
+     * repeats a stop that arrived before this.
+     */
+    void resume() {
+        stopped = false;
+        nodes = 0L;
+    }
+
+    /**
+     * Searches a position, deepening from a given depth, until the time
+     * runs out or it is stopped.
+     * @param root
+     *          the position, which is not changed
+     * @param firstDepth
+     *          the first iteration to search
+     * @param maxDepth
+     *          the deepest iteration to search
+     * @param millis
+     *          the time allowed in milliseconds, or 0 for no limit
+     * @return the best move, or 0 if there are no legal moves
+     */
+    int run(Position root, int firstDepth, int maxDepth, long millis) {
+        position.copyFrom(root);
+        startTime = System.nanoTime();
+        deadline = 0L;
+        if (millis > 0L) {
+            deadline = startTime + millis * NANOS_PER_MILLI;
+        }
+        nodes = 0L;
+        probes = 0L;
+        hits = 0L;
+        completedDepth = 0;
+        bestMove = 0;
+        bestScore = 0;
+        for (int[] pair : killers) {
+            Arrays.fill(pair, 0);
+        }
+        for (int[] row : history) {
+            Arrays.fill(row, 0);
+        }
+
+        int depthLimit = Math.min(maxDepth, MAX_PLY - 1);
+        for (int depth = firstDepth; depth <= depthLimit; depth++) {
+            searchRoot(depth);
+            if (completedDepth == depth && progress != null) {
+                progress.run();
+            }
+            if (stopped || Math.abs(bestScore) >= MATE_BOUND) {
+                break;
+            }
+            if (deadline != 0L
+                    && System.nanoTime() - startTime
+                        > (deadline - startTime) / 2) {
+                break;
+            }
+        }
+        endTime = System.nanoTime();
+        table.report(probes, hits);
+        return bestMove;
+    }
+
+    /**
+     * Searches every move of the root position to a depth, keeping the
+     * best move if the iteration is not cut short.
+     * @param depth
+     *          the depth of the iteration
+     */
+    private void searchRoot(int depth) {
+        int[] list = moves[0];
+        int end = MoveGenerator.generate(position, list, 0);
+        if (end == 0) {
+            stopped = true;
+            return;
+        }
+        if (bestMove == 0) {
+            bestMove = list[0];
+        }
+        scoreMoves(0, end, bestMove);
+        int alpha = -INFINITY;
+        int best = 0;
+        for (int index = 0; index < end; index++) {
+            int move = pick(0, index, end);
+            position.makeMove(move);
+            int score = -negamax(depth - 1, 1, -INFINITY, -alpha);
+            position.unmakeMove();
+            if (stopped) {
+                break;
+            }
+            if (score > alpha) {
+                alpha = score;
+                best = move;
+            }
+        }
+        if (best != 0) {
+            bestMove = best;
+            bestScore = alpha;
+            if (!stopped) {
+                table.store(position.getKey(), best, alpha, depth,
+                        TranspositionTable.EXACT);
+            }
+        }
+        if (!stopped) {
+            completedDepth = depth;
+        }
+    }
+
+    /**
+     * Searches a position to a depth.
+     * @param depth
+     *          the depth left
+     * @param ply
+     *          the distance from the root
+     * @param alpha
+     *          the score the side to move is already sure of
+     * @param beta
+     *          the score the opponent is already sure of
+     * @return the score for the side to move
+     */
+    private int negamax(int depth, int ply, int alpha, int beta) {
+        if (ply >= MAX_PLY - 1) {
+            return Evaluation.evaluate(position);
+        }
+        if (position.getHalfmoveClock() >= FIFTY_MOVES
+                || position.repetitions() > 0) {
+            return DRAW;
+        }
+        boolean inCheck = position.inCheck();
+        if (inCheck) {
+            depth++;
+        }
+        if (depth <= 0) {
+            return quiesce(ply, alpha, beta);
+        }
+        countNode();
+
+        long key = position.getKey();
+        long data = table.probe(key);
+        probes++;
+        int hashMove = 0;
+        if (data != 0L) {
+            hits++;
+            hashMove = TranspositionTable.move(data);
+            if (TranspositionTable.depth(data) >= depth) {
+                int stored = fromTable(TranspositionTable.score(data), ply);
+                int bound = TranspositionTable.bound(data);
+                if (bound == TranspositionTable.EXACT
+                        || bound == TranspositionTable.LOWER
+                            && stored >= beta
+                        || bound == TranspositionTable.UPPER
+                            && stored <= alpha) {
+                    return stored;
+                }
+            }
+        }
+
+        int end = MoveGenerator.generate(position, moves[ply], 0);
+        if (end == 0) {
+            if (inCheck) {
+                return -MATE + ply;
+            }
+            return DRAW;
+        }
+        scoreMoves(ply, end, hashMove);
+        int originalAlpha = alpha;
+        int best = -INFINITY;
+        int bestHere = 0;
+        for (int index = 0; index < end; index++) {
+            int move = pick(ply, index, end);
+            position.makeMove(move);
+            int score = -negamax(depth - 1, ply + 1, -beta, -alpha);
+            position.unmakeMove();
+            if (stopped) {
+                return DRAW;
+            }
+            if (score > best) {
+                best = score;
+                bestHere = move;
+                if (score > alpha) {
+                    alpha = score;
+                    if (alpha >= beta) {
+                        rememberCutoff(move, ply, depth);
+                        break;
+                    }
+                }
+            }
+        }
+
+        int bound = TranspositionTable.EXACT;
+        if (best >= beta) {
+            bound = TranspositionTable.LOWER;
+        } else if (best <= originalAlpha) {
+            bound = TranspositionTable.UPPER;
+            bestHere = 0;
+        }
+        table.store(key, bestHere, toTable(best, ply), depth, bound);
+        return best;
+    }
+
+    /**
+     * Converts a score for storing, counting checkmates from the node
+     * rather than from the root.
+     * @param score
+     *          the score
+     * @param ply
+     *          the distance of the node from the root
+     * @return the score to store
+     */
+    private static int toTable(int score, int ply) {
+        if (score >= MATE_BOUND) {
+            return score + ply;
+        }
+        if (score <= -MATE_BOUND) {
+            return score - ply;
+        }
+        return score;
+    }
+
+    /**
+     * Converts a stored score back, counting checkmates from the root.
+     * @param score
+     *          the stored score
+     * @param ply
+     *          the distance of the node from the root
+     * @return the score
+     */
+    private static int fromTable(int score, int ply) {
+        if (score >= MATE_BOUND) {
+            return score - ply;
+        }
+        if (score <= -MATE_BOUND) {
+            return score + ply;
+        }
+        return score;
+    }
+
+    /**
+     * Searches captures until the position is quiet. When in check every
+     * move is searched instead.
+     * @param ply
+     *          the distance from the root
+     * @param alpha
+     *          the score the side to move is already sure of
+     * @param beta
+     *          the score the opponent is already sure of
+     * @return the score for the side to move
+     */
+    private int quiesce(int ply, int alpha, int beta) {
+        countNode();
+        if (ply >= MAX_PLY - 1) {
+            return Evaluation.evaluate(position);
+        }
+        boolean inCheck = position.inCheck();
+        int best;
+        int end;
+        if (inCheck) {
+            end = MoveGenerator.generate(position, moves[ply], 0);
+            if (end == 0) {
+                return -MATE + ply;
+            }
+            best = -INFINITY;
+        } else {
+            best = Evaluation.evaluate(position);
+            if (best >= beta) {
+                return best;
+            }
+            if (best > alpha) {
+                alpha = best;
+            }
+            end = MoveGenerator.generateCaptures(position, moves[ply], 0);
+        }
+
+        scoreMoves(ply, end, 0);
+        for (int index = 0; index < end; index++) {
+            int move = pick(ply, index, end);
+            position.makeMove(move);
+            int score = -quiesce(ply + 1, -beta, -alpha);
+            position.unmakeMove();
+            if (stopped) {
+                return DRAW;
+            }
+            if (score > best) {
+                best = score;
+                if (score > alpha) {
+                    alpha = score;
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Counts a node and stops the search when its time is up. The search
+     * always completes its first iteration so there is a move to play.
+     */
+    private void countNode() {
+        nodes++;
+        if ((nodes & CHECK_INTERVAL) == 0L && deadline != 0L
+                && completedDepth > 0 && System.nanoTime() > deadline) {
+            stopped = true;
+        }
+        if (nodeLimit != 0L && nodes >= nodeLimit && completedDepth > 0) {
+            stopped = true;
+        }
+    }
+
+    /**
+     * Gives each move at a ply its ordering score.
+     * @param ply
+     *          the ply
+     * @param end
+     *          the number of moves
+     * @param first
+     *          a move to try before all others, or 0
+     */
+    private void scoreMoves(int ply, int end, int first) {
+        int[] list = moves[ply];
+        int[] order = scores[ply];
+        for (int index = 0; index < end; index++) {
+            int move = list[index];
+            if (move == first) {
+                order[index] = BEST_SCORE;
+            } else if (MoveGenerator.isCapture(move)
+                    || MoveGenerator.isPromotion(move)) {
+                int gain = Evaluation.value(Piece.type(
+                        MoveGenerator.captured(move))) * VICTIM_WEIGHT;
+                if (MoveGenerator.isPromotion(move)) {
+                    gain += Evaluation.value(MoveGenerator.promotionType(
+                            move)) * VICTIM_WEIGHT;
+                }
+                order[index] = CAPTURE_SCORE + gain
+                        - Piece.type(MoveGenerator.piece(move));
+            } else if (move == killers[ply][0]) {
+                order[index] = KILLER_SCORE + 1;
+            } else if (move == killers[ply][1]) {
+                order[index] = KILLER_SCORE;
+            } else {
+                order[index] = history[MoveGenerator.piece(move)]
+                        [MoveGenerator.to(move)];
+            }
+        }
+    }
+
+    /**
+     * Moves the best scored of the remaining moves at a ply into place.
+     * @param ply
+     *          the ply
+     * @param index
+     *          the index to fill
+     * @param end
+     *          the number of moves
+     * @return the move now at the index
+     */
+    private int pick(int ply, int index, int end) {
+        int[] list = moves[ply];
+        int[] order = scores[ply];
+        int best = index;
+        for (int other = index + 1; other < end; other++) {
+            if (order[other] > order[best]) {
+                best = other;
+            }
+        }
+        int move = list[best];
+        list[best] = list[index];
+        list[index] = move;
+        int score = order[best];
+        order[best] = order[index];
+        order[index] = score;
+        return move;
+    }
+
+    /**
+     * Remembers a quiet move that caused a cut off as a killer and in the
+     * history table.
+     * @param move
+     *          the move
+     * @param ply
+     *          the ply it was made at
+     * @param depth
+     *          the depth it was searched to
+     */
+    private void rememberCutoff(int move, int ply, int depth) {
+        if (MoveGenerator.isCapture(move) || MoveGenerator.isPromotion(move)) {
+            return;
+        }
+        if (killers[ply][0] != move) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = move;
+        }
+        int[] row = history[MoveGenerator.piece(move)];
+        int to = MoveGenerator.to(move);
+        row[to] += depth * depth;
+        if (row[to] >= HISTORY_LIMIT) {
+            for (int[] scoresOfPiece : history) {
+                for (int square = 0; square < Position.SQUARES; square++) {
+                    scoresOfPiece[square] >>= 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * Limits the nodes of the following runs. The first iteration always
+     * completes.
+     * @param limit
+     *          the number of nodes at which to stop, or 0 for no limit
+     */
+    void setNodeLimit(long limit) {
+        nodeLimit = limit;
+    }
+
+    /**
+     * Sets what to run after each iteration of the following runs
+     * completes, on the searching thread.
+     * @param progress
+     *          what to run, or null
+     */
+    void setProgress(Runnable progress) {
+        this.progress = progress;
+    }
+
+    /**
+     * Tells the search to stop as soon as it can.
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    /**
+     * Returns the best move found.
+     * @return bestMove
+     */
+    public int getBestMove() {
+        return bestMove;
+    }
+
+    /**
+     * Returns the score of the best move found, for the side to move.
+     * @return bestScore
+     */
+    public int getScore() {
+        return bestScore;
+    }
+
+    /**
+     * Returns the share of table probes that found an entry.
+     * @return the hit rate, from 0 to 1
+     */
+    public double getHitRate() {
+        if (probes == 0L) {
+            return 0.0;
+        }
+        return (double) hits / probes;
+    }
+
+    /**
+     * Returns the table of positions already searched.
+     * @return table
+     */
+    public TranspositionTable getTable() {
+        return table;
+    }
+
+    /**
+     * Returns the deepest iteration completed.
+     * @return completedDepth
+     */
+    public int getDepth() {
+        return completedDepth;
+    }
+
+    /**
+     * Returns the number of nodes searched.
+     * @return nodes
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Returns the time the search took in milliseconds.
+     * @return the elapsed time
+     */
+    public long getMillis() {
+        return (endTime - startTime) / NANOS_PER_MILLI;
+    }
+
+    /**
+     * Returns the number of nodes searched per second.
+     * @return the nodes per second
+     */
+    public long getNodesPerSecond() {
+        long elapsed = Math.max(1L, endTime - startTime);
+        return (long) (nodes * NANOS_PER_SECOND / elapsed);
+    }
+}
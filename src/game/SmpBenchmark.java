@@ -0,0 +1,87 @@
+package game;
+
+/**
+ * SmpBenchmark measures how much faster the Engine reaches a fixed depth
+ * on more threads. Each reference position of Perft is searched to the
+ * same depth with no time limit on 1, 2, 4 and so on up to the most
+ * threads asked for, starting from an empty table every time, and the
+ * time to depth, nodes per second and speedup over one thread are
+ * printed.
+ *
+ * @author Kiaan Castillo A01024604
+ * @version 2018
+ */
+public final class SmpBenchmark {
+
+    /**
+     * The depth searched when none is given.
+     */
+    private static final int DEFAULT_DEPTH = 8;
+    /**
+     * The depth searched to warm up before timing.
+     */
+    private static final int WARMUP_DEPTH = 5;
+    /**
+     * Nanoseconds in a second.
+     */
+    private static final double NANOS = 1e9;
+
+    /**
+     * SmpBenchmark only has static members.
+     */
+    private SmpBenchmark() {
+    }
+
+    /**
+     * Searches every reference position to a depth.
+     * @param engine
+     *          the engine to search with
+     * @param depth
+     *          the depth
+     * @return the nodes searched
+     */
+    private static long searchAll(Engine engine, int depth) {
+        Position position = new Position();
+        long nodes = 0L;
+        for (String fen : Perft.REFERENCE_FENS) {
+            Fen.parse(fen, position);
+            engine.getTable().clear();
+            engine.search(position, depth, 0L);
+            nodes += engine.getNodes();
+        }
+        return nodes;
+    }
+
+    /**
+     * Runs the benchmark.
+     * @param args
+     *          optionally the most threads, then the depth
+     */
+    public static void main(String[] args) {
+        int maxThreads = Runtime.getRuntime().availableProcessors();
+        int depth = DEFAULT_DEPTH;
+        if (args.length > 0) {
+            maxThreads = Integer.parseInt(args[0]);
+        }
+        if (args.length > 1) {
+            depth = Integer.parseInt(args[1]);
+        }
+        Engine engine = new Engine();
+        searchAll(engine, WARMUP_DEPTH);
+
+        double single = 0.0;
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            engine.setThreads(threads);
+            long start = System.nanoTime();
+            long nodes = searchAll(engine, depth);
+            double seconds = (System.nanoTime() - start) / NANOS;
+            if (threads == 1) {
+                single = seconds;
+            }
+            System.out.printf("%2d threads: depth %d in %.3f s, "
+                    + "%.0f nodes/s, speedup %.2f%n", threads, depth,
+                    seconds, nodes / seconds, single / seconds);
+        }
+        engine.shutdown();
+    }
+}
@@ -21,10 +21,6 @@ public class Tile extends Rectangle {
      * The length and width of each tile.
      */
     public static final double DIMENSION = 75.0;
-    /**
-     * Is true if a piece is occupying this tile.
-     */
-    private boolean occupied;
     /**
      * The X (row) coordinate of the tile.
      */
@@ -34,13 +30,9 @@ public class Tile extends Rectangle {
      */
     private int y;
     /**
-     * The type of the piece.
-     */
-    private String type;
-    /**
-     * The colour of the piece.
+     * The code of the piece, or Piece.EMPTY.
      */
-    private String colour;
+    private byte code;
     /**
      * The piece on the tile.
      */
@@ -52,25 +44,20 @@ public class Tile extends Rectangle {
      *          the x coordinate
      * @param y
      *          the y coordinate
-     * @param occupied
-     *          the occupancy of this tile
-     * @param type
-     *          the type occupying this tile
-     * @param colour
-     *          the colour of the piece occupying this tile
+     * @param code
+     *          the code of the piece occupying this tile, or Piece.EMPTY
      */
-    public Tile(int x, int y, boolean occupied, String type, String colour) {
+    public Tile(int x, int y, int code) {
         super(DIMENSION, DIMENSION);
         this.x = x;
         this.y = y;
-        this.type = type;
-        this.colour = colour;
+        this.code = (byte) code;
 
         this.piece = new TilePiece();
-        if (type == null) {
+        if (code == Piece.EMPTY) {
             piece.setImage(null);   
         } else {
-            piece.setPiece(type, colour);
+            piece.setPiece(code);
         }
     }
 
@@ -78,57 +65,36 @@ public class Tile extends Rectangle {
      * Removes the piece from this tile.
      */
     public void removePiece() {
-        type = null;
-        colour = null;
-        occupied = false;
+        code = Piece.EMPTY;
         
         piece.remove();
     }
     
     /**
      * Sets a piece to be on this tile.
-     * @param type
-     *          the type of the piece
-     * @param colour
-     *          the colour of the piece
+     * @param code
+     *          the code of the piece
      */
-    public void setPiece(String type, String colour) {
-        this.type = type;
-        this.colour = colour;
-        this.occupied = true;
+    public void setPiece(int code) {
+        this.code = (byte) code;
         
-        piece.setPiece(type, colour);
-    }
-
-    /**
-     * Returns true if this tile is occupied.
-     */
-    public void setOccupied(boolean occupied) {
-        this.occupied = occupied;
+        piece.setPiece(code);
     }
     
     /**
      * Returns true if this tile is occupied.
-     * @return occupied
+     * @return true if a piece is on this tile
      */
     public boolean getOccupied() {
-        return occupied;
+        return code != Piece.EMPTY;
     }
 
     /**
-     * Returns the type of this tile if it has a piece.
-     * @return type
+     * Returns the code of the piece on this tile.
+     * @return code, which is Piece.EMPTY if there is no piece
      */
-    public String getType() {
-        return type;
-    }
-
-    /**
-     * Returns the colour of this tile if it has a piece.
-     * @return colour
-     */
-    public String getColour() {
-        return colour;
+    public int getCode() {
+        return code;
     }
 
     /**
@@ -159,45 +125,21 @@ public class Tile extends Rectangle {
          * The image for this piece to display.
          */
         private Image pieceImage;
-        /**
-         * True if it is this piece's first move.
-         */
-        private boolean firstMove;
         
         /**
          * Constructs an object of type TilePiece.
          */
         private TilePiece() {
-            this.firstMove = true;
-        }
-        
-        /**
-         * Returns true if it is this piece's first move.
-         * @return firstMove
-         */
-        public boolean getFirstMove() {
-            return firstMove;
-        }
-        
-        /**
-         * Sets this piece's firstMove.
-         * @param firstMove
-         *              true if it is this piece's first move
-         */
-        public void setFirstMove(Boolean firstMove) {
-            this.firstMove = firstMove;
         }
 
         /**
-         * Sets the type/image of this piece.
-         * @param type
-         *          the type of the piece
-         * @param colour
-         *          the colour of the piece
+         * Sets the type/image of this piece. The image is shared with
+         * every other piece of the same type and colour.
+         * @param code
+         *          the code of the piece
          */
-        private void setPiece(String type, String colour) {
-            String imageName = "/images/" + type + colour + ".png";
-            pieceImage = new Image(imageName);
+        private void setPiece(int code) {
+            pieceImage = PieceImages.get(code);
             this.setImage(pieceImage);
             this.setMouseTransparent(true);
         }
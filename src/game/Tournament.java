@@ -0,0 +1,669 @@
+package game;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Tournament plays two configurations of the Engine against each other
+ * without the board, many games at once on a pool of worker threads, and
+ * reports the result as an Elo difference with a sequential probability
+ * ratio test, so that a change to the rules or the search can be checked
+ * for strength.
+ *
+ * Each opening is played twice with the colours swapped. Games are
+ * adjudicated as draws by the fifty move rule, threefold repetition,
+ * insufficient material, a long run of level scores or a move limit, and
+ * as wins once both engines agree for several moves that one side is far
+ * ahead. With a time control a player whose clock runs out loses.
+ *
+ * <pre>
+ * java game.Tournament [-games N] [-concurrency N] [-tc BASE+INC]
+ *     [-a SPEC] [-b SPEC] [-openings FILE] [-sprt ELO0 ELO1] [-pgn FILE]
+ * </pre>
+ *
+ * A SPEC is a comma separated list of depth=N, nodes=N and hash=MB. Times
+ * are in milliseconds, and the opening file holds one FEN per line.
+ *
+ * @author Kiaan Castillo A01024604
+ * @version 2018
+ */
+public final class Tournament {
+
+    /**
+     * The positions played from when no opening file is given.
+     */
+    static final String[] OPENINGS = {
+        Fen.STANDARD_START,
+        "rnbqkbnr/pppp1ppp/8/4p3/4P3/8/PPPP1PPP/RNBQKBNR w KQkq - 0 2",
+        "rnbqkbnr/pp1ppppp/8/2p5/4P3/8/PPPP1PPP/RNBQKBNR w KQkq - 0 2",
+        "rnbqkbnr/pppp1ppp/4p3/8/4P3/8/PPPP1PPP/RNBQKBNR w KQkq - 0 2",
+        "rnbqkbnr/pp1ppppp/2p5/8/4P3/8/PPPP1PPP/RNBQKBNR w KQkq - 0 2",
+        "rnbqkbnr/ppp1pppp/8/3p4/3P4/8/PPP1PPPP/RNBQKBNR w KQkq - 0 2",
+        "rnbqkb1r/pppppppp/5n2/8/3P4/8/PPP1PPPP/RNBQKBNR w KQkq - 1 2",
+        "rnbqkbnr/pppppppp/8/8/2P5/8/PP1PPPPP/RNBQKBNR b KQkq - 0 1",
+        "rnbqkbnr/pppppppp/8/8/8/5N2/PPPPPPPP/RNBQKB1R b KQkq - 1 1",
+    };
+    /**
+     * A win for the first player, counted in half points.
+     */
+    private static final int WIN = 2;
+    /**
+     * A draw, counted in half points.
+     */
+    private static final int DRAW = 1;
+    /**
+     * A loss for the first player, counted in half points.
+     */
+    private static final int LOSS = 0;
+    /**
+     * The most moves of a game before it is drawn.
+     */
+    private static final int MAX_PLIES = 400;
+    /**
+     * A score both engines must agree on to resign, in centipawns.
+     */
+    private static final int RESIGN_SCORE = 1000;
+    /**
+     * The moves in a row the resign score must hold for.
+     */
+    private static final int RESIGN_PLIES = 6;
+    /**
+     * The largest score counted as level, in centipawns.
+     */
+    private static final int DRAW_SCORE = 10;
+    /**
+     * The moves in a row scores must be level for a draw.
+     */
+    private static final int DRAW_PLIES = 16;
+    /**
+     * The first move a game can be drawn by level scores.
+     */
+    private static final int DRAW_START = 80;
+    /**
+     * The moves left assumed when dividing a clock.
+     */
+    private static final int MOVES_TO_GO = 30;
+    /**
+     * The depth each player searches to when given no limit.
+     */
+    private static final int DEFAULT_DEPTH = 5;
+    /**
+     * The size of each player's table when none is given, in megabytes.
+     */
+    private static final int DEFAULT_HASH = 4;
+    /**
+     * The number of games played when none is given.
+     */
+    private static final int DEFAULT_GAMES = 100;
+    /**
+     * The chance of accepting a change that is no better.
+     */
+    private static final double ALPHA = 0.05;
+    /**
+     * The chance of rejecting a change that is better.
+     */
+    private static final double BETA = 0.05;
+    /**
+     * The normal quantile of a 95% confidence interval.
+     */
+    private static final double Z95 = 1.96;
+    /**
+     * The Elo scale.
+     */
+    private static final double ELO_SCALE = 400.0;
+    /**
+     * Nanoseconds in a millisecond.
+     */
+    private static final long NANOS_PER_MILLI = 1000000L;
+    /**
+     * Milliseconds in an hour.
+     */
+    private static final double MILLIS_PER_HOUR = 3600000.0;
+    /**
+     * The results a game can end with, indexed by half points.
+     */
+    private static final String[] RESULTS = {"0-1", "1/2-1/2", "1-0"};
+
+    /**
+     * Player is how one side searches.
+     */
+    static final class Player {
+
+        /**
+         * The name of the player.
+         */
+        private final String name;
+        /**
+         * The deepest iteration searched.
+         */
+        private int depth;
+        /**
+         * The nodes searched per move, or 0 for no limit.
+         */
+        private long nodes;
+        /**
+         * The size of the player's table, in megabytes.
+         */
+        private int hash;
+
+        /**
+         * Constructs a player from a specification such as
+         * "depth=6,hash=8".
+         * @param name
+         *          the name of the player
+         * @param spec
+         *          the specification, which may be empty
+         */
+        Player(String name, String spec) {
+            this.name = name;
+            depth = Engine.MAX_DEPTH;
+            hash = DEFAULT_HASH;
+            for (String setting : spec.split(",")) {
+                String[] pair = setting.split("=");
+                if (pair.length != 2) {
+                    continue;
+                }
+                if (pair[0].equals("depth")) {
+                    depth = Integer.parseInt(pair[1]);
+                } else if (pair[0].equals("nodes")) {
+                    nodes = Long.parseLong(pair[1]);
+                } else if (pair[0].equals("hash")) {
+                    hash = Integer.parseInt(pair[1]);
+                } else {
+                    throw new IllegalArgumentException("Unknown setting "
+                            + pair[0]);
+                }
+            }
+        }
+
+        /**
+         * Returns a description of the player.
+         * @return the description
+         */
+        public String toString() {
+            return name + " (depth " + depth + ", nodes " + nodes
+                    + ", hash " + hash + " MB)";
+        }
+    }
+
+    /**
+     * The two players, the one being tested first.
+     */
+    private final Player[] players;
+    /**
+     * The time each player starts a game with, or 0 for no clock.
+     */
+    private final long baseMillis;
+    /**
+     * The time added to a player's clock after each of its moves.
+     */
+    private final long incrementMillis;
+    /**
+     * The positions played from.
+     */
+    private final List<String> openings;
+    /**
+     * The lower Elo bound of the test.
+     */
+    private final double elo0;
+    /**
+     * The upper Elo bound of the test.
+     */
+    private final double elo1;
+    /**
+     * Each worker's engines for the two players, so they are made once
+     * per thread rather than once per game.
+     */
+    private final ThreadLocal<Engine[]> engines;
+    /**
+     * The number of games with each result, indexed by half points for
+     * the first player.
+     */
+    private final long[] counts;
+
+    /**
+     * Constructs an object of type Tournament.
+     * @param first
+     *          the player being tested
+     * @param second
+     *          the player it is tested against
+     * @param baseMillis
+     *          the time each player starts a game with, or 0 for no clock
+     * @param incrementMillis
+     *          the time added after each move
+     * @param openings
+     *          the positions played from
+     * @param elo0
+     *          the lower Elo bound of the test
+     * @param elo1
+     *          the upper Elo bound of the test
+     */
+    Tournament(Player first, Player second, long baseMillis,
+            long incrementMillis, List<String> openings, double elo0,
+            double elo1) {
+        players = new Player[] {first, second};
+        this.baseMillis = baseMillis;
+        this.incrementMillis = incrementMillis;
+        this.openings = openings;
+        this.elo0 = elo0;
+        this.elo1 = elo1;
+        engines = ThreadLocal.withInitial(() -> {
+            Engine[] made = new Engine[players.length];
+            for (int index = 0; index < made.length; index++) {
+                made[index] = new Engine();
+                made[index].setHashSize(players[index].hash);
+            }
+            return made;
+        });
+        counts = new long[RESULTS.length];
+    }
+
+    /**
+     * Plays one game.
+     * @param opening
+     *          the FEN of the position to play from
+     * @param firstIsWhite
+     *          true if the first player has white
+     * @param movetext
+     *          the builder the moves are appended to as SAN
+     * @return the result in half points for the first player, and the
+     *          reason the game ended
+     */
+    Object[] play(String opening, boolean firstIsWhite,
+            StringBuilder movetext) {
+        Engine[] pair = engines.get();
+        for (Engine engine : pair) {
+            engine.getTable().clear();
+        }
+        Position position = new Position();
+        Fen.parse(opening, position);
+        int[] scratch = new int[MoveGenerator.MAX_MOVES];
+        long[] clocks = {baseMillis, baseMillis};
+        int resignRun = 0;
+        int drawRun = 0;
+        int lastSign = 0;
+
+        for (int ply = 0; ply < MAX_PLIES; ply++) {
+            int white = position.getSideToMove() == Piece.WHITE ? 1 : -1;
+            int status = position.getStatus();
+            if (status == Position.CHECKMATE) {
+                return ended(-white, firstIsWhite, "checkmate");
+            } else if (status == Position.STALEMATE) {
+                return ended(0, firstIsWhite, "stalemate");
+            } else if (position.getHalfmoveClock() >= 100) {
+                return ended(0, firstIsWhite, "fifty moves");
+            } else if (position.repetitions() >= 2) {
+                return ended(0, firstIsWhite, "repetition");
+            } else if (insufficientMaterial(position)) {
+                return ended(0, firstIsWhite, "insufficient material");
+            }
+
+            boolean firstToMove = (white == 1) == firstIsWhite;
+            int mover = firstToMove ? 0 : 1;
+            Player player = players[mover];
+            long budget = 0L;
+            if (baseMillis > 0L) {
+                budget = Math.max(1L, clocks[mover] / MOVES_TO_GO
+                        + incrementMillis);
+            }
+            long start = System.nanoTime();
+            int move = pair[mover].search(position, player.depth, budget,
+                    player.nodes, null);
+            long spent = (System.nanoTime() - start) / NANOS_PER_MILLI;
+            if (baseMillis > 0L) {
+                clocks[mover] -= spent;
+                if (clocks[mover] < 0L) {
+                    return ended(-white, firstIsWhite, "time forfeit");
+                }
+                clocks[mover] += incrementMillis;
+            }
+
+            int score = pair[mover].getScore() * white;
+            int sign = Integer.signum(score);
+            if (Math.abs(score) >= RESIGN_SCORE && sign == lastSign) {
+                resignRun++;
+            } else {
+                resignRun = Math.abs(score) >= RESIGN_SCORE ? 1 : 0;
+            }
+            lastSign = sign;
+            drawRun = Math.abs(score) <= DRAW_SCORE ? drawRun + 1 : 0;
+
+            if (white == 1 || ply == 0) {
+                movetext.append(position.getFullmoveNumber())
+                    .append(white == 1 ? ". " : "... ");
+            }
+            San.append(position, move, scratch, movetext);
+            movetext.append(' ');
+            position.makeMove(move);
+
+            if (resignRun >= RESIGN_PLIES) {
+                return ended(sign, firstIsWhite, "resignation");
+            }
+            if (drawRun >= DRAW_PLIES && ply >= DRAW_START) {
+                return ended(0, firstIsWhite, "adjudicated draw");
+            }
+        }
+        return ended(0, firstIsWhite, "move limit");
+    }
+
+    /**
+     * Returns how a game ended.
+     * @param whiteResult
+     *          1 if white won, -1 if black won, 0 for a draw
+     * @param firstIsWhite
+     *          true if the first player had white
+     * @param reason
+     *          why the game ended
+     * @return the result in half points for the first player, and the
+     *          reason
+     */
+    private static Object[] ended(int whiteResult, boolean firstIsWhite,
+            String reason) {
+        int forFirst = firstIsWhite ? whiteResult : -whiteResult;
+        return new Object[] {forFirst + DRAW, reason};
+    }
+
+    /**
+     * Returns true if neither side has enough material to mate.
+     * @param position
+     *          the position
+     * @return true if only kings and at most one minor piece are left
+     */
+    static boolean insufficientMaterial(Position position) {
+        int minors = 0;
+        for (int colour = Piece.WHITE; colour <= Piece.BLACK; colour++) {
+            if ((position.getPieces(Piece.PAWN, colour)
+                    | position.getPieces(Piece.ROOK, colour)
+                    | position.getPieces(Piece.QUEEN, colour)) != 0L) {
+                return false;
+            }
+            minors += Long.bitCount(position.getPieces(Piece.KNIGHT, colour)
+                    | position.getPieces(Piece.BISHOP, colour));
+        }
+        return minors <= 1;
+    }
+
+    /**
+     * Plays games on a pool of threads until they are all played or the
+     * test is decided, printing progress as they finish.
+     * @param games
+     *          the number of games
+     * @param concurrency
+     *          the number of games played at once
+     * @param out
+     *          where progress and the result are printed
+     * @param pgn
+     *          where the games are written as PGN, or null
+     * @throws IOException
+     *          if the games cannot be written
+     */
+    void run(int games, int concurrency, PrintStream out,
+            BufferedWriter pgn) throws IOException {
+        out.println(players[0] + " vs " + players[1] + ", " + games
+                + " games, " + concurrency + " at once");
+        ExecutorService pool = Executors.newFixedThreadPool(concurrency,
+                runnable -> {
+                    Thread thread = new Thread(runnable, "tournament");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        ExecutorCompletionService<Object[]> done
+            = new ExecutorCompletionService<>(pool);
+        List<Future<Object[]>> pending = new ArrayList<>();
+        for (int game = 0; game < games; game++) {
+            String opening = openings.get(game / 2 % openings.size());
+            boolean firstIsWhite = game % 2 == 0;
+            int round = game + 1;
+            pending.add(done.submit(() -> {
+                StringBuilder movetext = new StringBuilder();
+                Object[] result = play(opening, firstIsWhite, movetext);
+                return new Object[] {result[0], result[1], round,
+                    opening, firstIsWhite, movetext};
+            }));
+        }
+
+        long start = System.nanoTime();
+        try {
+            for (int finished = 1; finished <= games; finished++) {
+                Object[] game = done.take().get();
+                int halfPoints = (Integer) game[0];
+                counts[halfPoints]++;
+                if (pgn != null) {
+                    writeGame(pgn, game);
+                }
+                double llr = logLikelihoodRatio();
+                out.printf("game %d: %s by %s; +%d =%d -%d, LLR %.2f%n",
+                        (Integer) game[2], RESULTS[halfPoints], game[1],
+                        counts[WIN], counts[DRAW], counts[LOSS], llr);
+                if (llr <= lowerBound() || llr >= upperBound()) {
+                    out.println(llr >= upperBound() ? "SPRT: H1 accepted"
+                            : "SPRT: H0 accepted");
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            for (Future<Object[]> future : pending) {
+                future.cancel(true);
+            }
+            pool.shutdownNow();
+        }
+        double millis = (System.nanoTime() - start) / (double) NANOS_PER_MILLI;
+        out.print(summary());
+        out.printf("%.0f games/hour%n", played() * MILLIS_PER_HOUR
+                / Math.max(millis, 1.0));
+    }
+
+    /**
+     * Writes a finished game as PGN.
+     * @param pgn
+     *          where the game is written
+     * @param game
+     *          the half points, reason, round, opening, colours and moves
+     * @throws IOException
+     *          if the game cannot be written
+     */
+    private void writeGame(BufferedWriter pgn, Object[] game)
+            throws IOException {
+        boolean firstIsWhite = (Boolean) game[4];
+        int halfPoints = (Integer) game[0];
+        String result = RESULTS[firstIsWhite ? halfPoints : WIN - halfPoints];
+        pgn.write("[Event \"Tournament\"]\n[Round \"" + game[2]
+                + "\"]\n[White \"" + players[firstIsWhite ? 0 : 1].name
+                + "\"]\n[Black \"" + players[firstIsWhite ? 1 : 0].name
+                + "\"]\n[Result \"" + result + "\"]\n[Termination \""
+                + game[1] + "\"]\n");
+        if (!Fen.STANDARD_START.equals(game[3])) {
+            pgn.write("[SetUp \"1\"]\n[FEN \"" + game[3] + "\"]\n");
+        }
+        pgn.write("\n" + game[5] + result + "\n\n");
+    }
+
+    /**
+     * Returns the number of games played.
+     * @return the number of games
+     */
+    private long played() {
+        return counts[WIN] + counts[DRAW] + counts[LOSS];
+    }
+
+    /**
+     * Returns the first player's mean score per game.
+     * @return the score, from 0 to 1
+     */
+    private double meanScore() {
+        return (counts[WIN] + counts[DRAW] / 2.0) / played();
+    }
+
+    /**
+     * Returns the variance of the first player's score per game.
+     * @return the variance
+     */
+    private double variance() {
+        double mean = meanScore();
+        return (counts[WIN] * (1.0 - mean) * (1.0 - mean)
+                + counts[DRAW] * (0.5 - mean) * (0.5 - mean)
+                + counts[LOSS] * mean * mean) / played();
+    }
+
+    /**
+     * Returns the Elo difference a score stands for.
+     * @param score
+     *          the mean score, from 0 to 1
+     * @return the Elo difference
+     */
+    static double elo(double score) {
+        double bounded = Math.min(Math.max(score, 1e-6), 1.0 - 1e-6);
+        return -ELO_SCALE * Math.log10(1.0 / bounded - 1.0);
+    }
+
+    /**
+     * Returns the score an Elo difference stands for.
+     * @param elo
+     *          the Elo difference
+     * @return the mean score, from 0 to 1
+     */
+    static double score(double elo) {
+        return 1.0 / (1.0 + Math.pow(10.0, -elo / ELO_SCALE));
+    }
+
+    /**
+     * Returns the log likelihood ratio of the first player being elo1
+     * stronger rather than elo0, from the normal approximation of the
+     * results.
+     * @return the ratio, or 0 if there are too few results
+     */
+    double logLikelihoodRatio() {
+        double variance = variance();
+        if (played() < 2 || variance == 0.0) {
+            return 0.0;
+        }
+        double s0 = score(elo0);
+        double s1 = score(elo1);
+        return played() * (s1 - s0) * (2.0 * meanScore() - s0 - s1)
+                / (2.0 * variance);
+    }
+
+    /**
+     * Returns the ratio below which the change is rejected.
+     * @return the lower bound
+     */
+    private static double lowerBound() {
+        return Math.log(BETA / (1.0 - ALPHA));
+    }
+
+    /**
+     * Returns the ratio above which the change is accepted.
+     * @return the upper bound
+     */
+    private static double upperBound() {
+        return Math.log((1.0 - BETA) / ALPHA);
+    }
+
+    /**
+     * Returns the results, the Elo difference with its 95% interval and
+     * the state of the test.
+     * @return the summary
+     */
+    String summary() {
+        long games = played();
+        if (games == 0L) {
+            return "no games played\n";
+        }
+        double mean = meanScore();
+        double margin = Z95 * Math.sqrt(variance() / games);
+        return String.format("%d games: +%d =%d -%d, score %.1f%%%n"
+                + "Elo %.1f (%.1f to %.1f)%n"
+                + "SPRT [%.1f, %.1f]: LLR %.2f (%.2f, %.2f)%n", games,
+                counts[WIN], counts[DRAW], counts[LOSS], mean * 100.0,
+                elo(mean), elo(mean - margin), elo(mean + margin), elo0,
+                elo1, logLikelihoodRatio(), lowerBound(), upperBound());
+    }
+
+    /**
+     * Runs a tournament.
+     * @param args
+     *          the options
+     * @throws IOException
+     *          if the openings cannot be read or the games written
+     */
+    public static void main(String[] args) throws IOException {
+        int games = DEFAULT_GAMES;
+        int concurrency = Runtime.getRuntime().availableProcessors();
+        long base = 0L;
+        long increment = 0L;
+        String first = "depth=" + DEFAULT_DEPTH;
+        String second = "depth=" + DEFAULT_DEPTH;
+        List<String> openings = Arrays.asList(OPENINGS);
+        double elo0 = 0.0;
+        double elo1 = 10.0;
+        String pgnFile = null;
+        for (int index = 0; index + 1 < args.length; index += 2) {
+            String value = args[index + 1];
+            switch (args[index]) {
+            case "-games":
+                games = Integer.parseInt(value);
+                break;
+            case "-concurrency":
+                concurrency = Math.max(1, Integer.parseInt(value));
+                break;
+            case "-tc":
+                String[] parts = value.split("\\+");
+                base = Long.parseLong(parts[0]);
+                increment = parts.length > 1 ? Long.parseLong(parts[1]) : 0L;
+                break;
+            case "-a":
+                first = value;
+                break;
+            case "-b":
+                second = value;
+                break;
+            case "-openings":
+                openings = Files.readAllLines(Paths.get(value));
+                openings.removeIf(String::isEmpty);
+                break;
+            case "-sprt":
+                elo0 = Double.parseDouble(value);
+                elo1 = Double.parseDouble(args[index + 2]);
+                index++;
+                break;
+            case "-pgn":
+                pgnFile = value;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown option "
+                        + args[index]);
+            }
+        }
+        for (String opening : openings) {
+            Fen.parse(opening, new Position());
+        }
+
+        Tournament tournament = new Tournament(new Player("A", first),
+                new Player("B", second), base, increment, openings, elo0,
+                elo1);
+        if (pgnFile == null) {
+            tournament.run(games, concurrency, System.out, null);
+            return;
+        }
+        try (BufferedWriter pgn = Files.newBufferedWriter(Paths.get(pgnFile),
+                StandardCharsets.UTF_8)) {
+            tournament.run(games, concurrency, System.out, pgn);
+        }
+    }
+}
@@ -0,0 +1,353 @@
+package game;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * TranspositionTable remembers what searches found out about positions,
+ * keyed by their Zobrist key. It is one preallocated long[] holding
+ * buckets of four entries, each entry being two longs: the key XORed with
+ * the data, and the data. A probe only trusts an entry whose two halves
+ * XOR back to the key, so threads can share the table without locks; an
+ * entry torn by two threads writing at once just reads as a miss.
+ *
+ * When a bucket is full, the entry replaced is the one that is shallowest
+ * once entries left over from earlier searches are aged.
+ *
+ * @author Kiaan Castillo A01024604
+ * @version 2018
+ */
+public class TranspositionTable {
+
+    /**
+     * The size of the table in megabytes when none is given.
+     */
+    public static final int DEFAULT_MEGABYTES = 16;
+    /**
+     * The score is exact.
+     */
+    public static final int EXACT = 3;
+    /**
+     * The score is at least the stored score.
+     */
+    public static final int LOWER = 2;
+    /**
+     * The score is at most the stored score.
+     */
+    public static final int UPPER = 1;
+    /**
+     * Bytes in a megabyte.
+     */
+    private static final long MEGABYTE = 1L << 20;
+    /**
+     * Bytes in an entry.
+     */
+    private static final int ENTRY_BYTES = 16;
+    /**
+     * Entries in a bucket.
+     */
+    private static final int BUCKET_ENTRIES = 4;
+    /**
+     * Longs in a bucket.
+     */
+    private static final int BUCKET_LONGS = BUCKET_ENTRIES * 2;
+    /**
+     * Shift of the score in the data.
+     */
+    private static final int SCORE_SHIFT = 24;
+    /**
+     * Shift of the depth in the data.
+     */
+    private static final int DEPTH_SHIFT = 40;
+    /**
+     * Shift of the bound in the data.
+     */
+    private static final int BOUND_SHIFT = 48;
+    /**
+     * Shift of the age in the data.
+     */
+    private static final int AGE_SHIFT = 50;
+    /**
+     * Mask of the move in the data.
+     */
+    private static final long MOVE_MASK = (1L << SCORE_SHIFT) - 1;
+    /**
+     * Mask of the score once shifted down.
+     */
+    private static final int SCORE_MASK = 0xFFFF;
+    /**
+     * Added to scores so that they are stored unsigned.
+     */
+    private static final int SCORE_OFFSET = 0x8000;
+    /**
+     * Mask of the depth once shifted down.
+     */
+    private static final int DEPTH_MASK = 0xFF;
+    /**
+     * Mask of the bound once shifted down.
+     */
+    private static final int BOUND_MASK = 3;
+    /**
+     * Mask of the age once shifted down.
+     */
+    private static final int AGE_MASK = 63;
+    /**
+     * How much shallower an entry counts per search it is old.
+     */
+    private static final int AGE_WEIGHT = 8;
+    /**
+     * The number of buckets sampled to estimate how full the table is.
+     */
+    private static final int SAMPLE_BUCKETS = 250;
+    /**
+     * Per mille.
+     */
+    private static final int PER_MILLE = 1000;
+    /**
+     * The entries.
+     */
+    private long[] table;
+    /**
+     * Mask of the bucket index of a key.
+     */
+    private int bucketMask;
+    /**
+     * The age of the current search.
+     */
+    private volatile int age;
+    /**
+     * Probes reported by finished searches.
+     */
+    private final LongAdder probes;
+    /**
+     * Hits reported by finished searches.
+     */
+    private final LongAdder hits;
+
+    /**
+     * Constructs a table of the default size.
+     */
+    public TranspositionTable() {
+        this(DEFAULT_MEGABYTES);
+    }
+
+    /**
+     * Constructs a table of a given size.
+     * @param megabytes
+     *          the size of the table in megabytes
+     */
+    public TranspositionTable(int megabytes) {
+        probes = new LongAdder();
+        hits = new LongAdder();
+        resize(megabytes);
+    }
+
+    /**
+     * Throws away every entry and sizes the table to the largest power of
+     * two buckets that fits. Must not be called while searching.
+     * @param megabytes
+     *          the size of the table in megabytes
+     */
+    public final void resize(int megabytes) {
+        long entries = Math.max(1, megabytes) * MEGABYTE / ENTRY_BYTES;
+        int buckets = Integer.highestOneBit((int) Math.min(
+                entries / BUCKET_ENTRIES, Integer.MAX_VALUE / BUCKET_LONGS));
+        table = new long[buckets * BUCKET_LONGS];
+        bucketMask = buckets - 1;
+        age = 0;
+        probes.reset();
+        hits.reset();
+    }
+
+    /**
+     * Throws away every entry. Must not be called while searching.
+     */
+    public void clear() {
+        Arrays.fill(table, 0L);
+        age = 0;
+        probes.reset();
+        hits.reset();
+    }
+
+    /**
+     * Marks the start of a new search, so that entries from earlier ones
+     * are replaced first.
+     */
+    public void newSearch() {
+        age = (age + 1) & AGE_MASK;
+    }
+
+    /**
+     * Returns the index of the first long of a key's bucket.
+     * @param key
+     *          the key
+     * @return the index
+     */
+    private int bucket(long key) {
+        return ((int) (key ^ (key >>> 32)) & bucketMask) * BUCKET_LONGS;
+    }
+
+    /**
+     * Looks up a position.
+     * @param key
+     *          the key of the position
+     * @return the data stored, or 0 if there is none
+     */
+    public long probe(long key) {
+        long[] entries = table;
+        int base = bucket(key);
+        for (int index = base; index < base + BUCKET_LONGS; index += 2) {
+            long data = entries[index + 1];
+            if ((entries[index] ^ data) == key && data != 0L) {
+                return data;
+            }
+        }
+        return 0L;
+    }
+
+    /**
+     * Stores what a search found out about a position.
+     * @param key
+     *          the key of the position
+     * @param move
+     *          the best move found, or 0
+     * @param score
+     *          the score, with checkmates counted from this position
+     * @param depth
+     *          the depth searched
+     * @param bound
+     *          EXACT, LOWER or UPPER
+     */
+    public void store(long key, int move, int score, int depth, int bound) {
+        long[] entries = table;
+        int base = bucket(key);
+        int current = age;
+        int victim = base;
+        int victimWorth = Integer.MAX_VALUE;
+        for (int index = base; index < base + BUCKET_LONGS; index += 2) {
+            long data = entries[index + 1];
+            if ((entries[index] ^ data) == key || data == 0L) {
+                if (data != 0L && move == 0) {
+                    move = move(data);
+                }
+                victim = index;
+                break;
+            }
+            int old = (current - age(data)) & AGE_MASK;
+            int worth = depth(data) - old * AGE_WEIGHT;
+            if (worth < victimWorth) {
+                victimWorth = worth;
+                victim = index;
+            }
+        }
+        long data = (move & MOVE_MASK)
+                | ((long) ((score + SCORE_OFFSET) & SCORE_MASK) << SCORE_SHIFT)
+                | ((long) Math.min(depth, DEPTH_MASK) << DEPTH_SHIFT)
+                | ((long) bound << BOUND_SHIFT)
+                | ((long) current << AGE_SHIFT);
+        entries[victim] = key ^ data;
+        entries[victim + 1] = data;
+    }
+
+    /**
+     * Returns the move of stored data.
+     * @param data
+     *          the data
+     * @return the move, or 0
+     */
+    public static int move(long data) {
+        return (int) (data & MOVE_MASK);
+    }
+
+    /**
+     * Returns the score of stored data.
+     * @param data
+     *          the data
+     * @return the score
+     */
+    public static int score(long data) {
+        return (int) ((data >>> SCORE_SHIFT) & SCORE_MASK) - SCORE_OFFSET;
+    }
+
+    /**
+     * Returns the depth of stored data.
+     * @param data
+     *          the data
+     * @return the depth
+     */
+    public static int depth(long data) {
+        return (int) ((data >>> DEPTH_SHIFT) & DEPTH_MASK);
+    }
+
+    /**
+     * Returns the bound of stored data.
+     * @param data
+     *          the data
+     * @return EXACT, LOWER or UPPER
+     */
+    public static int bound(long data) {
+        return (int) ((data >>> BOUND_SHIFT) & BOUND_MASK);
+    }
+
+    /**
+     * Returns the age of stored data.
+     * @param data
+     *          the data
+     * @return the age
+     */
+    private static int age(long data) {
+        return (int) ((data >>> AGE_SHIFT) & AGE_MASK);
+    }
+
+    /**
+     * Adds a finished search's probe counts to the statistics. Searches
+     * count their own probes so the table's hot path writes nothing shared.
+     * @param searchProbes
+     *          the number of probes
+     * @param searchHits
+     *          the number of probes that found an entry
+     */
+    public void report(long searchProbes, long searchHits) {
+        probes.add(searchProbes);
+        hits.add(searchHits);
+    }
+
+    /**
+     * Returns the share of reported probes that found an entry.
+     * @return the hit rate, from 0 to 1
+     */
+    public double getHitRate() {
+        long total = probes.sum();
+        if (total == 0L) {
+            return 0.0;
+        }
+        return (double) hits.sum() / total;
+    }
+
+    /**
+     * Estimates how full the table is with entries from the current
+     * search, by sampling the first buckets.
+     * @return the fill in per mille
+     */
+    public int getFill() {
+        long[] entries = table;
+        int sampled = Math.min(SAMPLE_BUCKETS * BUCKET_LONGS, entries.length);
+        int current = age;
+        int used = 0;
+        for (int index = 0; index < sampled; index += 2) {
+            long data = entries[index + 1];
+            if (data != 0L && age(data) == current) {
+                used++;
+            }
+        }
+        return used * PER_MILLE / (sampled / 2);
+    }
+
+    /**
+     * Returns the size of the table in megabytes.
+     * @return the size
+     */
+    public int getMegabytes() {
+        return (int) ((long) table.length * Long.BYTES / MEGABYTE);
+    }
+}
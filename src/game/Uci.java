@@ -0,0 +1,373 @@
+package game;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Uci lets chess GUIs and tournament managers play the Engine through the
+ * Universal Chess Interface on standard input and output. Searches run on
+ * the engine's threads while this reads commands, so stop is acted on as
+ * soon as it arrives. Nothing here touches JavaFX.
+ *
+ * Positions are in standard chess; "position startpos" is the standard
+ * start position, not the board's own.
+ *
+ * @author Kiaan Castillo A01024604
+ * @version 2018
+ */
+public final class Uci {
+
+    /**
+     * The name the engine gives.
+     */
+    private static final String NAME = "Set A Chess";
+    /**
+     * The author the engine gives.
+     */
+    private static final String AUTHOR = "Kiaan Castillo";
+    /**
+     * The largest table allowed, in megabytes.
+     */
+    private static final int MAX_HASH = 4096;
+    /**
+     * The most threads allowed.
+     */
+    private static final int MAX_THREADS = 256;
+    /**
+     * The moves left assumed when the GUI does not say.
+     */
+    private static final int MOVES_TO_GO = 30;
+    /**
+     * The time kept back from each move for the GUI, in milliseconds.
+     */
+    private static final long MOVE_OVERHEAD = 30L;
+    /**
+     * The letters of promotions, indexed by type.
+     */
+    private static final String PROMOTION_LETTERS = "  nbrq";
+    /**
+     * Where replies are written.
+     */
+    private final PrintStream out;
+    /**
+     * The engine.
+     */
+    private final Engine engine;
+    /**
+     * The position to search.
+     */
+    private final Position position;
+    /**
+     * Scratch space for generating moves.
+     */
+    private final int[] moves;
+
+    /**
+     * Constructs an object of type Uci.
+     * @param out
+     *          where replies are written
+     */
+    public Uci(PrintStream out) {
+        this.out = out;
+        engine = new Engine();
+        position = new Position();
+        Fen.parse(Fen.STANDARD_START, position);
+        moves = new int[MoveGenerator.MAX_MOVES];
+    }
+
+    /**
+     * Reads commands until quit or the end of the input.
+     * @param in
+     *          where commands are read from
+     * @throws IOException
+     *          if the input cannot be read
+     */
+    public void run(BufferedReader in) throws IOException {
+        for (String line = in.readLine(); line != null; line = in.readLine()) {
+            if (!command(line.trim().split("\\s+"))) {
+                break;
+            }
+        }
+        engine.stop();
+        engine.await();
+        engine.shutdown();
+    }
+
+    /**
+     * Carries out a command.
+     * @param words
+     *          the words of the command
+     * @return false if the command was quit
+     */
+    boolean command(String[] words) {
+        switch (words[0]) {
+        case "uci":
+            out.println("id name " + NAME);
+            out.println("id author " + AUTHOR);
+            out.println("option name Hash type spin default "
+                    + TranspositionTable.DEFAULT_MEGABYTES + " min 1 max "
+                    + MAX_HASH);
+            out.println("option name Threads type spin default 1 min 1 max "
+                    + MAX_THREADS);
+            out.println("uciok");
+            break;
+        case "isready":
+            out.println("readyok");
+            break;
+        case "ucinewgame":
+            finishSearch();
+            engine.getTable().clear();
+            break;
+        case "setoption":
+            finishSearch();
+            setOption(words);
+            break;
+        case "position":
+            finishSearch();
+            setPosition(words);
+            break;
+        case "go":
+            finishSearch();
+            go(words);
+            break;
+        case "stop":
+            engine.stop();
+            break;
+        case "quit":
+            return false;
+        default:
+            if (!words[0].isEmpty()) {
+                out.println("info string unknown command " + words[0]);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stops the search in progress, if any, and waits until its best move
+     * has been given.
+     */
+    private void finishSearch() {
+        engine.stop();
+        engine.await();
+    }
+
+    /**
+     * Sets the Hash or Threads option.
+     * @param words
+     *          "setoption name NAME value VALUE"
+     */
+    private void setOption(String[] words) {
+        String name = wordAfter(words, "name");
+        String value = wordAfter(words, "value");
+        if (name == null || value == null) {
+            return;
+        }
+        try {
+            if (name.equalsIgnoreCase("Hash")) {
+                engine.setHashSize(clamp(Integer.parseInt(value), MAX_HASH));
+            } else if (name.equalsIgnoreCase("Threads")) {
+                engine.setThreads(clamp(Integer.parseInt(value),
+                        MAX_THREADS));
+            } else {
+                out.println("info string unknown option " + name);
+            }
+        } catch (NumberFormatException e) {
+            out.println("info string bad value " + value);
+        }
+    }
+
+    /**
+     * Returns a number kept between 1 and a maximum.
+     * @param number
+     *          the number
+     * @param max
+     *          the maximum
+     * @return the number kept in range
+     */
+    private static int clamp(int number, int max) {
+        return Math.max(1, Math.min(number, max));
+    }
+
+    /**
+     * Sets the position to search.
+     * @param words
+     *          "position startpos|fen FEN [moves MOVE...]"
+     */
+    private void setPosition(String[] words) {
+        int index = 1;
+        try {
+            if (words.length > 1 && words[1].equals("fen")) {
+                StringBuilder fen = new StringBuilder();
+                for (index = 2; index < words.length
+                        && !words[index].equals("moves"); index++) {
+                    fen.append(words[index]).append(' ');
+                }
+                Fen.parse(fen, position);
+            } else {
+                Fen.parse(Fen.STANDARD_START, position);
+                index = 2;
+            }
+        } catch (IllegalArgumentException e) {
+            out.println("info string " + e.getMessage());
+            Fen.parse(Fen.STANDARD_START, position);
+            return;
+        }
+        if (index < words.length && words[index].equals("moves")) {
+            for (index++; index < words.length; index++) {
+                int move = parseMove(position, words[index], moves);
+                if (move == 0) {
+                    out.println("info string illegal move " + words[index]);
+                    return;
+                }
+                position.makeMove(move);
+            }
+        }
+    }
+
+    /**
+     * Starts searching the position.
+     * @param words
+     *          "go" followed by any of depth, movetime, nodes, wtime,
+     *          btime, winc, binc, movestogo and infinite
+     */
+    private void go(String[] words) {
+        int depth = Engine.MAX_DEPTH;
+        long millis = 0L;
+        long nodes = 0L;
+        long time = 0L;
+        long increment = 0L;
+        long movesToGo = MOVES_TO_GO;
+        boolean white = position.getSideToMove() == Piece.WHITE;
+        for (int index = 1; index + 1 < words.length; index++) {
+            long value;
+            try {
+                value = Long.parseLong(words[index + 1]);
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            switch (words[index]) {
+            case "depth":
+                depth = (int) Math.max(1L, Math.min(value, Engine.MAX_DEPTH));
+                break;
+            case "movetime":
+                millis = Math.max(1L, value);
+                break;
+            case "nodes":
+                nodes = Math.max(1L, value);
+                break;
+            case "wtime":
+                time = white ? value : time;
+                break;
+            case "btime":
+                time = white ? time : value;
+                break;
+            case "winc":
+                increment = white ? value : increment;
+                break;
+            case "binc":
+                increment = white ? increment : value;
+                break;
+            case "movestogo":
+                movesToGo = Math.max(1L, value);
+                break;
+            default:
+                continue;
+            }
+            index++;
+        }
+        if (millis == 0L && time > 0L) {
+            millis = Math.max(1L, Math.min(time / movesToGo + increment,
+                    time - MOVE_OVERHEAD));
+        }
+
+        engine.think(position, depth, millis, nodes, new Engine.Listener() {
+            public void iteration(Engine searched) {
+                int best = searched.getBestMove();
+                out.println("info depth " + searched.getDepth()
+                        + " score " + Cli.formatScore(searched.getScore())
+                        + " nodes " + searched.getNodes()
+                        + " nps " + searched.getNodesPerSecond()
+                        + " hashfull " + searched.getTable().getFill()
+                        + " time " + searched.getMillis()
+                        + (best == 0 ? "" : " pv " + moveName(best)));
+            }
+
+            public void bestMove(int move, Engine searched) {
+                out.println("bestmove "
+                        + (move == 0 ? "0000" : moveName(move)));
+            }
+        });
+    }
+
+    /**
+     * Returns the word after a keyword.
+     * @param words
+     *          the words
+     * @param keyword
+     *          the keyword
+     * @return the word, or null if there is none
+     */
+    private static String wordAfter(String[] words, String keyword) {
+        for (int index = 0; index + 1 < words.length; index++) {
+            if (words[index].equals(keyword)) {
+                return words[index + 1];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the legal move a move in coordinate notation, such as
+     * "e2e4" or "e7e8q", stands for.
+     * @param position
+     *          the position the move is made in
+     * @param name
+     *          the move
+     * @param moves
+     *          scratch space for at least MoveGenerator.MAX_MOVES moves
+     * @return the move, or 0 if it is not legal
+     */
+    static int parseMove(Position position, String name, int[] moves) {
+        int count = MoveGenerator.generate(position, moves, 0);
+        for (int index = 0; index < count; index++) {
+            if (moveName(moves[index]).equals(name)) {
+                return moves[index];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns a move in coordinate notation, such as "e2e4" or "e7e8q".
+     * @param move
+     *          the move
+     * @return the name
+     */
+    static String moveName(int move) {
+        StringBuilder name = new StringBuilder();
+        San.appendSquare(MoveGenerator.from(move), name);
+        San.appendSquare(MoveGenerator.to(move), name);
+        if (MoveGenerator.isPromotion(move)) {
+            name.append(PROMOTION_LETTERS.charAt(
+                    MoveGenerator.promotionType(move)));
+        }
+        return name.toString();
+    }
+
+    /**
+     * Speaks UCI on standard input and output.
+     * @param args
+     *          not used
+     * @throws IOException
+     *          if standard input cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        PrintStream out = new PrintStream(System.out, true);
+        new Uci(out).run(new BufferedReader(new InputStreamReader(System.in,
+                StandardCharsets.US_ASCII)));
+    }
+}
@@ -0,0 +1,129 @@
+package game;
+
+/**
+ * Zobrist holds the random numbers that are combined with XOR into the
+ * 64-bit key of a Position. Each piece on each square, the side to move,
+ * each set of castling rights and each en passant column has its own
+ * number, so a move changes the key with a few XORs. The numbers come
+ * from a fixed seed, so keys are the same in every run and can be stored.
+ *
+ * @author Kiaan Castillo A01024604
+ * @version 2018
+ */
+public final class Zobrist {
+
+    /**
+     * The seed of the random numbers.
+     */
+    private static final long SEED = 0x2526C4E55L;
+    /**
+     * The number of sets of castling rights.
+     */
+    private static final int CASTLING_SETS = 16;
+    /**
+     * The numbers of each piece code on each square.
+     */
+    private static final long[][] PIECES
+        = new long[Piece.CODES][Position.SQUARES];
+    /**
+     * The numbers of each set of castling rights. No rights hash to 0.
+     */
+    private static final long[] CASTLING = new long[CASTLING_SETS];
+    /**
+     * The numbers of each column an en passant capture can be made on.
+     */
+    private static final long[] EN_PASSANT = new long[Position.EIGHT];
+    /**
+     * The number XORed in when black is to move.
+     */
+    private static final long BLACK_TO_MOVE;
+
+    static {
+        long state = SEED;
+        for (int code = 0; code < Piece.CODES; code++) {
+            for (int square = 0; square < Position.SQUARES; square++) {
+                state = next(state);
+                PIECES[code][square] = scramble(state);
+            }
+        }
+        for (int rights = 1; rights < CASTLING_SETS; rights++) {
+            state = next(state);
+            CASTLING[rights] = scramble(state);
+        }
+        for (int column = 0; column < Position.EIGHT; column++) {
+            state = next(state);
+            EN_PASSANT[column] = scramble(state);
+        }
+        state = next(state);
+        BLACK_TO_MOVE = scramble(state);
+    }
+
+    /**
+     * Zobrist only has static members.
+     */
+    private Zobrist() {
+    }
+
+    /**
+     * Advances a xorshift random number generator.
+     * @param state
+     *          the current state
+     * @return the next state
+     */
+    private static long next(long state) {
+        state ^= state >>> 12;
+        state ^= state << 25;
+        state ^= state >>> 27;
+        return state;
+    }
+
+    /**
+     * Turns a generator state into an evenly mixed random number.
+     * @param state
+     *          the generator state
+     * @return the random number
+     */
+    private static long scramble(long state) {
+        return state * 0x2545F4914F6CDD1DL;
+    }
+
+    /**
+     * Returns the number of a piece on a square.
+     * @param code
+     *          the piece code
+     * @param square
+     *          the square
+     * @return the number
+     */
+    public static long piece(int code, int square) {
+        return PIECES[code][square];
+    }
+
+    /**
+     * Returns the number of a set of castling rights.
+     * @param rights
+     *          the castling rights
+     * @return the number
+     */
+    public static long castling(int rights) {
+        return CASTLING[rights];
+    }
+
+    /**
+     * Returns the number of an en passant column.
+     * @param column
+     *          the column
+     * @return the number
+     */
+    public static long enPassant(int column) {
+        return EN_PASSANT[column];
+    }
+
+    /**
+     * Returns the number XORed in when black is to move.
+     * @return the number
+     */
+    public static long blackToMove() {
+        return BLACK_TO_MOVE;
+    }
+}